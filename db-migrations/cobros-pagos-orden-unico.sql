@@ -0,0 +1,32 @@
+-- Índice único sobre payment_transactions.orden_id.
+--
+-- PaymentService reserva el pago de cada orden insertando una fila PENDIENTE antes de
+-- llamar a la pasarela: la clave duplicada es la que impide que dos entregas del mismo
+-- OrdenCreada cobren dos veces, y sustituye a idx_pagos_orden.
+--
+-- ddl-auto=update intenta crear la restricción, pero falla en silencio si ya hay
+-- duplicados, así que este script se ejecuta una vez antes de desplegar la versión
+-- nueva de servicio-cobros. De cada orden duplicada se conserva la fila con dinero
+-- (REEMBOLSADO, luego EXITOSO) y, a igualdad, la más antigua. Las demás se copian a
+-- payment_transactions_duplicadas: dos filas EXITOSO son un cobro doble que hay que
+-- revisar a mano.
+
+USE cobros_db;
+
+CREATE TEMPORARY TABLE pagos_descartados AS
+SELECT id FROM (
+    SELECT id, ROW_NUMBER() OVER (PARTITION BY orden_id
+            ORDER BY CASE status WHEN 'REEMBOLSADO' THEN 0 WHEN 'EXITOSO' THEN 1 ELSE 2 END, id) AS n
+    FROM payment_transactions
+    WHERE orden_id IS NOT NULL
+) r
+WHERE r.n > 1;
+
+CREATE TABLE IF NOT EXISTS payment_transactions_duplicadas LIKE payment_transactions;
+INSERT INTO payment_transactions_duplicadas
+SELECT p.* FROM payment_transactions p JOIN pagos_descartados d ON d.id = p.id;
+DELETE p FROM payment_transactions p JOIN pagos_descartados d ON d.id = p.id;
+
+ALTER TABLE payment_transactions
+    ADD UNIQUE INDEX uk_pagos_orden (orden_id),
+    DROP INDEX idx_pagos_orden;
@@ -0,0 +1,13 @@
+-- payment_transactions pasa de IDENTITY a una secuencia con allocationSize = 50.
+--
+-- En MySQL Hibernate emula la secuencia con la tabla payment_seq. Si ddl-auto la crea
+-- sobre una tabla con datos, empieza en 1 y chocaría con los ids ya existentes, así que
+-- se crea e inicializa aquí, por encima del máximo actual (con margen de dos bloques),
+-- antes de desplegar la versión nueva de servicio-cobros.
+
+USE cobros_db;
+
+CREATE TABLE IF NOT EXISTS payment_seq (next_val BIGINT);
+DELETE FROM payment_seq;
+INSERT INTO payment_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 100 FROM payment_transactions;
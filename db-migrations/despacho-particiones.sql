@@ -0,0 +1,27 @@
+-- Reparto dinámico de las particiones de despacho.
+--
+-- dispatch_states guarda la partición de cada orden para que, al ganar una partición,
+-- servicio-despacho recupere sólo sus órdenes abiertas. Las filas antiguas no tienen
+-- partición y no se recuperarían, así que el script se ejecuta con las colas de despacho
+-- vacías y sin órdenes esperando confirmaciones, antes de desplegar la versión nueva.
+--
+-- dispatch_partition_leases (un lease por partición) y dispatch_members (latido de cada
+-- instancia) los usa DispatchPartitionCoordinator. Las filas de leases las inserta el
+-- propio servicio según rabbitmq.dispatch.partitions.
+
+USE despacho_db;
+
+ALTER TABLE dispatch_states
+    ADD COLUMN particion INT NULL,
+    ADD INDEX idx_dispatch_status_particion (status, particion);
+
+CREATE TABLE IF NOT EXISTS dispatch_partition_leases (
+    partition_id INT NOT NULL PRIMARY KEY,
+    owner VARCHAR(64) NULL,
+    expires_at TIMESTAMP(3) NULL
+);
+
+CREATE TABLE IF NOT EXISTS dispatch_members (
+    instance_id VARCHAR(64) NOT NULL PRIMARY KEY,
+    heartbeat_at TIMESTAMP(3) NOT NULL
+);
@@ -0,0 +1,22 @@
+-- Índice único sobre shipments.orden_id.
+--
+-- Las búsquedas por orden (dispatch.ready y GET /api/shipping/{orderId}) recorrían la
+-- tabla entera y la comprobación "buscar y luego guardar" dejaba pasar duplicados
+-- concurrentes. ShippingService crea ahora el envío con INSERT ... ON DUPLICATE KEY,
+-- que necesita este índice.
+--
+-- ddl-auto=update intenta crear la restricción, pero falla en silencio si ya hay
+-- duplicados, así que este script se ejecuta una vez antes de desplegar la versión
+-- nueva de servicio-envio. De cada orden duplicada se conserva el envío más avanzado
+-- (el que tiene tracking) y, si no, el más antiguo.
+
+USE envio_db;
+
+DELETE s FROM shipments s
+JOIN shipments k ON k.orden_id = s.orden_id AND k.id <> s.id
+WHERE (k.tracking_number IS NOT NULL AND s.tracking_number IS NULL)
+   OR ((k.tracking_number IS NULL) = (s.tracking_number IS NULL) AND k.id < s.id);
+
+ALTER TABLE shipments
+    MODIFY COLUMN orden_id BINARY(16) NOT NULL,
+    ADD UNIQUE INDEX uk_shipments_orden (orden_id);
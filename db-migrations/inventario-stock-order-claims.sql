@@ -0,0 +1,26 @@
+-- Reclamo único por orden en inventario (stock_order_claims).
+--
+-- La reserva de stock y su compensación insertan ahora, dentro de su transacción, una
+-- fila por orden con clave primaria orden_id: la que llega primero gana y la otra espera
+-- a que termine. Sustituye a las marcas de stock_reservations (filas liberadas sin SKU)
+-- y a la consulta de órdenes compensadas que se hacía antes de reservar.
+--
+-- ddl-auto=update crea la tabla, pero las órdenes ya procesadas no tendrían su fila y
+-- una redelivery de su OrdenCreada volvería a reservar, así que este script se ejecuta
+-- una vez antes de desplegar la versión nueva de servicio-inventario.
+
+USE inventario_db;
+
+CREATE TABLE IF NOT EXISTS stock_order_claims (
+    orden_id BINARY(16) NOT NULL PRIMARY KEY,
+    status VARCHAR(255)
+);
+
+-- Una orden con alguna fila liberada (incluidas las marcas sin SKU) quedó compensada
+INSERT IGNORE INTO stock_order_claims (orden_id, status)
+SELECT orden_id, IF(MAX(liberada), 'LIBERADA', 'RESERVADA')
+FROM stock_reservations
+WHERE orden_id IS NOT NULL
+GROUP BY orden_id;
+
+DELETE FROM stock_reservations WHERE sku IS NULL;
@@ -0,0 +1,61 @@
+-- Migración de los ids de orden de VARCHAR(36) (texto UUID) a BINARY(16).
+--
+-- Hibernate (ddl-auto=update) no cambia el tipo de columnas existentes, así que este
+-- script se ejecuta una vez, con los servicios detenidos y las colas vacías, antes de
+-- desplegar la versión que genera ids UUIDv7. Los ids antiguos (UUIDv4) se conservan:
+-- sólo cambia su representación, y los nuevos se añaden al final del índice.
+--
+-- UUID_TO_BIN(id) sin el segundo argumento guarda los bytes en el mismo orden
+-- (big-endian) que OrdenIds.aBytes e Hibernate, y BIN_TO_UUID(id) recupera el texto.
+--
+-- Cada columna se convierte en su sitio con MODIFY, sin borrarla: primero a
+-- VARBINARY(36), que conserva los bytes del texto, luego se reescribe con UUID_TO_BIN
+-- y por último se fija en BINARY(16). Así la clave primaria y los índices que la
+-- incluyen (idx_orders_cliente, idx_orders_status, idx_pagos_orden,
+-- idx_reservas_orden, ...) siguen existiendo con las mismas columnas; borrar la columna
+-- los eliminaría o los dejaría sin ella.
+
+-- ------------------------------------------------------------
+-- ordenes_db: clave primaria de orders
+-- ------------------------------------------------------------
+USE ordenes_db;
+
+ALTER TABLE orders MODIFY COLUMN id VARBINARY(36) NOT NULL;
+UPDATE orders SET id = UUID_TO_BIN(id);
+ALTER TABLE orders MODIFY COLUMN id BINARY(16) NOT NULL;
+
+-- ------------------------------------------------------------
+-- despacho_db: clave primaria de dispatch_states
+-- ------------------------------------------------------------
+USE despacho_db;
+
+ALTER TABLE dispatch_states MODIFY COLUMN orden_id VARBINARY(36) NOT NULL;
+UPDATE dispatch_states SET orden_id = UUID_TO_BIN(orden_id);
+ALTER TABLE dispatch_states MODIFY COLUMN orden_id BINARY(16) NOT NULL;
+
+-- ------------------------------------------------------------
+-- cobros_db: payment_transactions.orden_id
+-- ------------------------------------------------------------
+USE cobros_db;
+
+ALTER TABLE payment_transactions MODIFY COLUMN orden_id VARBINARY(36) NULL;
+UPDATE payment_transactions SET orden_id = UUID_TO_BIN(orden_id);
+ALTER TABLE payment_transactions MODIFY COLUMN orden_id BINARY(16) NULL;
+
+-- ------------------------------------------------------------
+-- inventario_db: stock_reservations.orden_id
+-- ------------------------------------------------------------
+USE inventario_db;
+
+ALTER TABLE stock_reservations MODIFY COLUMN orden_id VARBINARY(36) NULL;
+UPDATE stock_reservations SET orden_id = UUID_TO_BIN(orden_id);
+ALTER TABLE stock_reservations MODIFY COLUMN orden_id BINARY(16) NULL;
+
+-- ------------------------------------------------------------
+-- envio_db: shipments.orden_id
+-- ------------------------------------------------------------
+USE envio_db;
+
+ALTER TABLE shipments MODIFY COLUMN orden_id VARBINARY(36) NULL;
+UPDATE shipments SET orden_id = UUID_TO_BIN(orden_id);
+ALTER TABLE shipments MODIFY COLUMN orden_id BINARY(16) NULL;
@@ -0,0 +1,43 @@
+-- Outbox transaccional compartido (saga-events: OutboxService y OutboxRelay).
+--
+-- El outbox deja de ser una entidad JPA de servicio-ordenes y pasa a escribirse con
+-- JDBC desde saga-events, así que ddl-auto ya no crea la tabla. Se ejecuta una vez
+-- antes de desplegar las versiones que publican a través del outbox.
+--
+-- claimed_until es el lease del relay: las filas se reclaman en una transacción corta
+-- y las confirmaciones del broker se esperan fuera de ella.
+
+-- ------------------------------------------------------------
+-- ordenes_db: la tabla ya existe (creada por Hibernate con la secuencia outbox_seq)
+-- ------------------------------------------------------------
+USE ordenes_db;
+
+ALTER TABLE outbox_events
+    MODIFY COLUMN id BIGINT NOT NULL AUTO_INCREMENT,
+    ADD COLUMN claimed_until DATETIME(6) NULL;
+DROP TABLE IF EXISTS outbox_seq;
+
+-- ------------------------------------------------------------
+-- inventario_db, cobros_db, despacho_db: tabla nueva
+-- ------------------------------------------------------------
+USE inventario_db;
+
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    exchange VARCHAR(255),
+    routing_key VARCHAR(255),
+    content_type VARCHAR(255),
+    message_id VARCHAR(255),
+    headers TEXT,
+    payload MEDIUMBLOB NOT NULL,
+    created_at DATETIME(6),
+    claimed_until DATETIME(6) NULL
+);
+
+USE cobros_db;
+
+CREATE TABLE IF NOT EXISTS outbox_events LIKE inventario_db.outbox_events;
+
+USE despacho_db;
+
+CREATE TABLE IF NOT EXISTS outbox_events LIKE inventario_db.outbox_events;
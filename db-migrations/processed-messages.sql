@@ -0,0 +1,46 @@
+-- Tabla de deduplicación de mensajes (saga-events: MessageDeduplicator).
+--
+-- Antes la creaba el propio MessageDeduplicator al arrancar. Ahora la clave del mensaje
+-- se inserta en la misma transacción que ejecuta el listener, así que la tabla se crea
+-- aquí, una vez por base de datos de los servicios que consumen eventos, antes de
+-- desplegar la versión nueva.
+
+USE ordenes_db;
+
+CREATE TABLE IF NOT EXISTS processed_messages (
+    message_key VARCHAR(191) NOT NULL PRIMARY KEY,
+    processed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    KEY idx_processed_messages_processed_at (processed_at)
+);
+
+USE inventario_db;
+
+CREATE TABLE IF NOT EXISTS processed_messages (
+    message_key VARCHAR(191) NOT NULL PRIMARY KEY,
+    processed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    KEY idx_processed_messages_processed_at (processed_at)
+);
+
+USE cobros_db;
+
+CREATE TABLE IF NOT EXISTS processed_messages (
+    message_key VARCHAR(191) NOT NULL PRIMARY KEY,
+    processed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    KEY idx_processed_messages_processed_at (processed_at)
+);
+
+USE despacho_db;
+
+CREATE TABLE IF NOT EXISTS processed_messages (
+    message_key VARCHAR(191) NOT NULL PRIMARY KEY,
+    processed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    KEY idx_processed_messages_processed_at (processed_at)
+);
+
+USE envio_db;
+
+CREATE TABLE IF NOT EXISTS processed_messages (
+    message_key VARCHAR(191) NOT NULL PRIMARY KEY,
+    processed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    KEY idx_processed_messages_processed_at (processed_at)
+);
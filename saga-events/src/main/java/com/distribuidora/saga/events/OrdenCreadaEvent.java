@@ -0,0 +1,18 @@
+package com.distribuidora.saga.events;
+
+import java.util.List;
+
+import lombok.Builder;
+
+@Builder // Para usar el Patrón Builder
+public record OrdenCreadaEvent(String ordenId, String clienteId, double montoTotal, List<ProductoItem> productos)
+        implements SagaEvent {
+
+    public OrdenCreadaEvent {
+        productos = productos == null ? List.of() : List.copyOf(productos);
+    }
+
+    // Producto dentro de la orden
+    public record ProductoItem(String productoId, int cantidad) {
+    }
+}
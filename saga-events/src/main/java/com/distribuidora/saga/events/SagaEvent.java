@@ -0,0 +1,7 @@
+package com.distribuidora.saga.events;
+
+// Todos los eventos de la saga pertenecen a una orden
+public interface SagaEvent {
+
+    String ordenId();
+}
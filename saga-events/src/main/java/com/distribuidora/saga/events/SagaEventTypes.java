@@ -0,0 +1,30 @@
+package com.distribuidora.saga.events;
+
+import java.util.Map;
+
+// Registro explícito de tipos: la cabecera __TypeId__ viaja con un id lógico estable
+// en lugar del nombre de clase de cada servicio, y no se carga ninguna clase por nombre.
+public final class SagaEventTypes {
+
+    public static final String ORDEN_CREADA = "OrdenCreada";
+    public static final String STOCK_DESCONTADO = "StockDescontado";
+    public static final String STOCK_FALLIDO = "StockFallido";
+    public static final String PAGO_EXITOSO = "PagoExitoso";
+    public static final String PAGO_FALLIDO = "PagoFallido";
+    public static final String ORDEN_LISTA_PARA_ENVIO = "OrdenListaParaEnvio";
+
+    private static final Map<String, Class<?>> CLASES_POR_ID = Map.of(
+            ORDEN_CREADA, OrdenCreadaEvent.class,
+            STOCK_DESCONTADO, StockDescontadoEvent.class,
+            STOCK_FALLIDO, StockFallidoEvent.class,
+            PAGO_EXITOSO, PagoExitosoEvent.class,
+            PAGO_FALLIDO, PagoFallidoEvent.class,
+            ORDEN_LISTA_PARA_ENVIO, OrdenListaParaEnvioEvent.class);
+
+    private SagaEventTypes() {
+    }
+
+    public static Map<String, Class<?>> idClassMapping() {
+        return CLASES_POR_ID;
+    }
+}
@@ -0,0 +1,7 @@
+package com.distribuidora.saga.events;
+
+import lombok.Builder;
+
+@Builder
+public record StockDescontadoEvent(String ordenId) implements SagaEvent {
+}
@@ -0,0 +1,7 @@
+package com.distribuidora.saga.events;
+
+import lombok.Builder;
+
+@Builder
+public record StockFallidoEvent(String ordenId, String motivoFallo) implements SagaEvent {
+}
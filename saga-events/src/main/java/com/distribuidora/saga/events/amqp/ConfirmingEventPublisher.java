@@ -0,0 +1,123 @@
+package com.distribuidora.saga.events.amqp;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// Publicación asíncrona con publisher confirms. Cada envío devuelve un CompletableFuture
+// que se completa cuando el broker confirma (ack); los nack y los timeouts se reintentan
+// hasta max-retries. El número de mensajes sin confirmar está acotado por max-in-flight:
+// si se alcanza, el productor espera (backpressure) en lugar de acumular en memoria.
+// Los servicios lo registran importando SagaPublishingConfiguration.
+public class ConfirmingEventPublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfirmingEventPublisher.class);
+
+    private final RabbitTemplate rabbitTemplate;
+    private final Semaphore inFlight;
+    private final long confirmTimeoutMs;
+    private final int maxRetries;
+
+    private final Timer confirmLatency;
+    private final Counter nacks;
+    private final Counter retries;
+    private final Counter failures;
+
+    public ConfirmingEventPublisher(RabbitTemplate rabbitTemplate, MeterRegistry meterRegistry, int maxInFlight,
+            long confirmTimeoutMs, int maxRetries) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.confirmTimeoutMs = confirmTimeoutMs;
+        this.maxRetries = maxRetries;
+
+        Gauge.builder("saga.publisher.in_flight", inFlight, permits -> maxInFlight - permits.availablePermits())
+                .description("Mensajes publicados pendientes de confirmación")
+                .register(meterRegistry);
+        this.confirmLatency = Timer.builder("saga.publisher.confirm.latency")
+                .description("Tiempo entre la publicación y el ack del broker")
+                .register(meterRegistry);
+        this.nacks = meterRegistry.counter("saga.publisher.nacks");
+        this.retries = meterRegistry.counter("saga.publisher.retries");
+        this.failures = meterRegistry.counter("saga.publisher.failures");
+    }
+
+    public CompletableFuture<Void> publish(String exchange, String routingKey, Object event) {
+        Message message = rabbitTemplate.getMessageConverter().toMessage(event, new MessageProperties());
+        return publish(exchange, routingKey, message);
+    }
+
+    public CompletableFuture<Void> publish(String exchange, String routingKey, Message message) {
+        try {
+            if (!inFlight.tryAcquire(confirmTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new AmqpException("Demasiados mensajes sin confirmar, no se pudo publicar en " + routingKey);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException("Publicación interrumpida en " + routingKey, e);
+        }
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        result.whenComplete((ignored, error) -> inFlight.release());
+        send(exchange, routingKey, message, 0, result);
+        return result;
+    }
+
+    private void send(String exchange, String routingKey, Message message, int attempt,
+            CompletableFuture<Void> result) {
+        CorrelationData correlationData = new CorrelationData(UUID.randomUUID().toString());
+        long start = System.nanoTime();
+        try {
+            rabbitTemplate.send(exchange, routingKey, message, correlationData);
+        } catch (AmqpException e) {
+            retryOrFail(exchange, routingKey, message, attempt, result, e.getMessage());
+            return;
+        }
+
+        correlationData.getFuture()
+                .orTimeout(confirmTimeoutMs, TimeUnit.MILLISECONDS)
+                // Fuera del hilo del callback de confirms: ahí no se debe volver a publicar
+                .whenCompleteAsync((confirm, error) -> {
+                    if (error != null) {
+                        retryOrFail(exchange, routingKey, message, attempt, result, "sin confirmación: " + error);
+                    } else if (!confirm.isAck()) {
+                        nacks.increment();
+                        retryOrFail(exchange, routingKey, message, attempt, result, "nack: " + confirm.getReason());
+                    } else if (correlationData.getReturned() != null) {
+                        // Ack de un mensaje que ninguna cola aceptó: reintentar no lo arregla
+                        failures.increment();
+                        result.completeExceptionally(new AmqpException("Mensaje no enrutable en " + routingKey
+                                + ": " + correlationData.getReturned().getReplyText()));
+                    } else {
+                        confirmLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        result.complete(null);
+                    }
+                });
+    }
+
+    private void retryOrFail(String exchange, String routingKey, Message message, int attempt,
+            CompletableFuture<Void> result, String reason) {
+        if (attempt < maxRetries) {
+            retries.increment();
+            LOGGER.warn("Reintentando publicación en {} (intento {}): {}", routingKey, attempt + 1, reason);
+            send(exchange, routingKey, message, attempt + 1, result);
+        } else {
+            failures.increment();
+            LOGGER.error("Publicación en {} fallida tras {} intentos: {}", routingKey, attempt + 1, reason);
+            result.completeExceptionally(new AmqpException("Publicación fallida en " + routingKey + ": " + reason));
+        }
+    }
+}
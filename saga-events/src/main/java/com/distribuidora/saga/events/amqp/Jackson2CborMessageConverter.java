@@ -0,0 +1,43 @@
+package com.distribuidora.saga.events.amqp;
+
+import java.io.IOException;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.support.converter.AbstractJackson2MessageConverter;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.util.MimeType;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+// Conversor binario (CBOR) para los eventos de la saga. Usa el mismo modelo de Jackson
+// que el conversor JSON, pero el payload es más compacto y más barato de codificar.
+public class Jackson2CborMessageConverter extends AbstractJackson2MessageConverter {
+
+    public static final String CONTENT_TYPE_CBOR = "application/cbor";
+
+    public Jackson2CborMessageConverter(CBORMapper cborMapper) {
+        super(cborMapper, MimeType.valueOf(CONTENT_TYPE_CBOR));
+    }
+
+    // La clase base decodifica el cuerpo como texto antes de pasarlo a Jackson, lo que
+    // no sirve para un formato binario: aquí se lee directamente de los bytes. El tipo
+    // destino se resuelve igual que en JSON (tipo inferido del listener o __TypeId__).
+    @Override
+    public Object fromMessage(Message message, Object conversionHint) {
+        JavaType targetType = conversionHint instanceof ParameterizedTypeReference<?> typeReference
+                ? objectMapper.getTypeFactory().constructType(typeReference.getType())
+                : getJavaTypeMapper().toJavaType(message.getMessageProperties());
+        try {
+            return objectMapper.readValue(message.getBody(), targetType);
+        } catch (IOException e) {
+            throw new MessageConversionException("No se pudo decodificar el mensaje CBOR", e);
+        }
+    }
+
+    @Override
+    public Object fromMessage(Message message) {
+        return fromMessage(message, null);
+    }
+}
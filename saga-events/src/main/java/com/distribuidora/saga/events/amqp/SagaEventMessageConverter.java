@@ -0,0 +1,33 @@
+package com.distribuidora.saga.events.amqp;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import com.distribuidora.saga.events.SagaEvent;
+
+// Añade a cada evento saliente la cabecera ordenId, que el broker puede usar para
+// enrutar (ej. el exchange de hash consistente de despacho) sin leer el cuerpo.
+class SagaEventMessageConverter implements MessageConverter {
+
+    private final MessageConverter delegate;
+
+    SagaEventMessageConverter(MessageConverter delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        Message message = delegate.toMessage(object, messageProperties);
+        if (object instanceof SagaEvent event && event.ordenId() != null) {
+            message.getMessageProperties().setHeader(SagaMessageConverters.ORDEN_ID_HEADER, event.ordenId());
+        }
+        return message;
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        return delegate.fromMessage(message);
+    }
+}
@@ -0,0 +1,68 @@
+package com.distribuidora.saga.events.amqp;
+
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractJackson2MessageConverter;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
+import org.springframework.amqp.support.converter.DefaultJackson2JavaTypeMapper;
+import org.springframework.amqp.support.converter.Jackson2JavaTypeMapper;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import com.distribuidora.saga.events.SagaEventTypes;
+import com.distribuidora.saga.events.jackson.SagaEventsModule;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+// Conversores de mensajes compartidos por todos los servicios de la saga
+public final class SagaMessageConverters {
+
+    // Cabecera con el id de la orden en todos los eventos salientes
+    public static final String ORDEN_ID_HEADER = "ordenId";
+
+    private SagaMessageConverters() {
+    }
+
+    /*
+     * Los mensajes entrantes se decodifican según su content-type (JSON o CBOR), así
+     * ambos formatos conviven durante el despliegue. Los salientes usan el formato
+     * indicado ("json" o "cbor"). En los dos casos la cabecera __TypeId__ lleva el id
+     * lógico de SagaEventTypes y los eventos pasan por los serializadores de
+     * SagaEventsModule. Cada evento saliente lleva además la cabecera ordenId.
+     */
+    public static MessageConverter create(String format) {
+        Jackson2JsonMessageConverter json = new Jackson2JsonMessageConverter(JsonMapper.builder()
+                .addModule(new SagaEventsModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build());
+        Jackson2CborMessageConverter cbor = new Jackson2CborMessageConverter(CBORMapper.builder()
+                .addModule(new SagaEventsModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build());
+        configure(json);
+        configure(cbor);
+
+        ContentTypeDelegatingMessageConverter converter =
+                new ContentTypeDelegatingMessageConverter("cbor".equalsIgnoreCase(format) ? cbor : json);
+        converter.addDelegate(MessageProperties.CONTENT_TYPE_JSON, json);
+        converter.addDelegate(Jackson2CborMessageConverter.CONTENT_TYPE_CBOR, cbor);
+        return new SagaEventMessageConverter(converter);
+    }
+
+    // Cada mensaje lleva un messageId único, que usa MessageDeduplicator en los consumidores
+    private static void configure(AbstractJackson2MessageConverter converter) {
+        converter.setJavaTypeMapper(typeMapper());
+        converter.setCreateMessageIds(true);
+    }
+
+    // Resolución de tipos sin cargar clases por nombre: los ids conocidos van por el
+    // registro y, si el listener declara el tipo del parámetro, ése tiene prioridad
+    // (así se aceptan también mensajes antiguos con el nombre de clase en __TypeId__).
+    private static Jackson2JavaTypeMapper typeMapper() {
+        DefaultJackson2JavaTypeMapper typeMapper = new DefaultJackson2JavaTypeMapper();
+        typeMapper.setIdClassMapping(SagaEventTypes.idClassMapping());
+        typeMapper.setTrustedPackages("com.distribuidora.saga.events");
+        typeMapper.setTypePrecedence(Jackson2JavaTypeMapper.TypePrecedence.INFERRED);
+        return typeMapper;
+    }
+}
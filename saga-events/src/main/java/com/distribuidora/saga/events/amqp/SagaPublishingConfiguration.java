@@ -0,0 +1,22 @@
+package com.distribuidora.saga.events.amqp;
+
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Publicador con confirms compartido. Cada servicio lo activa con
+// @Import(SagaPublishingConfiguration.class) y lo ajusta con rabbitmq.publisher.*
+@Configuration(proxyBeanMethods = false)
+public class SagaPublishingConfiguration {
+
+    @Bean
+    public ConfirmingEventPublisher confirmingEventPublisher(RabbitTemplate rabbitTemplate, MeterRegistry meterRegistry,
+            @Value("${rabbitmq.publisher.max-in-flight}") int maxInFlight,
+            @Value("${rabbitmq.publisher.confirm-timeout-ms}") long confirmTimeoutMs,
+            @Value("${rabbitmq.publisher.max-retries}") int maxRetries) {
+        return new ConfirmingEventPublisher(rabbitTemplate, meterRegistry, maxInFlight, confirmTimeoutMs, maxRetries);
+    }
+}
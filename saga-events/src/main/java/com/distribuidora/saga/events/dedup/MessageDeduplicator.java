@@ -0,0 +1,197 @@
+package com.distribuidora.saga.events.dedup;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.distribuidora.saga.events.amqp.SagaMessageConverters;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/*
+ * Deduplicación de mensajes para todos los consumidores de la saga. Se instala como
+ * advice en las fábricas de contenedores, así se aplica a cada @RabbitListener (simple o
+ * por lotes) y descarta (ack) los mensajes repetidos (redeliveries, reintentos del
+ * publicador o del outbox) antes de cualquier consulta de negocio.
+ *
+ * La clave es ordenId + messageId. Una caché en memoria acotada (LRU con TTL) descarta
+ * sin ir a la base de datos los duplicados ya vistos. Si no está en la caché, la clave se
+ * inserta en processed_messages en una transacción que envuelve al listener: las
+ * escrituras del listener (que se une a ella) y la clave se confirman juntas, y si el
+ * listener falla ambas se deshacen y la redelivery se procesa de nuevo. Una clave que ya
+ * existe es un duplicado; si la está procesando otro consumidor, el INSERT espera a que
+ * termine, de modo que dos entregas del mismo mensaje nunca ejecutan el listener a la vez.
+ */
+public class MessageDeduplicator implements MethodInterceptor, InitializingBean, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageDeduplicator.class);
+
+    private final ProcessedMessageStore store;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<String, Boolean> procesados;
+    private final Duration retencion;
+    private final ScheduledExecutorService purga = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "processed-messages-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public MessageDeduplicator(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            long cacheSize, Duration cacheTtl, Duration retencion) {
+        this.store = new ProcessedMessageStore(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.procesados = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+        this.retencion = retencion;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        purga.scheduleWithFixedDelay(this::purgar, 1, 1, TimeUnit.HOURS);
+    }
+
+    @Override
+    public void destroy() {
+        purga.shutdownNow();
+    }
+
+    // Envuelve ContainerDelegate.invokeListener(Channel, Object): data es un Message o,
+    // en los listeners por lotes, una List<Message>
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        Object[] arguments = invocation.getArguments();
+        Object data = arguments.length > 1 ? arguments[1] : null;
+
+        if (data instanceof Message message) {
+            String clave = clave(message);
+            if (clave == null) {
+                return invocation.proceed();
+            }
+            if (procesados.getIfPresent(clave) != null) {
+                LOGGER.info("Mensaje duplicado descartado: {}", clave);
+                return null;
+            }
+            boolean[] duplicado = { false };
+            Object resultado = enTransaccion(() -> {
+                if (!store.reclamar(clave)) {
+                    duplicado[0] = true;
+                    return null;
+                }
+                return invocation.proceed();
+            });
+            if (duplicado[0]) {
+                LOGGER.info("Mensaje duplicado descartado: {}", clave);
+            }
+            procesados.put(clave, Boolean.TRUE);
+            return resultado;
+        }
+
+        if (data instanceof List<?> lote) {
+            return invocarLote(invocation, arguments, lote);
+        }
+
+        return invocation.proceed();
+    }
+
+    private Object invocarLote(MethodInvocation invocation, Object[] arguments, List<?> lote) throws Throwable {
+        // También se descartan los duplicados dentro del propio lote
+        Map<String, Message> porClave = new LinkedHashMap<>();
+        List<Message> sinClave = new ArrayList<>();
+        for (Object elemento : lote) {
+            Message message = (Message) elemento;
+            String clave = clave(message);
+            if (clave == null) {
+                sinClave.add(message);
+            } else if (procesados.getIfPresent(clave) == null) {
+                porClave.putIfAbsent(clave, message);
+            }
+        }
+
+        Object resultado = enTransaccion(() -> {
+            porClave.keySet().removeIf(clave -> !store.reclamar(clave));
+            List<Message> nuevos = new ArrayList<>(porClave.values());
+            nuevos.addAll(sinClave);
+            if (nuevos.size() < lote.size()) {
+                LOGGER.info("{} mensajes duplicados descartados del lote", lote.size() - nuevos.size());
+            }
+            if (nuevos.isEmpty()) {
+                return null;
+            }
+            arguments[1] = nuevos;
+            return invocation.proceed();
+        });
+        porClave.keySet().forEach(clave -> procesados.put(clave, Boolean.TRUE));
+        return resultado;
+    }
+
+    // TransactionTemplate sólo admite excepciones no comprobadas: la del listener viaja
+    // envuelta (y deshace la transacción) y se relanza tal cual
+    private Object enTransaccion(Invocacion invocacion) throws Throwable {
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    return invocacion.ejecutar();
+                } catch (Throwable e) {
+                    throw new FalloDelListener(e);
+                }
+            });
+        } catch (FalloDelListener e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Invocacion {
+
+        Object ejecutar() throws Throwable;
+    }
+
+    private static final class FalloDelListener extends RuntimeException {
+
+        FalloDelListener(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    // Sin messageId (ej. mensajes publicados antes de activar los ids) no se deduplica
+    private static String clave(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        String messageId = properties.getMessageId();
+        if (messageId == null) {
+            return null;
+        }
+        Object ordenId = properties.getHeader(SagaMessageConverters.ORDEN_ID_HEADER);
+        return ordenId != null ? ordenId + ":" + messageId : messageId;
+    }
+
+    private void purgar() {
+        try {
+            int borrados = store.purgar(Instant.now().minus(retencion));
+            if (borrados > 0) {
+                LOGGER.info("processed_messages: {} registros antiguos eliminados", borrados);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("No se pudo purgar processed_messages: {}", e.getMessage());
+        }
+    }
+}
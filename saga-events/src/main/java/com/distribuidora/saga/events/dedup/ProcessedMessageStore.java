@@ -0,0 +1,32 @@
+package com.distribuidora.saga.events.dedup;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Registro persistente de mensajes ya procesados (tabla processed_messages con clave única,
+// ver db-migrations/processed-messages.sql). Sobrevive a reinicios, a diferencia de la
+// caché en memoria de MessageDeduplicator.
+public class ProcessedMessageStore {
+
+    private static final String RECLAMAR_SQL = "INSERT IGNORE INTO processed_messages (message_key) VALUES (?)";
+
+    private static final String PURGAR_SQL = "DELETE FROM processed_messages WHERE processed_at < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProcessedMessageStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Inserta la clave y devuelve false si ya existía. Si otra transacción la insertó y aún
+    // no terminó, el INSERT espera a que confirme (duplicado) o deshaga (se inserta).
+    public boolean reclamar(String clave) {
+        return jdbcTemplate.update(RECLAMAR_SQL, clave) == 1;
+    }
+
+    public int purgar(Instant antesDe) {
+        return jdbcTemplate.update(PURGAR_SQL, Timestamp.from(antesDe));
+    }
+}
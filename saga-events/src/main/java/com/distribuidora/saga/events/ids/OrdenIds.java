@@ -0,0 +1,72 @@
+package com.distribuidora.saga.events.ids;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Identificadores de orden UUIDv7 (RFC 9562): los 48 bits altos son el instante en
+ * milisegundos, así que los ids nuevos siempre se insertan al final del índice clustered
+ * de InnoDB en lugar de en páginas aleatorias como con UUID.randomUUID().
+ *
+ * Dentro del mismo milisegundo los 12 bits de rand_a se usan como contador, de modo que
+ * los ids generados por esta JVM son estrictamente crecientes. Si el contador se agota,
+ * el instante avanza un milisegundo (el reloj "se adelanta" hasta que lo alcanza el real).
+ *
+ * En la base de datos se guardan como BINARY(16) en orden big-endian, igual que
+ * UUID_TO_BIN(id) de MySQL sin intercambio de campos. En eventos y APIs viajan como texto.
+ */
+public final class OrdenIds {
+
+    private static final int BITS_CONTADOR = 12;
+
+    // Instante en milisegundos desplazado BITS_CONTADOR bits, más el contador del milisegundo
+    private static final AtomicLong ULTIMO = new AtomicLong();
+
+    private OrdenIds() {
+    }
+
+    public static UUID nuevo() {
+        long estado = ULTIMO.updateAndGet(
+                previo -> Math.max(System.currentTimeMillis() << BITS_CONTADOR, previo + 1));
+        long instante = estado >>> BITS_CONTADOR;
+        long contador = estado & 0xFFFL;
+
+        long msb = (instante << 16) | 0x7000L | contador;
+        // 62 bits aleatorios más la variante 10; basta para no colisionar entre instancias
+        // que generen en el mismo milisegundo, sin la contención de SecureRandom
+        long lsb = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    // Convierte el texto recibido en un evento o en la URL. Lanza IllegalArgumentException
+    // si no es un UUID con el formato canónico de 36 caracteres.
+    public static UUID parse(String ordenId) {
+        if (ordenId == null || ordenId.length() != 36) {
+            throw new IllegalArgumentException("ordenId inválido: " + ordenId);
+        }
+        return UUID.fromString(ordenId);
+    }
+
+    public static boolean esValido(String ordenId) {
+        try {
+            parse(ordenId);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    // Representación BINARY(16) para las sentencias JDBC escritas a mano
+    public static byte[] aBytes(UUID ordenId) {
+        return ByteBuffer.allocate(16)
+                .putLong(ordenId.getMostSignificantBits())
+                .putLong(ordenId.getLeastSignificantBits())
+                .array();
+    }
+
+    public static byte[] aBytes(String ordenId) {
+        return aBytes(parse(ordenId));
+    }
+}
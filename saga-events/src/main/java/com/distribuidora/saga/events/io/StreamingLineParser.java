@@ -0,0 +1,140 @@
+package com.distribuidora.saga.events.io;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * Lectura en streaming de las cargas masivas (importación del catálogo, manifiestos de
+ * los transportistas): el cuerpo se lee línea a línea, sin cargarlo entero en memoria, y
+ * cada línea se entrega ya convertida junto con su número de línea.
+ *
+ * En CSV los campos pueden ir entre comillas dobles ("" escapa una comilla) y se
+ * recortan; las últimas columnas pueden ser opcionales. La primera línea se salta sólo
+ * si es exactamente la cabecera (mismos nombres de columna, sin distinguir mayúsculas):
+ * una primera fila de datos que empiece igual se procesa. En NDJSON cada línea es un
+ * objeto JSON. Las líneas en blanco se ignoran.
+ *
+ * Una línea que no se puede convertir, o que el destino rechaza lanzando
+ * IllegalArgumentException, se informa como error y la lectura continúa.
+ */
+public final class StreamingLineParser<T> {
+
+    public enum Formato { CSV, NDJSON }
+
+    public interface Destino<T> {
+
+        // Puede lanzar IllegalArgumentException para rechazar la fila (validación)
+        void fila(long linea, T valor);
+
+        void error(long linea, String mensaje);
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Class<T> tipo;
+    private final List<String> columnas;
+    private final int columnasObligatorias;
+    private final Function<List<String>, T> desdeCsv;
+
+    public StreamingLineParser(ObjectMapper objectMapper, Class<T> tipo, List<String> columnas,
+            int columnasObligatorias, Function<List<String>, T> desdeCsv) {
+        this.objectMapper = objectMapper;
+        this.tipo = tipo;
+        this.columnas = List.copyOf(columnas);
+        this.columnasObligatorias = columnasObligatorias;
+        this.desdeCsv = desdeCsv;
+    }
+
+    // Devuelve cuántas filas se leyeron (sin contar la cabecera ni las líneas en blanco)
+    public long leer(InputStream body, Formato formato, Destino<T> destino) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        long filas = 0;
+        long linea = 0;
+        for (String texto = reader.readLine(); texto != null; texto = reader.readLine()) {
+            linea++;
+            if (texto.isBlank()) {
+                continue;
+            }
+            List<String> campos = formato == Formato.CSV ? campos(texto) : null;
+            if (linea == 1 && campos != null && esCabecera(campos)) {
+                continue;
+            }
+            filas++;
+            try {
+                destino.fila(linea, campos != null ? desdeCsv(campos) : desdeJson(texto));
+            } catch (IllegalArgumentException | JsonProcessingException e) {
+                destino.error(linea, e.getMessage());
+            }
+        }
+        return filas;
+    }
+
+    // Una línea "null" es JSON válido pero no es una fila: el destino nunca recibe null
+    private T desdeJson(String texto) throws JsonProcessingException {
+        T valor = objectMapper.readValue(texto, tipo);
+        if (valor == null) {
+            throw new IllegalArgumentException("Se esperaba un objeto JSON y la línea es null");
+        }
+        return valor;
+    }
+
+    private T desdeCsv(List<String> campos) {
+        if (campos.size() < columnasObligatorias || campos.size() > columnas.size()) {
+            String esperadas = columnasObligatorias == columnas.size()
+                    ? String.valueOf(columnas.size())
+                    : columnasObligatorias + " a " + columnas.size();
+            throw new IllegalArgumentException(String.format("Se esperaban %s columnas (%s) y hay %d", esperadas,
+                    String.join(",", columnas), campos.size()));
+        }
+        return desdeCsv.apply(campos);
+    }
+
+    private boolean esCabecera(List<String> campos) {
+        if (campos.size() < columnasObligatorias || campos.size() > columnas.size()) {
+            return false;
+        }
+        for (int i = 0; i < campos.size(); i++) {
+            if (!campos.get(i).equalsIgnoreCase(columnas.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Separa una línea CSV en campos recortados, respetando las comillas dobles
+    static List<String> campos(String texto) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < texto.length() && texto.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                campos.add(campo.toString().trim());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString().trim());
+        return campos;
+    }
+}
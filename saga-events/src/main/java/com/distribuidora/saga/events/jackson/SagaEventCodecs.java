@@ -0,0 +1,314 @@
+package com.distribuidora.saga.events.jackson;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.distribuidora.saga.events.OrdenCreadaEvent;
+import com.distribuidora.saga.events.OrdenListaParaEnvioEvent;
+import com.distribuidora.saga.events.PagoExitosoEvent;
+import com.distribuidora.saga.events.PagoFallidoEvent;
+import com.distribuidora.saga.events.StockDescontadoEvent;
+import com.distribuidora.saga.events.StockFallidoEvent;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+// Serializadores escritos a mano para cada evento. Leen y escriben los tokens
+// directamente (sirven igual para JSON y CBOR), sin introspección de clases ni
+// reflexión por mensaje. Los campos desconocidos se ignoran para tolerar versiones
+// nuevas del productor.
+final class SagaEventCodecs {
+
+    private SagaEventCodecs() {
+    }
+
+    private static void expectStartObject(JsonParser p, DeserializationContext ctxt, Class<?> type)
+            throws IOException {
+        if (!p.isExpectedStartObjectToken()) {
+            ctxt.handleUnexpectedToken(type, p);
+        }
+    }
+
+    // --- OrdenCreadaEvent ---
+
+    static final class OrdenCreadaSerializer extends StdSerializer<OrdenCreadaEvent> {
+
+        OrdenCreadaSerializer() {
+            super(OrdenCreadaEvent.class);
+        }
+
+        @Override
+        public void serialize(OrdenCreadaEvent event, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("ordenId", event.ordenId());
+            gen.writeStringField("clienteId", event.clienteId());
+            gen.writeNumberField("montoTotal", event.montoTotal());
+            gen.writeArrayFieldStart("productos");
+            for (OrdenCreadaEvent.ProductoItem item : event.productos()) {
+                gen.writeStartObject();
+                gen.writeStringField("productoId", item.productoId());
+                gen.writeNumberField("cantidad", item.cantidad());
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+    }
+
+    static final class OrdenCreadaDeserializer extends StdDeserializer<OrdenCreadaEvent> {
+
+        OrdenCreadaDeserializer() {
+            super(OrdenCreadaEvent.class);
+        }
+
+        @Override
+        public OrdenCreadaEvent deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            expectStartObject(p, ctxt, OrdenCreadaEvent.class);
+            String ordenId = null;
+            String clienteId = null;
+            double montoTotal = 0;
+            List<OrdenCreadaEvent.ProductoItem> productos = new ArrayList<>();
+            for (String campo = p.nextFieldName(); campo != null; campo = p.nextFieldName()) {
+                p.nextToken();
+                switch (campo) {
+                    case "ordenId" -> ordenId = p.getValueAsString();
+                    case "clienteId" -> clienteId = p.getValueAsString();
+                    case "montoTotal" -> montoTotal = p.getValueAsDouble();
+                    case "productos" -> leerProductos(p, ctxt, productos);
+                    default -> p.skipChildren();
+                }
+            }
+            return new OrdenCreadaEvent(ordenId, clienteId, montoTotal, productos);
+        }
+
+        private static void leerProductos(JsonParser p, DeserializationContext ctxt,
+                List<OrdenCreadaEvent.ProductoItem> productos) throws IOException {
+            if (p.currentToken() == JsonToken.VALUE_NULL) {
+                return;
+            }
+            if (!p.isExpectedStartArrayToken()) {
+                ctxt.handleUnexpectedToken(List.class, p);
+            }
+            while (p.nextToken() == JsonToken.START_OBJECT) {
+                String productoId = null;
+                int cantidad = 0;
+                for (String campo = p.nextFieldName(); campo != null; campo = p.nextFieldName()) {
+                    p.nextToken();
+                    switch (campo) {
+                        case "productoId" -> productoId = p.getValueAsString();
+                        case "cantidad" -> cantidad = p.getValueAsInt();
+                        default -> p.skipChildren();
+                    }
+                }
+                productos.add(new OrdenCreadaEvent.ProductoItem(productoId, cantidad));
+            }
+        }
+    }
+
+    // --- StockDescontadoEvent ---
+
+    static final class StockDescontadoSerializer extends StdSerializer<StockDescontadoEvent> {
+
+        StockDescontadoSerializer() {
+            super(StockDescontadoEvent.class);
+        }
+
+        @Override
+        public void serialize(StockDescontadoEvent event, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("ordenId", event.ordenId());
+            gen.writeEndObject();
+        }
+    }
+
+    static final class StockDescontadoDeserializer extends StdDeserializer<StockDescontadoEvent> {
+
+        StockDescontadoDeserializer() {
+            super(StockDescontadoEvent.class);
+        }
+
+        @Override
+        public StockDescontadoEvent deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            expectStartObject(p, ctxt, StockDescontadoEvent.class);
+            String ordenId = null;
+            for (String campo = p.nextFieldName(); campo != null; campo = p.nextFieldName()) {
+                p.nextToken();
+                if ("ordenId".equals(campo)) {
+                    ordenId = p.getValueAsString();
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return new StockDescontadoEvent(ordenId);
+        }
+    }
+
+    // --- StockFallidoEvent ---
+
+    static final class StockFallidoSerializer extends StdSerializer<StockFallidoEvent> {
+
+        StockFallidoSerializer() {
+            super(StockFallidoEvent.class);
+        }
+
+        @Override
+        public void serialize(StockFallidoEvent event, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("ordenId", event.ordenId());
+            gen.writeStringField("motivoFallo", event.motivoFallo());
+            gen.writeEndObject();
+        }
+    }
+
+    static final class StockFallidoDeserializer extends StdDeserializer<StockFallidoEvent> {
+
+        StockFallidoDeserializer() {
+            super(StockFallidoEvent.class);
+        }
+
+        @Override
+        public StockFallidoEvent deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            expectStartObject(p, ctxt, StockFallidoEvent.class);
+            String ordenId = null;
+            String motivoFallo = null;
+            for (String campo = p.nextFieldName(); campo != null; campo = p.nextFieldName()) {
+                p.nextToken();
+                switch (campo) {
+                    case "ordenId" -> ordenId = p.getValueAsString();
+                    case "motivoFallo" -> motivoFallo = p.getValueAsString();
+                    default -> p.skipChildren();
+                }
+            }
+            return new StockFallidoEvent(ordenId, motivoFallo);
+        }
+    }
+
+    // --- PagoExitosoEvent ---
+
+    static final class PagoExitosoSerializer extends StdSerializer<PagoExitosoEvent> {
+
+        PagoExitosoSerializer() {
+            super(PagoExitosoEvent.class);
+        }
+
+        @Override
+        public void serialize(PagoExitosoEvent event, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("ordenId", event.ordenId());
+            gen.writeStringField("transaccionId", event.transaccionId());
+            gen.writeEndObject();
+        }
+    }
+
+    static final class PagoExitosoDeserializer extends StdDeserializer<PagoExitosoEvent> {
+
+        PagoExitosoDeserializer() {
+            super(PagoExitosoEvent.class);
+        }
+
+        @Override
+        public PagoExitosoEvent deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            expectStartObject(p, ctxt, PagoExitosoEvent.class);
+            String ordenId = null;
+            String transaccionId = null;
+            for (String campo = p.nextFieldName(); campo != null; campo = p.nextFieldName()) {
+                p.nextToken();
+                switch (campo) {
+                    case "ordenId" -> ordenId = p.getValueAsString();
+                    case "transaccionId" -> transaccionId = p.getValueAsString();
+                    default -> p.skipChildren();
+                }
+            }
+            return new PagoExitosoEvent(ordenId, transaccionId);
+        }
+    }
+
+    // --- PagoFallidoEvent ---
+
+    static final class PagoFallidoSerializer extends StdSerializer<PagoFallidoEvent> {
+
+        PagoFallidoSerializer() {
+            super(PagoFallidoEvent.class);
+        }
+
+        @Override
+        public void serialize(PagoFallidoEvent event, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("ordenId", event.ordenId());
+            gen.writeStringField("motivoFallo", event.motivoFallo());
+            gen.writeEndObject();
+        }
+    }
+
+    static final class PagoFallidoDeserializer extends StdDeserializer<PagoFallidoEvent> {
+
+        PagoFallidoDeserializer() {
+            super(PagoFallidoEvent.class);
+        }
+
+        @Override
+        public PagoFallidoEvent deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            expectStartObject(p, ctxt, PagoFallidoEvent.class);
+            String ordenId = null;
+            String motivoFallo = null;
+            for (String campo = p.nextFieldName(); campo != null; campo = p.nextFieldName()) {
+                p.nextToken();
+                switch (campo) {
+                    case "ordenId" -> ordenId = p.getValueAsString();
+                    case "motivoFallo" -> motivoFallo = p.getValueAsString();
+                    default -> p.skipChildren();
+                }
+            }
+            return new PagoFallidoEvent(ordenId, motivoFallo);
+        }
+    }
+
+    // --- OrdenListaParaEnvioEvent ---
+
+    static final class OrdenListaParaEnvioSerializer extends StdSerializer<OrdenListaParaEnvioEvent> {
+
+        OrdenListaParaEnvioSerializer() {
+            super(OrdenListaParaEnvioEvent.class);
+        }
+
+        @Override
+        public void serialize(OrdenListaParaEnvioEvent event, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField("ordenId", event.ordenId());
+            gen.writeEndObject();
+        }
+    }
+
+    static final class OrdenListaParaEnvioDeserializer extends StdDeserializer<OrdenListaParaEnvioEvent> {
+
+        OrdenListaParaEnvioDeserializer() {
+            super(OrdenListaParaEnvioEvent.class);
+        }
+
+        @Override
+        public OrdenListaParaEnvioEvent deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            expectStartObject(p, ctxt, OrdenListaParaEnvioEvent.class);
+            String ordenId = null;
+            for (String campo = p.nextFieldName(); campo != null; campo = p.nextFieldName()) {
+                p.nextToken();
+                if ("ordenId".equals(campo)) {
+                    ordenId = p.getValueAsString();
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return new OrdenListaParaEnvioEvent(ordenId);
+        }
+    }
+}
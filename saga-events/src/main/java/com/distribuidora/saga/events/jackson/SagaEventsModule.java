@@ -0,0 +1,29 @@
+package com.distribuidora.saga.events.jackson;
+
+import com.distribuidora.saga.events.OrdenCreadaEvent;
+import com.distribuidora.saga.events.OrdenListaParaEnvioEvent;
+import com.distribuidora.saga.events.PagoExitosoEvent;
+import com.distribuidora.saga.events.PagoFallidoEvent;
+import com.distribuidora.saga.events.StockDescontadoEvent;
+import com.distribuidora.saga.events.StockFallidoEvent;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+// Registra en un ObjectMapper los (de)serializadores precompilados de los eventos de la saga
+public class SagaEventsModule extends SimpleModule {
+
+    public SagaEventsModule() {
+        super("SagaEventsModule");
+        addSerializer(OrdenCreadaEvent.class, new SagaEventCodecs.OrdenCreadaSerializer());
+        addDeserializer(OrdenCreadaEvent.class, new SagaEventCodecs.OrdenCreadaDeserializer());
+        addSerializer(StockDescontadoEvent.class, new SagaEventCodecs.StockDescontadoSerializer());
+        addDeserializer(StockDescontadoEvent.class, new SagaEventCodecs.StockDescontadoDeserializer());
+        addSerializer(StockFallidoEvent.class, new SagaEventCodecs.StockFallidoSerializer());
+        addDeserializer(StockFallidoEvent.class, new SagaEventCodecs.StockFallidoDeserializer());
+        addSerializer(PagoExitosoEvent.class, new SagaEventCodecs.PagoExitosoSerializer());
+        addDeserializer(PagoExitosoEvent.class, new SagaEventCodecs.PagoExitosoDeserializer());
+        addSerializer(PagoFallidoEvent.class, new SagaEventCodecs.PagoFallidoSerializer());
+        addDeserializer(PagoFallidoEvent.class, new SagaEventCodecs.PagoFallidoDeserializer());
+        addSerializer(OrdenListaParaEnvioEvent.class, new SagaEventCodecs.OrdenListaParaEnvioSerializer());
+        addDeserializer(OrdenListaParaEnvioEvent.class, new SagaEventCodecs.OrdenListaParaEnvioDeserializer());
+    }
+}
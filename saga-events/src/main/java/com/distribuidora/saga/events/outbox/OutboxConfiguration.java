@@ -0,0 +1,39 @@
+package com.distribuidora.saga.events.outbox;
+
+import java.time.Duration;
+
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.distribuidora.saga.events.amqp.ConfirmingEventPublisher;
+import com.distribuidora.saga.events.amqp.SagaPublishingConfiguration;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Outbox transaccional compartido. Cada servicio productor lo activa con
+// @Import(OutboxConfiguration.class) (necesita @EnableScheduling para el relay) y lo
+// ajusta con outbox.relay.*
+@Configuration(proxyBeanMethods = false)
+@Import(SagaPublishingConfiguration.class)
+public class OutboxConfiguration {
+
+    @Bean
+    public OutboxService outboxService(JdbcTemplate jdbcTemplate, MessageConverter messageConverter,
+            ObjectMapper objectMapper) {
+        return new OutboxService(jdbcTemplate, messageConverter, objectMapper);
+    }
+
+    @Bean
+    public OutboxRelay outboxRelay(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            ConfirmingEventPublisher publisher, ObjectMapper objectMapper,
+            @Value("${outbox.relay.batch-size:200}") int batchSize,
+            @Value("${outbox.relay.lease-ms:60000}") long leaseMs) {
+        return new OutboxRelay(jdbcTemplate, new TransactionTemplate(transactionManager), publisher, objectMapper,
+                batchSize, Duration.ofMillis(leaseMs));
+    }
+}
@@ -0,0 +1,153 @@
+package com.distribuidora.saga.events.outbox;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.distribuidora.saga.events.amqp.ConfirmingEventPublisher;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Vacía el outbox por lotes: publica cada evento con el ConfirmingEventPublisher y borra
+// de la tabla sólo los que el broker confirmó. Los que no se confirman se reintentan en
+// la siguiente pasada (entrega al menos una vez).
+//
+// Las filas se reclaman en una transacción corta (SELECT ... FOR UPDATE SKIP LOCKED y
+// claimed_until = ahora + lease) y las confirmaciones se esperan fuera de ella, sin
+// retener bloqueos ni conexión. Otra instancia no toma un evento reclamado hasta que
+// vence el lease, que debe superar el tiempo máximo de confirmación del publicador.
+public class OutboxRelay {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final String RECLAMAR_SQL = "SELECT id, exchange, routing_key, content_type, message_id, headers, "
+            + "payload FROM outbox_events WHERE claimed_until IS NULL OR claimed_until < ? "
+            + "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    record Pendiente(long id, String exchange, String routingKey, String contentType, String messageId,
+            String headers, byte[] payload) {
+    }
+
+    private static final RowMapper<Pendiente> PENDIENTE = (rs, fila) -> new Pendiente(rs.getLong("id"),
+            rs.getString("exchange"), rs.getString("routing_key"), rs.getString("content_type"),
+            rs.getString("message_id"), rs.getString("headers"), rs.getBytes("payload"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConfirmingEventPublisher publisher;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final Duration lease;
+
+    public OutboxRelay(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            ConfirmingEventPublisher publisher, ObjectMapper objectMapper, int batchSize, Duration lease) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.publisher = publisher;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.lease = lease;
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:200}")
+    public void relay() {
+        List<Pendiente> pendientes = reclamar();
+        if (pendientes.isEmpty()) {
+            return;
+        }
+
+        // Publicamos todo el lote sin esperar y después recogemos las confirmaciones
+        List<CompletableFuture<Void>> publicaciones = new ArrayList<>(pendientes.size());
+        for (Pendiente event : pendientes) {
+            try {
+                publicaciones.add(publisher.publish(event.exchange(), event.routingKey(), toMessage(event)));
+            } catch (AmqpException e) {
+                // Sin capacidad para más mensajes en vuelo: el resto queda para la siguiente pasada
+                LOGGER.warn("Outbox: publicación detenida en el evento {}: {}", event.id(), e.getMessage());
+                break;
+            }
+        }
+
+        List<Long> confirmados = new ArrayList<>(publicaciones.size());
+        List<Long> sinConfirmar = new ArrayList<>();
+        for (int i = 0; i < pendientes.size(); i++) {
+            Pendiente event = pendientes.get(i);
+            if (i >= publicaciones.size()) {
+                sinConfirmar.add(event.id());
+                continue;
+            }
+            try {
+                publicaciones.get(i).join();
+                confirmados.add(event.id());
+            } catch (CompletionException e) {
+                sinConfirmar.add(event.id());
+                LOGGER.warn("Evento {} del outbox sin confirmar, se reintentará: {}", event.id(),
+                        e.getCause().getMessage());
+            }
+        }
+
+        if (!confirmados.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM outbox_events WHERE id IN (" + marcadores(confirmados) + ")",
+                    confirmados.toArray());
+            LOGGER.info("Outbox: {} eventos publicados y confirmados", confirmados.size());
+        }
+        // Se liberan ya para no esperar a que venza el lease
+        if (!sinConfirmar.isEmpty()) {
+            jdbcTemplate.update("UPDATE outbox_events SET claimed_until = NULL WHERE id IN ("
+                    + marcadores(sinConfirmar) + ")", sinConfirmar.toArray());
+        }
+    }
+
+    // Transacción corta: los bloqueos de SKIP LOCKED sólo duran lo que tarda en marcarse el lease
+    List<Pendiente> reclamar() {
+        return transactionTemplate.execute(status -> {
+            Instant ahora = Instant.now();
+            List<Pendiente> pendientes = jdbcTemplate.query(RECLAMAR_SQL, PENDIENTE, Timestamp.from(ahora), batchSize);
+            if (!pendientes.isEmpty()) {
+                List<Object> parametros = new ArrayList<>(pendientes.size() + 1);
+                parametros.add(Timestamp.from(ahora.plus(lease)));
+                pendientes.forEach(event -> parametros.add(event.id()));
+                jdbcTemplate.update("UPDATE outbox_events SET claimed_until = ? WHERE id IN ("
+                        + marcadores(pendientes) + ")", parametros.toArray());
+            }
+            return pendientes;
+        });
+    }
+
+    private Message toMessage(Pendiente event) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(event.contentType());
+        properties.setMessageId(event.messageId());
+        properties.getHeaders().putAll(fromJson(event.headers()));
+        return new Message(event.payload(), properties);
+    }
+
+    private Map<String, Object> fromJson(String headers) {
+        try {
+            return objectMapper.readValue(headers, new TypeReference<Map<String, Object>>() {});
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cabeceras inválidas en el outbox", e);
+        }
+    }
+
+    private static String marcadores(List<?> valores) {
+        return String.join(",", Collections.nCopies(valores.size(), "?"));
+    }
+}
@@ -0,0 +1,73 @@
+package com.distribuidora.saga.events.outbox;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Punto de entrada del outbox transaccional. Cualquier productor puede usarlo en lugar
+// de rabbitTemplate.convertAndSend: el evento se guarda en la transacción del llamador
+// (tabla outbox_events, ver db-migrations/outbox-events.sql) y el OutboxRelay lo publica
+// después. Si la transacción se revierte, el evento tampoco existe.
+public class OutboxService {
+
+    private static final String INSERTAR_SQL = "INSERT INTO outbox_events "
+            + "(exchange, routing_key, content_type, message_id, headers, payload, created_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MessageConverter messageConverter;
+    private final ObjectMapper objectMapper;
+
+    public OutboxService(JdbcTemplate jdbcTemplate, MessageConverter messageConverter, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.messageConverter = messageConverter;
+        this.objectMapper = objectMapper;
+    }
+
+    // Exige una transacción activa: el evento sólo tiene sentido si se guarda junto con
+    // el cambio de negocio
+    public void enqueue(String exchange, String routingKey, Object event) {
+        enqueueAll(exchange, routingKey, List.of(event));
+    }
+
+    // Variante por lotes: todos los eventos van en un único batch JDBC
+    public void enqueueAll(String exchange, String routingKey, List<?> events) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalTransactionStateException("El outbox necesita la transacción del cambio de negocio");
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        Timestamp ahora = Timestamp.from(Instant.now());
+        List<Object[]> filas = new ArrayList<>(events.size());
+        for (Object event : events) {
+            // Se convierte ahora con el mismo MessageConverter que usaría convertAndSend,
+            // así el relay sólo reenvía bytes y no necesita conocer el tipo del evento
+            Message message = messageConverter.toMessage(event, new MessageProperties());
+            MessageProperties properties = message.getMessageProperties();
+            filas.add(new Object[] { exchange, routingKey, properties.getContentType(), properties.getMessageId(),
+                    toJson(properties.getHeaders()), message.getBody(), ahora });
+        }
+        jdbcTemplate.batchUpdate(INSERTAR_SQL, filas);
+    }
+
+    private String toJson(Map<String, Object> headers) {
+        try {
+            return objectMapper.writeValueAsString(headers);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudieron serializar las cabeceras del evento", e);
+        }
+    }
+}
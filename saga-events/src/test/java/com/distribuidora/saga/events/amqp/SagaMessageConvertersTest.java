@@ -0,0 +1,47 @@
+package com.distribuidora.saga.events.amqp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import com.distribuidora.saga.events.OrdenCreadaEvent;
+import com.distribuidora.saga.events.OrdenCreadaEvent.ProductoItem;
+
+class SagaMessageConvertersTest {
+
+    private static final OrdenCreadaEvent EVENTO = new OrdenCreadaEvent("0190a3b4-c5d6-7e8f-9a0b-1c2d3e4f5a6b",
+            "cliente-1", 150.5, List.of(new ProductoItem("SKU-A", 2), new ProductoItem("SKU-B", 1)));
+
+    @Test
+    void cadaFormatoSaleConSuContentTypeYCabeceras() {
+        Message json = SagaMessageConverters.create("json").toMessage(EVENTO, new MessageProperties());
+        Message cbor = SagaMessageConverters.create("cbor").toMessage(EVENTO, new MessageProperties());
+
+        assertThat(json.getMessageProperties().getContentType()).isEqualTo(MessageProperties.CONTENT_TYPE_JSON);
+        assertThat(cbor.getMessageProperties().getContentType())
+                .isEqualTo(Jackson2CborMessageConverter.CONTENT_TYPE_CBOR);
+        assertThat(cbor.getBody().length).isLessThan(json.getBody().length);
+        for (Message message : List.of(json, cbor)) {
+            assertThat(message.getMessageProperties().getMessageId()).isNotBlank();
+            assertThat((String) message.getMessageProperties().getHeader(SagaMessageConverters.ORDEN_ID_HEADER))
+                    .isEqualTo(EVENTO.ordenId());
+        }
+    }
+
+    @Test
+    void unConsumidorLeeAmbosFormatosSeaCualSeaElSuyo() {
+        MessageConverter consumidorJson = SagaMessageConverters.create("json");
+        MessageConverter consumidorCbor = SagaMessageConverters.create("cbor");
+
+        for (String formato : List.of("json", "cbor")) {
+            Message message = SagaMessageConverters.create(formato).toMessage(EVENTO, new MessageProperties());
+            assertThat(consumidorJson.fromMessage(message)).isEqualTo(EVENTO);
+            assertThat(consumidorCbor.fromMessage(message)).isEqualTo(EVENTO);
+        }
+    }
+}
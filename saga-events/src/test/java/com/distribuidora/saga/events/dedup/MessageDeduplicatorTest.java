@@ -0,0 +1,187 @@
+package com.distribuidora.saga.events.dedup;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import com.distribuidora.saga.events.amqp.SagaMessageConverters;
+
+class MessageDeduplicatorTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private MessageDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:dedup-" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE processed_messages (message_key VARCHAR(191) NOT NULL PRIMARY KEY, "
+                + "processed_at TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3))");
+        jdbcTemplate.execute("CREATE TABLE efectos (message_id VARCHAR(64))");
+        deduplicator = new MessageDeduplicator(jdbcTemplate, new DataSourceTransactionManager(dataSource), 1000,
+                Duration.ofMinutes(5), Duration.ofHours(1));
+    }
+
+    @Test
+    void elDuplicadoSeDescartaSinEjecutarElListener() throws Throwable {
+        AtomicInteger ejecuciones = new AtomicInteger();
+        Message message = mensaje("orden-1", "m-1");
+
+        deduplicator.invoke(invocacion(message, data -> ejecuciones.incrementAndGet()));
+        deduplicator.invoke(invocacion(mensaje("orden-1", "m-1"), data -> ejecuciones.incrementAndGet()));
+
+        assertThat(ejecuciones.get()).isEqualTo(1);
+        assertThat(claves()).containsExactly("orden-1:m-1");
+    }
+
+    @Test
+    void siElListenerFallaSeDeshacenLaClaveYSusEscrituras() throws Throwable {
+        Message message = mensaje("orden-1", "m-1");
+
+        assertThatThrownBy(() -> deduplicator.invoke(invocacion(message, data -> {
+            jdbcTemplate.update("INSERT INTO efectos VALUES ('m-1')");
+            throw new IllegalStateException("fallo del listener");
+        }))).isInstanceOf(IllegalStateException.class).hasMessage("fallo del listener");
+        assertThat(claves()).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM efectos", Integer.class)).isZero();
+
+        // La redelivery se procesa y sus escrituras se confirman junto con la clave
+        deduplicator.invoke(invocacion(message, data -> jdbcTemplate.update("INSERT INTO efectos VALUES ('m-1')")));
+        assertThat(claves()).containsExactly("orden-1:m-1");
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM efectos", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void dosEntregasConcurrentesEjecutanElListenerUnaSolaVez() throws Exception {
+        AtomicInteger ejecuciones = new AtomicInteger();
+        CountDownLatch dentro = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+
+        CompletableFuture<Void> primera = CompletableFuture.runAsync(() -> invocar(mensaje("orden-1", "m-1"), data -> {
+            ejecuciones.incrementAndGet();
+            dentro.countDown();
+            esperar(soltar);
+        }));
+        assertThat(dentro.await(5, TimeUnit.SECONDS)).isTrue();
+        // La segunda entrega llega mientras la primera sigue dentro del listener
+        CompletableFuture<Void> segunda = CompletableFuture.runAsync(
+                () -> invocar(mensaje("orden-1", "m-1"), data -> ejecuciones.incrementAndGet()));
+        Thread.sleep(200);
+        soltar.countDown();
+
+        CompletableFuture.allOf(primera, segunda).get(10, TimeUnit.SECONDS);
+        assertThat(ejecuciones.get()).isEqualTo(1);
+    }
+
+    @Test
+    void elLoteLlegaSinDuplicadosNiMensajesYaProcesados() throws Throwable {
+        deduplicator.invoke(invocacion(mensaje("orden-1", "m-1"), data -> { }));
+        List<Message> recibidos = new ArrayList<>();
+
+        deduplicator.invoke(invocacion(List.of(mensaje("orden-1", "m-1"), mensaje("orden-2", "m-2"),
+                mensaje("orden-2", "m-2"), mensaje("orden-3", "m-3")), data -> {
+                    for (Object message : (List<?>) data) {
+                        recibidos.add((Message) message);
+                    }
+                }));
+
+        assertThat(recibidos).extracting(message -> message.getMessageProperties().getMessageId())
+                .containsExactly("m-2", "m-3");
+        assertThat(claves()).containsExactlyInAnyOrder("orden-1:m-1", "orden-2:m-2", "orden-3:m-3");
+    }
+
+    @Test
+    void sinMessageIdNoSeDeduplica() throws Throwable {
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        deduplicator.invoke(invocacion(mensaje("orden-1", null), data -> ejecuciones.incrementAndGet()));
+        deduplicator.invoke(invocacion(mensaje("orden-1", null), data -> ejecuciones.incrementAndGet()));
+
+        assertThat(ejecuciones.get()).isEqualTo(2);
+        assertThat(claves()).isEmpty();
+    }
+
+    private List<String> claves() {
+        return jdbcTemplate.queryForList("SELECT message_key FROM processed_messages", String.class);
+    }
+
+    private void invocar(Message message, Listener listener) {
+        try {
+            deduplicator.invoke(invocacion(message, listener));
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Message mensaje(String ordenId, String messageId) {
+        MessageProperties properties = new MessageProperties();
+        properties.setMessageId(messageId);
+        properties.setHeader(SagaMessageConverters.ORDEN_ID_HEADER, ordenId);
+        return new Message(new byte[0], properties);
+    }
+
+    @FunctionalInterface
+    private interface Listener {
+
+        void recibir(Object data) throws Exception;
+    }
+
+    // Imita ContainerDelegate.invokeListener(Channel, Object): el advice puede cambiar data
+    private static MethodInvocation invocacion(Object data, Listener listener) {
+        Object[] arguments = { null, data };
+        return new MethodInvocation() {
+            @Override
+            public Method getMethod() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Object[] getArguments() {
+                return arguments;
+            }
+
+            @Override
+            public Object proceed() throws Throwable {
+                listener.recibir(arguments[1]);
+                return null;
+            }
+
+            @Override
+            public Object getThis() {
+                return null;
+            }
+
+            @Override
+            public AccessibleObject getStaticPart() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package com.distribuidora.saga.events.ids;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+class OrdenIdsTest {
+
+    @Test
+    void losIdsSonUuidV7EstrictamenteCrecientes() {
+        List<UUID> ids = new ArrayList<>();
+        // Más ids que valores del contador: obliga a pasar de milisegundo
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(OrdenIds.nuevo());
+        }
+
+        for (int i = 1; i < ids.size(); i++) {
+            assertThat(ids.get(i).version()).isEqualTo(7);
+            assertThat(ids.get(i).variant()).isEqualTo(2);
+            // Orden de bytes sin signo, el mismo que usa el índice BINARY(16) de MySQL
+            assertThat(Arrays.compareUnsigned(OrdenIds.aBytes(ids.get(i - 1)), OrdenIds.aBytes(ids.get(i))))
+                    .isNegative();
+        }
+    }
+
+    @Test
+    void losBytesSonBigEndianComoUuidToBin() {
+        UUID id = UUID.fromString("0190a3b4-c5d6-7e8f-9a0b-1c2d3e4f5a6b");
+
+        assertThat(OrdenIds.aBytes(id.toString())).containsExactly(0x01, 0x90, 0xa3, 0xb4, 0xc5, 0xd6, 0x7e, 0x8f,
+                0x9a, 0x0b, 0x1c, 0x2d, 0x3e, 0x4f, 0x5a, 0x6b);
+    }
+
+    @Test
+    void soloSeAceptaElFormatoCanonico() {
+        assertThat(OrdenIds.esValido("0190a3b4-c5d6-7e8f-9a0b-1c2d3e4f5a6b")).isTrue();
+        // UUID.fromString acepta grupos abreviados; la columna y los eventos no
+        assertThat(OrdenIds.esValido("1-2-3-4-5")).isFalse();
+        assertThat(OrdenIds.esValido("orden-1")).isFalse();
+        assertThat(OrdenIds.esValido(null)).isFalse();
+        assertThatThrownBy(() -> OrdenIds.aBytes("orden-1")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
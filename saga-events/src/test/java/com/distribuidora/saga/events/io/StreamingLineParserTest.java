@@ -0,0 +1,123 @@
+package com.distribuidora.saga.events.io;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.distribuidora.saga.events.io.StreamingLineParser.Formato;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class StreamingLineParserTest {
+
+    record Fila(String sku, String nombre, Integer stock) {
+    }
+
+    private final StreamingLineParser<Fila> parser = new StreamingLineParser<>(new ObjectMapper(), Fila.class,
+            List.of("sku", "nombre", "stock"), 2, campos -> new Fila(campos.get(0), campos.get(1),
+                    campos.size() == 3 ? Integer.valueOf(campos.get(2)) : null));
+
+    private final List<String> leidas = new ArrayList<>();
+    private final List<String> errores = new ArrayList<>();
+
+    @Test
+    void laCabeceraExactaSeSaltaSinDistinguirMayusculas() throws IOException {
+        long filas = leer(Formato.CSV, " SKU , Nombre,stock\nA-1,Tornillo,5\n");
+
+        assertThat(filas).isEqualTo(1);
+        assertThat(leidas).containsExactly("2:A-1|Tornillo|5");
+    }
+
+    @Test
+    void unaPrimeraFilaQueEmpiezaComoLaCabeceraEsUnDato() throws IOException {
+        long filas = leer(Formato.CSV, "SKU-001,Tornillo,5\nsku,otro,1\n");
+
+        assertThat(filas).isEqualTo(2);
+        // Sólo la primera línea puede ser cabecera
+        assertThat(leidas).containsExactly("1:SKU-001|Tornillo|5", "2:sku|otro|1");
+    }
+
+    @Test
+    void laCabeceraPuedeOmitirLasColumnasOpcionales() throws IOException {
+        leer(Formato.CSV, "sku,nombre\nA-1,Tornillo\n");
+
+        assertThat(leidas).containsExactly("2:A-1|Tornillo|null");
+    }
+
+    @Test
+    void lasComillasAdmitenComasYComillasEscapadas() throws IOException {
+        leer(Formato.CSV, "A-1,\"Tornillo, \"\"M8\"\"\",5\n");
+
+        assertThat(leidas).containsExactly("1:A-1|Tornillo, \"M8\"|5");
+    }
+
+    @Test
+    void lasFilasInvalidasSeInformanConSuLineaYLaLecturaSigue() throws IOException {
+        long filas = leer(Formato.CSV, "A-1\n\nA-2,Tuerca,x\nA-3,Arandela,1,sobra\nA-4,Clavo,2\n");
+
+        assertThat(filas).isEqualTo(4);
+        assertThat(leidas).containsExactly("5:A-4|Clavo|2");
+        assertThat(errores).containsExactly(
+                "1:Se esperaban 2 a 3 columnas (sku,nombre,stock) y hay 1",
+                "3:For input string: \"x\"",
+                "4:Se esperaban 2 a 3 columnas (sku,nombre,stock) y hay 4");
+    }
+
+    @Test
+    void ndjsonConvierteCadaLineaEInformaLasMalFormadas() throws IOException {
+        long filas = leer(Formato.NDJSON, "{\"sku\":\"A-1\",\"nombre\":\"Tornillo\",\"stock\":5}\n{roto\n\n");
+
+        assertThat(filas).isEqualTo(2);
+        assertThat(leidas).containsExactly("1:A-1|Tornillo|5");
+        assertThat(errores).hasSize(1).first().asString().startsWith("2:");
+    }
+
+    @Test
+    void unaLineaNdjsonNullEsUnErrorDeLaLineaYNoLlegaAlDestino() throws IOException {
+        long filas = leer(Formato.NDJSON, "null\n{\"sku\":\"A-1\",\"nombre\":\"Tornillo\",\"stock\":5}\n");
+
+        assertThat(filas).isEqualTo(2);
+        assertThat(leidas).containsExactly("2:A-1|Tornillo|5");
+        assertThat(errores).containsExactly("1:Se esperaba un objeto JSON y la línea es null");
+    }
+
+    @Test
+    void elDestinoPuedeRechazarUnaFila() throws IOException {
+        parser.leer(cuerpo("A-1,Tornillo,-1\n"), Formato.CSV, new StreamingLineParser.Destino<>() {
+            @Override
+            public void fila(long linea, Fila valor) {
+                throw new IllegalArgumentException("El stock no puede ser negativo");
+            }
+
+            @Override
+            public void error(long linea, String mensaje) {
+                errores.add(linea + ":" + mensaje);
+            }
+        });
+
+        assertThat(errores).containsExactly("1:El stock no puede ser negativo");
+    }
+
+    private long leer(Formato formato, String texto) throws IOException {
+        return parser.leer(cuerpo(texto), formato, new StreamingLineParser.Destino<>() {
+            @Override
+            public void fila(long linea, Fila valor) {
+                leidas.add(linea + ":" + valor.sku() + "|" + valor.nombre() + "|" + valor.stock());
+            }
+
+            @Override
+            public void error(long linea, String mensaje) {
+                errores.add(linea + ":" + mensaje);
+            }
+        });
+    }
+
+    private static ByteArrayInputStream cuerpo(String texto) {
+        return new ByteArrayInputStream(texto.getBytes(StandardCharsets.UTF_8));
+    }
+}
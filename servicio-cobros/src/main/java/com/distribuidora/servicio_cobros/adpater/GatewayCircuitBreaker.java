@@ -0,0 +1,59 @@
+package com.distribuidora.servicio_cobros.adpater;
+
+// Circuit breaker de la pasarela. Tras umbral-fallos errores seguidos (excepciones o
+// timeouts, no cobros rechazados) el circuito se abre y las llamadas fallan al momento
+// durante apertura-ms. Después se deja pasar una única llamada de prueba: si responde,
+// el circuito se cierra; si falla, vuelve a abrirse.
+class GatewayCircuitBreaker {
+
+    enum Estado { CERRADO, ABIERTO, SEMIABIERTO }
+
+    private final int umbralFallos;
+    private final long aperturaNanos;
+
+    private Estado estado = Estado.CERRADO;
+    private int fallosSeguidos;
+    private long abiertoDesde;
+    private boolean pruebaEnCurso;
+
+    GatewayCircuitBreaker(int umbralFallos, long aperturaMs) {
+        this.umbralFallos = umbralFallos;
+        this.aperturaNanos = aperturaMs * 1_000_000;
+    }
+
+    synchronized boolean permitir() {
+        if (estado == Estado.ABIERTO) {
+            if (System.nanoTime() - abiertoDesde < aperturaNanos) {
+                return false;
+            }
+            estado = Estado.SEMIABIERTO;
+            pruebaEnCurso = false;
+        }
+        if (estado == Estado.SEMIABIERTO) {
+            if (pruebaEnCurso) {
+                return false;
+            }
+            pruebaEnCurso = true;
+        }
+        return true;
+    }
+
+    synchronized void exito() {
+        estado = Estado.CERRADO;
+        fallosSeguidos = 0;
+        pruebaEnCurso = false;
+    }
+
+    synchronized void fallo() {
+        fallosSeguidos++;
+        if (estado == Estado.SEMIABIERTO || fallosSeguidos >= umbralFallos) {
+            estado = Estado.ABIERTO;
+            abiertoDesde = System.nanoTime();
+            pruebaEnCurso = false;
+        }
+    }
+
+    synchronized Estado estado() {
+        return estado;
+    }
+}
@@ -0,0 +1,12 @@
+package com.distribuidora.servicio_cobros.adpater;
+
+// La llamada no llegó a salir hacia la pasarela (bulkhead lleno o circuito abierto): se
+// puede reintentar sin riesgo de cobrar dos veces. Un timeout no lanza esta excepción:
+// la pasarela pudo cobrar igualmente, así que el pago queda PENDIENTE y se reintenta con
+// la misma clave de idempotencia.
+public class PasarelaNoDisponibleException extends RuntimeException {
+
+    public PasarelaNoDisponibleException(String message) {
+        super(message);
+    }
+}
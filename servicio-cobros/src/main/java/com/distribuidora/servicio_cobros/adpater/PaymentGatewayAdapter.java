@@ -1,5 +1,33 @@
 package com.distribuidora.servicio_cobros.adpater;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Contrato asíncrono: la pasarela responde más tarde y el llamador no bloquea su hilo
+// (ni una conexión a la base de datos) mientras espera. El futuro se completa con el
+// resultado del cobro o con un error si la pasarela no respondió.
+//
+// Cada cobro lleva una clave de idempotencia (el ordenId): si se repite con la misma
+// clave, la pasarela devuelve el resultado del primero en lugar de cobrar otra vez. Es lo
+// que permite reintentar un cobro cuyo resultado no se conoce (ej. tras un timeout).
 public interface PaymentGatewayAdapter {
-    boolean realizarCobro(double monto);
-}
\ No newline at end of file
+
+    record Cobro(String claveIdempotencia, double monto) {
+    }
+
+    CompletableFuture<Boolean> realizarCobro(String claveIdempotencia, double monto);
+
+    // Autorización por lotes: un resultado por cobro, en el mismo orden. Las pasarelas sin
+    // API de lotes usan esta implementación, que pide los cobros uno a uno.
+    default CompletableFuture<List<Boolean>> realizarCobros(List<Cobro> cobros) {
+        List<CompletableFuture<Boolean>> resultados = cobros.stream()
+                .map(cobro -> realizarCobro(cobro.claveIdempotencia(), cobro.monto()))
+                .toList();
+        return CompletableFuture.allOf(resultados.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> resultados.stream().map(CompletableFuture::join).toList());
+    }
+
+    // Devuelve un cobro ya realizado (compensación de la saga). También es idempotente por
+    // clave: un reembolso sin respuesta se reintenta con la misma clave sin devolver dos veces.
+    CompletableFuture<Boolean> reembolsar(String claveIdempotencia, double monto);
+}
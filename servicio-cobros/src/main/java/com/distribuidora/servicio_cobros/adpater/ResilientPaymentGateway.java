@@ -0,0 +1,127 @@
+package com.distribuidora.servicio_cobros.adpater;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Envuelve la pasarela real con tres protecciones:
+//  - bulkhead: como mucho max-concurrentes llamadas en curso; las demás fallan al momento
+//    en lugar de encolarse sin límite,
+//  - timeout: el llamador deja de esperar tras timeout-ms,
+//  - circuit breaker: si la pasarela falla seguido, se deja de llamarla un tiempo.
+// Es el adaptador que reciben los servicios (@Primary).
+@Primary
+@Component
+public class ResilientPaymentGateway implements PaymentGatewayAdapter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResilientPaymentGateway.class);
+
+    private final PaymentGatewayAdapter delegate;
+    private final Semaphore bulkhead;
+    private final int maxConcurrentes;
+    private final long timeoutMs;
+    private final GatewayCircuitBreaker circuito;
+
+    private final Counter rechazadas;
+    private final Counter timeouts;
+
+    public ResilientPaymentGateway(@Qualifier("simulatedPaymentGateway") PaymentGatewayAdapter delegate,
+            MeterRegistry meterRegistry,
+            @Value("${pasarela.max-concurrentes}") int maxConcurrentes,
+            @Value("${pasarela.timeout-ms}") long timeoutMs,
+            @Value("${pasarela.circuito.umbral-fallos}") int umbralFallos,
+            @Value("${pasarela.circuito.apertura-ms}") long aperturaMs) {
+        this.delegate = delegate;
+        this.bulkhead = new Semaphore(maxConcurrentes);
+        this.maxConcurrentes = maxConcurrentes;
+        this.timeoutMs = timeoutMs;
+        this.circuito = new GatewayCircuitBreaker(umbralFallos, aperturaMs);
+
+        Gauge.builder("payments.gateway.in_flight", bulkhead, permits -> maxConcurrentes - permits.availablePermits())
+                .description("Llamadas a la pasarela en curso")
+                .register(meterRegistry);
+        Gauge.builder("payments.gateway.circuit_open", circuito,
+                c -> c.estado() == GatewayCircuitBreaker.Estado.CERRADO ? 0 : 1)
+                .description("1 si el circuito de la pasarela está abierto o semiabierto")
+                .register(meterRegistry);
+        this.rechazadas = meterRegistry.counter("payments.gateway.rejected");
+        this.timeouts = meterRegistry.counter("payments.gateway.timeouts");
+    }
+
+    @Override
+    public CompletableFuture<Boolean> realizarCobro(String claveIdempotencia, double monto) {
+        return ejecutar(() -> delegate.realizarCobro(claveIdempotencia, monto));
+    }
+
+    // Un lote ocupa un único hueco del bulkhead: es una sola llamada a la pasarela
+    @Override
+    public CompletableFuture<List<Boolean>> realizarCobros(List<Cobro> cobros) {
+        return ejecutar(() -> delegate.realizarCobros(cobros));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> reembolsar(String claveIdempotencia, double monto) {
+        return ejecutar(() -> delegate.reembolsar(claveIdempotencia, monto));
+    }
+
+    private <T> CompletableFuture<T> ejecutar(Supplier<CompletableFuture<T>> llamada) {
+        // Primero el bulkhead: si el circuito diera paso a la llamada de prueba y luego no
+        // hubiera hueco, la prueba quedaría reservada sin ejecutarse
+        if (!bulkhead.tryAcquire()) {
+            rechazadas.increment();
+            return CompletableFuture.failedFuture(
+                    new PasarelaNoDisponibleException("Pasarela saturada: " + maxConcurrentes + " llamadas en curso"));
+        }
+        if (!circuito.permitir()) {
+            bulkhead.release();
+            rechazadas.increment();
+            return CompletableFuture.failedFuture(new PasarelaNoDisponibleException("Circuito de la pasarela abierto"));
+        }
+
+        CompletableFuture<T> respuesta;
+        try {
+            respuesta = llamada.get();
+        } catch (RuntimeException e) {
+            respuesta = CompletableFuture.failedFuture(e);
+        }
+        // El hueco del bulkhead se libera cuando la pasarela contesta de verdad, no con el
+        // timeout: así max-concurrentes acota las llamadas reales contra la pasarela
+        respuesta.whenComplete((resultado, error) -> bulkhead.release());
+
+        // copy(): orTimeout completaría el futuro de la pasarela y liberaría el hueco antes de tiempo
+        return respuesta.copy()
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenComplete((resultado, error) -> {
+                    if (error == null) {
+                        circuito.exito();
+                        return;
+                    }
+                    if (causa(error) instanceof TimeoutException) {
+                        timeouts.increment();
+                        LOGGER.warn("La pasarela no respondió en {} ms", timeoutMs);
+                    } else {
+                        LOGGER.warn("Error en la llamada a la pasarela: {}", causa(error).getMessage());
+                    }
+                    circuito.fallo();
+                });
+    }
+
+    private static Throwable causa(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+}
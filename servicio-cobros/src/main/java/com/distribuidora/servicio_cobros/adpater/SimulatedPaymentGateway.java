@@ -1,15 +1,72 @@
 package com.distribuidora.servicio_cobros.adpater;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 @Component // Le decimos a Spring que gestione este componente
 public class SimulatedPaymentGateway implements PaymentGatewayAdapter {
 
+    private final long latenciaMs;
+    private final long variacionMs;
+    private final long costePorCobroMs;
+    // Resultado de cada clave de idempotencia ya cobrada, como guardaría una pasarela real
+    private final Cache<String, Boolean> cobrados = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofDays(1))
+            .maximumSize(1_000_000)
+            .build();
+
+    // Latencia inyectada para pruebas de carga: cada llamada tarda latencia-ms más un
+    // extra aleatorio de hasta variacion-ms, y además coste-por-cobro-ms por cada cobro
+    // que incluye. Un lote paga la latencia una sola vez. La espera no ocupa ningún hilo.
+    public SimulatedPaymentGateway(@Value("${pasarela.simulada.latencia-ms}") long latenciaMs,
+            @Value("${pasarela.simulada.variacion-ms}") long variacionMs,
+            @Value("${pasarela.simulada.coste-por-cobro-ms}") long costePorCobroMs) {
+        this.latenciaMs = latenciaMs;
+        this.variacionMs = variacionMs;
+        this.costePorCobroMs = costePorCobroMs;
+    }
+
+    @Override
+    public CompletableFuture<Boolean> realizarCobro(String claveIdempotencia, double monto) {
+        return responder(cobrar(new Cobro(claveIdempotencia, monto)), 1);
+    }
+
     @Override
-    public boolean realizarCobro(double monto) {
-        // Lógica de simulación: los pagos cuyo monto termine en .50 fallarán.
-        // Esto nos permite controlar el resultado para las pruebas.
-        // Por ejemplo, un monto de 100.00 tendrá éxito, uno de 100.50 fallará.
-        return monto % 1 != 0.5;
+    public CompletableFuture<List<Boolean>> realizarCobros(List<Cobro> cobros) {
+        return responder(cobros.stream().map(this::cobrar).toList(), cobros.size());
+    }
+
+    @Override
+    public CompletableFuture<Boolean> reembolsar(String claveIdempotencia, double monto) {
+        // En la simulación los reembolsos siempre se aceptan, así que repetir la clave no
+        // cambia el resultado
+        return responder(true, 1);
+    }
+
+    // Lógica de simulación: los pagos cuyo monto termine en .50 fallarán.
+    // Esto nos permite controlar el resultado para las pruebas.
+    // Por ejemplo, un monto de 100.00 tendrá éxito, uno de 100.50 fallará.
+    // Un cobro repetido con la misma clave devuelve el primer resultado.
+    private boolean cobrar(Cobro cobro) {
+        return cobrados.get(cobro.claveIdempotencia(), clave -> cobro.monto() % 1 != 0.5);
+    }
+
+    private <T> CompletableFuture<T> responder(T resultado, int cobros) {
+        long espera = latenciaMs + (variacionMs > 0 ? ThreadLocalRandom.current().nextLong(variacionMs + 1) : 0)
+                + costePorCobroMs * cobros;
+        if (espera == 0) {
+            return CompletableFuture.completedFuture(resultado);
+        }
+        return CompletableFuture.supplyAsync(() -> resultado,
+                CompletableFuture.delayedExecutor(espera, TimeUnit.MILLISECONDS));
     }
-}
\ No newline at end of file
+}
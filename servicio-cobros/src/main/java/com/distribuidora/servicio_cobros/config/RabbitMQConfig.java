@@ -1,8 +1,9 @@
 package com.distribuidora.servicio_cobros.config;
 
+import java.time.Duration;
 
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.TopicExchange;
-import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -10,6 +11,14 @@ import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.support.converter.MessageConverter;
+import com.distribuidora.saga.events.amqp.SagaMessageConverters;
+import com.distribuidora.saga.events.dedup.MessageDeduplicator;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @Configuration
 public class RabbitMQConfig {
@@ -27,6 +36,18 @@ public class RabbitMQConfig {
         return new Queue(queuePaymentsName);
     }
 
+    // Compensación: órdenes sin stock cuyo pago hay que reembolsar
+    @Bean
+    public Queue compensationQueue(@Value("${rabbitmq.queue.payments_compensation.name}") String queueName) {
+        return new Queue(queueName);
+    }
+
+    @Bean
+    public Binding compensationBinding(Queue compensationQueue,
+            @Value("${rabbitmq.routing.key.stock_failed}") String routingKey) {
+        return BindingBuilder.bind(compensationQueue).to(exchange()).with(routingKey);
+    }
+
     @Bean
     public TopicExchange exchange() {
         return new TopicExchange(exchangeName);
@@ -62,8 +83,94 @@ public class RabbitMQConfig {
                 .with(routingKeyOrderCreated);
     }
 
+    /*
+     * Fábrica de contenedores para los @RabbitListener de este servicio. Por defecto
+     * Spring AMQP usa un único consumidor; aquí la concurrencia, el prefetch y el uso
+     * de hilos virtuales (Java 21) se ajustan por cola desde application.properties.
+     *
+     * El listener de pagos es asíncrono (devuelve un CompletableFuture), así que el ack es
+     * MANUAL: el contenedor confirma cada mensaje cuando su futuro se completa. El prefetch
+     * acota cuántos pagos tiene en curso cada consumidor. No lleva el MessageDeduplicator,
+     * que registraría el mensaje como procesado antes de que termine el pago; el cobro es
+     * idempotente por sí mismo (PaymentService reserva cada orden con una fila PENDIENTE
+     * única y la pasarela recibe el ordenId como clave de idempotencia).
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            @Value("${rabbitmq.listener.payments.concurrency}") int concurrency,
+            @Value("${rabbitmq.listener.payments.max-concurrency}") int maxConcurrency,
+            @Value("${rabbitmq.listener.payments.prefetch}") int prefetch,
+            @Value("${rabbitmq.listener.payments.virtual-threads}") boolean virtualThreads) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(maxConcurrency);
+        factory.setPrefetchCount(prefetch);
+        if (virtualThreads) {
+            factory.setTaskExecutor(new VirtualThreadTaskExecutor("payments-listener-"));
+        }
+        return factory;
+    }
+
+    /*
+     * Fábrica para el modo por lotes: entrega al listener hasta batch-size mensajes o
+     * lo que haya llegado tras batch-timeout-ms, lo que ocurra primero. El lote entero
+     * se confirma (ack) cuando el listener termina. Tampoco lleva el MessageDeduplicator:
+     * su transacción seguiría abierta mientras el lote espera a la pasarela, y el cobro
+     * ya es idempotente en PaymentService.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            @Value("${rabbitmq.listener.payments.concurrency}") int concurrency,
+            @Value("${rabbitmq.listener.payments.batch.size}") int batchSize,
+            @Value("${rabbitmq.listener.payments.batch.timeout-ms}") long batchTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setBatchReceiveTimeout(batchTimeoutMs);
+        factory.setPrefetchCount(batchSize);
+        return factory;
+    }
+
+    /*
+     * Fábrica por lotes de la compensación: los reembolsos de las órdenes sin stock que
+     * llegan juntas se guardan en una sola transacción.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory compensationRabbitListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            MessageDeduplicator messageDeduplicator,
+            @Value("${rabbitmq.listener.compensation.batch.size}") int batchSize,
+            @Value("${rabbitmq.listener.compensation.batch.timeout-ms}") long batchTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAdviceChain(messageDeduplicator);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setBatchReceiveTimeout(batchTimeoutMs);
+        factory.setPrefetchCount(batchSize);
+        return factory;
+    }
+
+    @Bean
+    public MessageDeduplicator messageDeduplicator(JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${rabbitmq.dedup.cache-size}") long cacheSize,
+            @Value("${rabbitmq.dedup.cache-ttl-minutes}") long cacheTtlMinutes,
+            @Value("${rabbitmq.dedup.retention-hours}") long retentionHours) {
+        return new MessageDeduplicator(jdbcTemplate, transactionManager, cacheSize, Duration.ofMinutes(cacheTtlMinutes),
+                Duration.ofHours(retentionHours));
+    }
+
     @Bean
-    public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter messageConverter(@Value("${rabbitmq.serialization.format}") String format) {
+        return SagaMessageConverters.create(format);
     }
 }
\ No newline at end of file
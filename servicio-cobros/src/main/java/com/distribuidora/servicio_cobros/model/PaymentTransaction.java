@@ -1,22 +1,40 @@
 package com.distribuidora.servicio_cobros.model;
 
+import java.util.UUID;
+
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
 import jakarta.persistence.*;
 import lombok.Data;
 
 @Data
 @Entity
-@Table(name = "payment_transactions")
+// Un único pago por orden: la fila PENDIENTE que se inserta antes de cobrar es la que
+// impide que dos entregas del mismo OrdenCreada cobren dos veces
+// idx_pagos_status sirve la búsqueda periódica de reembolsos pendientes
+@Table(name = "payment_transactions", uniqueConstraints = @UniqueConstraint(name = "uk_pagos_orden",
+        columnNames = "orden_id"), indexes = @Index(name = "idx_pagos_status", columnList = "status, id"))
 public class PaymentTransaction {
 
+    // Secuencia con allocationSize: el id se reserva en memoria al hacer persist, sin un
+    // INSERT por fila como IDENTITY, y Hibernate puede agrupar los INSERT en lotes JDBC
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_seq")
+    @SequenceGenerator(name = "payment_seq", sequenceName = "payment_seq", allocationSize = 50)
     private Long id; // ID interno de la transacción
 
-    private String transactionId; // ID de cara al negocio (lo generaremos)
+    private String transactionId; // ID de cara al negocio, generado antes de guardar (UUIDv7)
 
-    private String ordenId;
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(columnDefinition = "BINARY(16)")
+    private UUID ordenId;
 
-    private String status; // "EXITOSO" o "FALLIDO"
+    // "PENDIENTE" (cobro pedido, resultado aún desconocido), "EXITOSO", "FALLIDO",
+    // "REEMBOLSADO", "ANULADA", "ANULACION_PENDIENTE" (la compensación llegó con el
+    // cobro en curso), "REEMBOLSO_PENDIENTE" (el reembolso no tuvo respuesta y se
+    // reintenta) o "REEMBOLSO_RECHAZADO" (la pasarela lo rechazó: revisión manual)
+    private String status;
 
     private double monto;
 }
\ No newline at end of file
@@ -1,10 +1,41 @@
 package com.distribuidora.servicio_cobros.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import com.distribuidora.servicio_cobros.model.PaymentTransaction;
 
+import jakarta.persistence.LockModeType;
+
 @Repository
-public interface PaymentTransactionRepository extends JpaRepository<PaymentTransaction, Long> {}
+public interface PaymentTransactionRepository extends JpaRepository<PaymentTransaction, Long> {
+
+    // Transacciones de las órdenes a compensar, bloqueadas para no reembolsar dos veces
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<PaymentTransaction> findByOrdenIdIn(Collection<UUID> ordenIds);
+
+    // Pagos ya registrados de un lote de órdenes, sin bloquearlos
+    List<PaymentTransaction> findAllByOrdenIdIn(Collection<UUID> ordenIds);
+
+    Optional<PaymentTransaction> findByOrdenId(UUID ordenId);
+
+    // Órdenes cuyo reembolso quedó sin respuesta, las más antiguas primero
+    @Query("SELECT t.ordenId FROM PaymentTransaction t WHERE t.status = 'REEMBOLSO_PENDIENTE' ORDER BY t.id")
+    List<UUID> findOrdenesConReembolsoPendiente(Limit limit);
+
+    // Cambia el estado sólo si el pago sigue en el esperado: devuelve 0 si otra entrega o
+    // la compensación lo cambiaron entretanto
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE PaymentTransaction t SET t.status = :status, t.transactionId = :transactionId "
+            + "WHERE t.id = :id AND t.status = :esperado")
+    int cambiarEstado(Long id, String esperado, String status, String transactionId);
+}
@@ -1,26 +1,105 @@
 package com.distribuidora.servicio_cobros.service;
 
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import com.distribuidora.servicio_cobros.dto.OrdenCreadaEvent;
+import com.distribuidora.saga.events.OrdenCreadaEvent;
+import com.distribuidora.saga.events.StockFallidoEvent;
+import com.distribuidora.saga.events.ids.OrdenIds;
 
 @Component
 public class CobrosEventsListener {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CobrosEventsListener.class);
     private final PaymentService paymentService;
+    private final PaymentCompensationService paymentCompensationService;
+    private final MessageConverter messageConverter;
+    private final long retryDelayMs;
 
-    public CobrosEventsListener(PaymentService paymentService) {
+    public CobrosEventsListener(PaymentService paymentService, PaymentCompensationService paymentCompensationService,
+            MessageConverter messageConverter,
+            @Value("${rabbitmq.listener.payments.retry-delay-ms}") long retryDelayMs) {
         this.paymentService = paymentService;
+        this.paymentCompensationService = paymentCompensationService;
+        this.messageConverter = messageConverter;
+        this.retryDelayMs = retryDelayMs;
     }
 
-    @RabbitListener(queues = "${rabbitmq.queue.payments.name}")
-    public void onOrdenCreada(OrdenCreadaEvent event) {
+    // El listener devuelve el futuro del pago y no espera a la pasarela. Con ack MANUAL el
+    // contenedor confirma el mensaje cuando el pago está guardado, o lo devuelve a la cola
+    // si la pasarela falló.
+    @RabbitListener(queues = "${rabbitmq.queue.payments.name}",
+            autoStartup = "#{!${rabbitmq.listener.payments.batch.enabled}}")
+    public CompletableFuture<Void> onOrdenCreada(OrdenCreadaEvent event) {
         LOGGER.info("Evento OrdenCreada recibido en Listener de Cobros -> {}", event);
-        paymentService.procesarPago(event);
+        return paymentService.procesarPago(event)
+                // Con el circuito abierto una redelivery inmediata volvería a fallar: el
+                // mensaje vuelve a la cola tras retry-delay-ms
+                .exceptionallyComposeAsync(error -> {
+                    LOGGER.warn("Pago de la orden {} sin completar, se devuelve a la cola: {}", event.ordenId(),
+                            error.getMessage());
+                    return CompletableFuture.failedFuture(error);
+                }, CompletableFuture.delayedExecutor(retryDelayMs, TimeUnit.MILLISECONDS));
+    }
+
+    // Modo por lotes: hasta batch-size mensajes (o lo que llegue en batch-timeout-ms) se
+    // guardan en una sola transacción y se confirman (ack) juntos
+    @RabbitListener(queues = "${rabbitmq.queue.payments.name}",
+            containerFactory = "batchRabbitListenerContainerFactory",
+            autoStartup = "${rabbitmq.listener.payments.batch.enabled}")
+    public void onOrdenesCreadas(List<Message> messages) {
+        List<OrdenCreadaEvent> events = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            // Un mensaje que no se puede convertir (poison) se descarta solo, sin tumbar el lote
+            try {
+                message.getMessageProperties().setInferredArgumentType(OrdenCreadaEvent.class);
+                events.add((OrdenCreadaEvent) messageConverter.fromMessage(message));
+            } catch (RuntimeException e) {
+                LOGGER.error("Mensaje descartado del lote, no se pudo convertir ({}): {}",
+                        message.getMessageProperties().getMessageId(), e.getMessage());
+            }
+        }
+        if (!events.isEmpty()) {
+            LOGGER.info("Lote de {} eventos OrdenCreada recibido en Listener de Cobros", events.size());
+            paymentService.procesarPagos(events);
+        }
+    }
+
+    // Compensación: las órdenes sin stock se reembolsan por lotes en una sola transacción
+    @RabbitListener(queues = "${rabbitmq.queue.payments_compensation.name}",
+            containerFactory = "compensationRabbitListenerContainerFactory")
+    public void onStockFallido(List<Message> messages) {
+        Set<String> ordenIds = new LinkedHashSet<>();
+        for (Message message : messages) {
+            try {
+                message.getMessageProperties().setInferredArgumentType(StockFallidoEvent.class);
+                StockFallidoEvent event = (StockFallidoEvent) messageConverter.fromMessage(message);
+                if (OrdenIds.esValido(event.ordenId())) {
+                    ordenIds.add(event.ordenId());
+                } else {
+                    LOGGER.warn("StockFallido con ordenId inválido, se descarta -> {}", event);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("Mensaje descartado del lote de compensación, no se pudo convertir ({}): {}",
+                        message.getMessageProperties().getMessageId(), e.getMessage());
+            }
+        }
+        if (!ordenIds.isEmpty()) {
+            LOGGER.info("Lote de {} eventos StockFallido recibido en Listener de Cobros", ordenIds.size());
+            paymentCompensationService.reembolsar(ordenIds);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,130 @@
+package com.distribuidora.servicio_cobros.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.distribuidora.servicio_cobros.adpater.PaymentGatewayAdapter;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Micro-batching de cobros: los cobros que llegan casi a la vez se agrupan y se autorizan
+// con una sola llamada realizarCobros. El lote se envía al llegar a max-size o cuando el
+// primero lleva max-espera-ms esperando, lo que ocurra antes. Cada llamador recibe su
+// propio futuro con el resultado de su cobro.
+@Component
+public class PaymentAuthorizationBatcher implements DisposableBean {
+
+    private record Pendiente(PaymentGatewayAdapter.Cobro cobro, CompletableFuture<Boolean> resultado) {
+    }
+
+    private final PaymentGatewayAdapter paymentGateway;
+    private final boolean enabled;
+    private final int maxSize;
+    private final long maxEsperaMs;
+    private final DistributionSummary tamanoLote;
+    private final ScheduledExecutorService temporizador = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "payment-batch-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private List<Pendiente> pendientes = new ArrayList<>();
+    private ScheduledFuture<?> envioProgramado;
+
+    public PaymentAuthorizationBatcher(PaymentGatewayAdapter paymentGateway, MeterRegistry meterRegistry,
+            @Value("${pasarela.lote.enabled}") boolean enabled,
+            @Value("${pasarela.lote.max-size}") int maxSize,
+            @Value("${pasarela.lote.max-espera-ms}") long maxEsperaMs) {
+        this.paymentGateway = paymentGateway;
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.maxEsperaMs = maxEsperaMs;
+        this.tamanoLote = DistributionSummary.builder("payments.gateway.batch.size")
+                .description("Cobros por llamada de autorización por lotes")
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<Boolean> realizarCobro(String claveIdempotencia, double monto) {
+        if (!enabled) {
+            return paymentGateway.realizarCobro(claveIdempotencia, monto);
+        }
+
+        CompletableFuture<Boolean> resultado = new CompletableFuture<>();
+        List<Pendiente> lote = null;
+        synchronized (this) {
+            pendientes.add(new Pendiente(new PaymentGatewayAdapter.Cobro(claveIdempotencia, monto), resultado));
+            if (pendientes.size() >= maxSize) {
+                lote = tomarPendientes();
+            } else if (envioProgramado == null) {
+                envioProgramado = temporizador.schedule(this::enviarPorTiempo, maxEsperaMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        // El envío es asíncrono: el hilo que completa el lote no espera a la pasarela
+        if (lote != null) {
+            enviar(lote);
+        }
+        return resultado;
+    }
+
+    @Override
+    public void destroy() {
+        temporizador.shutdownNow();
+        enviarPorTiempo();
+    }
+
+    private void enviarPorTiempo() {
+        List<Pendiente> lote;
+        synchronized (this) {
+            lote = tomarPendientes();
+        }
+        if (!lote.isEmpty()) {
+            enviar(lote);
+        }
+    }
+
+    // Se llama con el monitor tomado
+    private List<Pendiente> tomarPendientes() {
+        if (envioProgramado != null) {
+            envioProgramado.cancel(false);
+            envioProgramado = null;
+        }
+        List<Pendiente> lote = pendientes;
+        pendientes = new ArrayList<>();
+        return lote;
+    }
+
+    private void enviar(List<Pendiente> lote) {
+        tamanoLote.record(lote.size());
+        CompletableFuture<List<Boolean>> respuesta;
+        try {
+            respuesta = paymentGateway.realizarCobros(lote.stream().map(Pendiente::cobro).toList());
+        } catch (RuntimeException e) {
+            respuesta = CompletableFuture.failedFuture(e);
+        }
+
+        respuesta.whenComplete((resultados, error) -> {
+            Throwable fallo = error;
+            if (fallo == null && resultados.size() != lote.size()) {
+                fallo = new IllegalStateException("La pasarela devolvió " + resultados.size()
+                        + " resultados para un lote de " + lote.size() + " cobros");
+            }
+            for (int i = 0; i < lote.size(); i++) {
+                if (fallo != null) {
+                    lote.get(i).resultado().completeExceptionally(fallo);
+                } else {
+                    lote.get(i).resultado().complete(resultados.get(i));
+                }
+            }
+        });
+    }
+}
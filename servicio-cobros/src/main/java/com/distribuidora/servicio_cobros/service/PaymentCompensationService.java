@@ -0,0 +1,106 @@
+package com.distribuidora.servicio_cobros.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import com.distribuidora.saga.events.ids.OrdenIds;
+import com.distribuidora.servicio_cobros.adpater.PaymentGatewayAdapter;
+import com.distribuidora.servicio_cobros.model.PaymentTransaction;
+import com.distribuidora.servicio_cobros.repository.PaymentTransactionRepository;
+
+import jakarta.transaction.Transactional;
+
+// Compensación de la saga en cobros: reembolsa las órdenes que no tuvieron stock
+@Service
+public class PaymentCompensationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaymentCompensationService.class);
+
+    private final PaymentGatewayAdapter paymentGateway;
+    private final PaymentTransactionRepository repository;
+
+    public PaymentCompensationService(PaymentGatewayAdapter paymentGateway, PaymentTransactionRepository repository) {
+        this.paymentGateway = paymentGateway;
+        this.repository = repository;
+    }
+
+    // Todo el lote se lee con una consulta y se guarda con un saveAll. Los pagos exitosos
+    // pasan a REEMBOLSADO (la clave de idempotencia del reembolso es el ordenId). Si la
+    // pasarela no responde quedan REEMBOLSO_PENDIENTE y RefundRetryScheduler los vuelve a
+    // pasar por aquí; si lo rechaza quedan REEMBOLSO_RECHAZADO para revisión. Las órdenes
+    // que todavía no se cobraron quedan ANULADA para que su OrdenCreada, si llega después,
+    // no se cobre. El pago de cada orden es una única
+    // fila (uk_pagos_orden), así que la compensación y el cobro no pueden ganar los dos:
+    //  - si el cobro ya reservó la orden (PENDIENTE), pasa a ANULACION_PENDIENTE y es
+    //    PaymentService quien, al conocer el resultado, la anula o la reembolsa;
+    //  - si ambos insertan a la vez, el que pierde falla por la clave duplicada; aquí la
+    //    transacción se revierte y la redelivery encuentra la fila PENDIENTE.
+    @Transactional
+    public void reembolsar(Collection<String> ordenIds) {
+        Set<UUID> ids = ordenIds.stream().map(OrdenIds::parse).collect(Collectors.toSet());
+        List<PaymentTransaction> transactions = repository.findByOrdenIdIn(ids);
+
+        // Los reembolsos del lote se piden a la vez. Se esperan dentro de la transacción
+        // porque las filas bloqueadas son las que evitan reembolsar dos veces la misma orden.
+        Set<UUID> conTransaccion = new HashSet<>();
+        List<PaymentTransaction> cobradas = new ArrayList<>();
+        List<CompletableFuture<Boolean>> reembolsos = new ArrayList<>();
+        List<PaymentTransaction> cambios = new ArrayList<>();
+        for (PaymentTransaction transaction : transactions) {
+            conTransaccion.add(transaction.getOrdenId());
+            String status = transaction.getStatus();
+            if ("EXITOSO".equals(status) || "REEMBOLSO_PENDIENTE".equals(status)) {
+                cobradas.add(transaction);
+                reembolsos.add(
+                        paymentGateway.reembolsar(transaction.getOrdenId().toString(), transaction.getMonto()));
+            } else if ("PENDIENTE".equals(status)) {
+                transaction.setStatus("ANULACION_PENDIENTE");
+                cambios.add(transaction);
+            }
+        }
+
+        for (int i = 0; i < cobradas.size(); i++) {
+            PaymentTransaction transaction = cobradas.get(i);
+            String status;
+            try {
+                status = reembolsos.get(i).join() ? "REEMBOLSADO" : "REEMBOLSO_RECHAZADO";
+            } catch (CompletionException e) {
+                // Sin respuesta no se sabe si se reembolsó: se reintenta con la misma clave
+                LOGGER.warn("Sin respuesta de la pasarela al reembolsar la orden {}, se reintentará: {}",
+                        transaction.getOrdenId(), e.getMessage());
+                status = "REEMBOLSO_PENDIENTE";
+            }
+            if ("REEMBOLSO_RECHAZADO".equals(status)) {
+                LOGGER.error("La pasarela rechazó el reembolso de la orden {}", transaction.getOrdenId());
+            }
+            if (!status.equals(transaction.getStatus())) {
+                transaction.setStatus(status);
+                cambios.add(transaction);
+            }
+        }
+
+        for (UUID ordenId : ids) {
+            if (!conTransaccion.contains(ordenId)) {
+                PaymentTransaction anulada = new PaymentTransaction();
+                anulada.setOrdenId(ordenId);
+                anulada.setStatus("ANULADA");
+                cambios.add(anulada);
+            }
+        }
+
+        repository.saveAll(cambios);
+        LOGGER.info("Compensación de pagos: {} órdenes, {} pagos cambiados, {} anuladas antes de cobrarse", ids.size(),
+                cambios.size() - (ids.size() - conTransaccion.size()), ids.size() - conTransaccion.size());
+    }
+}
@@ -1,16 +1,16 @@
 package com.distribuidora.servicio_cobros.service;
 
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import com.distribuidora.servicio_cobros.dto.PagoExitosoEvent;
-import com.distribuidora.servicio_cobros.dto.PagoFallidoEvent;
+import com.distribuidora.saga.events.PagoExitosoEvent;
+import com.distribuidora.saga.events.PagoFallidoEvent;
+import com.distribuidora.saga.events.outbox.OutboxService;
 
 @Service
 public class PaymentEventProducer {
 
-    private final RabbitTemplate rabbitTemplate;
+    private final OutboxService outboxService;
 
     @Value("${rabbitmq.exchange.name}")
     private String exchangeName;
@@ -21,15 +21,17 @@ public class PaymentEventProducer {
     @Value("${rabbitmq.routing.key.payment_failed}")
     private String routingKeyPaymentFailed;
 
-    public PaymentEventProducer(RabbitTemplate rabbitTemplate) {
-        this.rabbitTemplate = rabbitTemplate;
+    public PaymentEventProducer(OutboxService outboxService) {
+        this.outboxService = outboxService;
     }
 
+    // Ambos deben llamarse en la transacción que guarda el pago: el evento se publica
+    // desde el outbox sólo si el pago quedó registrado
     public void sendPagoExitosoEvent(PagoExitosoEvent event) {
-        rabbitTemplate.convertAndSend(exchangeName, routingKeyPaymentSuccessful, event);
+        outboxService.enqueue(exchangeName, routingKeyPaymentSuccessful, event);
     }
 
     public void sendPagoFallidoEvent(PagoFallidoEvent event) {
-        rabbitTemplate.convertAndSend(exchangeName, routingKeyPaymentFailed, event);
+        outboxService.enqueue(exchangeName, routingKeyPaymentFailed, event);
     }
 }
@@ -2,54 +2,231 @@ package com.distribuidora.servicio_cobros.service;
 
 
 
-import jakarta.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import com.distribuidora.servicio_cobros.adpater.PaymentGatewayAdapter;
-import com.distribuidora.servicio_cobros.dto.OrdenCreadaEvent;
-import com.distribuidora.servicio_cobros.dto.PagoExitosoEvent;
-import com.distribuidora.servicio_cobros.dto.PagoFallidoEvent;
+import com.distribuidora.saga.events.OrdenCreadaEvent;
+import com.distribuidora.saga.events.PagoExitosoEvent;
+import com.distribuidora.saga.events.PagoFallidoEvent;
+import com.distribuidora.saga.events.ids.OrdenIds;
 import com.distribuidora.servicio_cobros.model.PaymentTransaction;
 import com.distribuidora.servicio_cobros.repository.PaymentTransactionRepository;
 
 @Service
 public class PaymentService {
 
-    private final PaymentGatewayAdapter paymentGateway;
+    private static final Logger LOGGER = LoggerFactory.getLogger(PaymentService.class);
+    private static final String PENDIENTE = "PENDIENTE";
+    private static final String ANULACION_PENDIENTE = "ANULACION_PENDIENTE";
+
+    private final PaymentAuthorizationBatcher authorizationBatcher;
     private final PaymentEventProducer eventProducer;
+    private final PaymentCompensationService compensationService;
     private final PaymentTransactionRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    // Las respuestas de la pasarela llegan en sus propios hilos, que no deben bloquearse
+    // con JDBC: el guardado se hace aquí (el pool de conexiones acota la concurrencia real)
+    private final Executor persistencia = new VirtualThreadTaskExecutor("payments-persist-");
 
-    public PaymentService(PaymentGatewayAdapter paymentGateway, PaymentEventProducer eventProducer, PaymentTransactionRepository repository) {
-        this.paymentGateway = paymentGateway;
+    public PaymentService(PaymentAuthorizationBatcher authorizationBatcher, PaymentEventProducer eventProducer,
+            PaymentCompensationService compensationService, PaymentTransactionRepository repository,
+            PlatformTransactionManager transactionManager) {
+        this.authorizationBatcher = authorizationBatcher;
         this.eventProducer = eventProducer;
+        this.compensationService = compensationService;
         this.repository = repository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    @Transactional
-    public void procesarPago(OrdenCreadaEvent orderData) {
+    // Modo individual: primero se reserva el pago de la orden con una fila PENDIENTE (una
+    // transacción corta), luego se pide el cobro sin bloquear el hilo del listener ni
+    // retener ninguna conexión, y cuando la pasarela responde se anota el resultado. El
+    // futuro se completa cuando el resultado está guardado, o con el error de la pasarela:
+    // el mensaje se reintenta y el pago sigue PENDIENTE hasta entonces.
+    public CompletableFuture<Void> procesarPago(OrdenCreadaEvent orderData) {
+        UUID ordenId;
+        try {
+            ordenId = OrdenIds.parse(orderData.ordenId());
+        } catch (IllegalArgumentException e) {
+            LOGGER.error("Orden descartada, no se puede cobrar: {}", e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+        List<PaymentTransaction> pendientes = reclamar(Map.of(ordenId, orderData.montoTotal()));
+        if (pendientes.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return cobrar(pendientes.getFirst()).thenAcceptAsync(
+                transaction -> transactionTemplate.executeWithoutResult(status -> completar(List.of(transaction))),
+                persistencia);
+    }
+
+    // Modo por lotes: todos los cobros del lote se piden a la vez (el bulkhead de la
+    // pasarela acota cuántos van en paralelo) y, cuando han respondido, se anotan todos
+    // los resultados en una sola transacción. Si algún cobro no responde o el guardado
+    // falla, el lote vuelve a la cola: sus pagos siguen PENDIENTE y la redelivery los
+    // pide otra vez con la misma clave de idempotencia, así que nadie se cobra dos veces.
+    public void procesarPagos(List<OrdenCreadaEvent> ordenes) {
+        Map<UUID, Double> montos = new LinkedHashMap<>();
+        for (OrdenCreadaEvent orderData : ordenes) {
+            try {
+                montos.putIfAbsent(OrdenIds.parse(orderData.ordenId()), orderData.montoTotal());
+            } catch (IllegalArgumentException e) {
+                // Un ordenId inválido no debe hacer perder los cobros del resto del lote
+                LOGGER.error("Orden descartada del lote de pagos: {}", e.getMessage());
+            }
+        }
+
+        List<CompletableFuture<PaymentTransaction>> cobros = reclamar(montos).stream().map(this::cobrar).toList();
+        List<PaymentTransaction> transactions = new ArrayList<>(cobros.size());
+        CompletionException sinRespuesta = null;
+        int fallidos = 0;
+        for (CompletableFuture<PaymentTransaction> cobro : cobros) {
+            try {
+                transactions.add(cobro.join());
+            } catch (CompletionException e) {
+                sinRespuesta = e;
+                fallidos++;
+            }
+        }
+
+        if (!transactions.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> completar(transactions));
+        }
+
+        if (sinRespuesta != null) {
+            // Los pagos sin respuesta quedan PENDIENTE: se desconoce si la pasarela cobró
+            LOGGER.warn("{} cobros del lote sin respuesta de la pasarela, se reintentará el lote", fallidos);
+            throw sinRespuesta;
+        }
+    }
 
-        boolean pagoExitoso = paymentGateway.realizarCobro(orderData.getMontoTotal());
+    // Reserva el pago de cada orden: inserta una fila PENDIENTE para las que no tienen
+    // pago y devuelve también las que ya estaban PENDIENTE, cuyo cobro pidió una entrega
+    // anterior sin llegar a anotar el resultado (se vuelve a pedir con la misma clave y la
+    // pasarela devuelve el resultado del primero). Las órdenes con un resultado final
+    // (cobradas, rechazadas o anuladas por falta de stock) no se cobran.
+    private List<PaymentTransaction> reclamar(Map<UUID, Double> montos) {
+        if (montos.isEmpty()) {
+            return List.of();
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                List<PaymentTransaction> registradas = repository.findAllByOrdenIdIn(montos.keySet());
+                Set<UUID> conPago = registradas.stream().map(PaymentTransaction::getOrdenId)
+                        .collect(Collectors.toSet());
+                List<PaymentTransaction> pendientes = soloPendientes(registradas);
+                List<PaymentTransaction> nuevas = new ArrayList<>();
+                montos.forEach((ordenId, monto) -> {
+                    if (!conPago.contains(ordenId)) {
+                        nuevas.add(pendiente(ordenId, monto));
+                    }
+                });
+                pendientes.addAll(repository.saveAllAndFlush(nuevas));
+                return pendientes;
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Otra entrega registró alguna de estas órdenes entre la consulta y el INSERT
+            if (montos.size() == 1) {
+                return soloPendientes(repository.findAllByOrdenIdIn(montos.keySet()));
+            }
+            LOGGER.warn("Órdenes del lote registradas por otra entrega, se reservan individualmente");
+            List<PaymentTransaction> pendientes = new ArrayList<>();
+            montos.forEach((ordenId, monto) -> pendientes.addAll(reclamar(Map.of(ordenId, monto))));
+            return pendientes;
+        }
+    }
+    private List<PaymentTransaction> soloPendientes(List<PaymentTransaction> registradas) {
+        List<PaymentTransaction> pendientes = new ArrayList<>();
+        for (PaymentTransaction transaction : registradas) {
+            if (PENDIENTE.equals(transaction.getStatus()) || ANULACION_PENDIENTE.equals(transaction.getStatus())) {
+                LOGGER.info("Orden {} con un cobro sin resultado, se vuelve a pedir", transaction.getOrdenId());
+                pendientes.add(transaction);
+            } else {
+                LOGGER.info("Orden {} ya cobrada o anulada, no se cobra", transaction.getOrdenId());
+            }
+        }
+        return pendientes;
+    }
 
+    private static PaymentTransaction pendiente(UUID ordenId, double monto) {
         PaymentTransaction transaction = new PaymentTransaction();
-        transaction.setOrdenId(orderData.getOrdenId());
-        transaction.setMonto(orderData.getMontoTotal());
+        transaction.setOrdenId(ordenId);
+        transaction.setMonto(monto);
+        transaction.setStatus(PENDIENTE);
+        return transaction;
+    }
 
-        if (pagoExitoso) {
-            transaction.setStatus("EXITOSO");
-            PaymentTransaction savedTx = repository.save(transaction);
-            transaction.setTransactionId("TXN-" + savedTx.getId());
-            repository.save(transaction); // Guardar de nuevo con el ID de transacción
+    private CompletableFuture<PaymentTransaction> cobrar(PaymentTransaction pendiente) {
+        // El ordenId es la clave de idempotencia del cobro. Con pasarela.lote.enabled el
+        // cobro viaja en un lote junto a los de otras órdenes; el resultado llega
+        // igualmente por orden.
+        return authorizationBatcher.realizarCobro(pendiente.getOrdenId().toString(), pendiente.getMonto())
+                .thenApply(pagoExitoso -> {
+                    pendiente.setStatus(pagoExitoso ? "EXITOSO" : "FALLIDO");
+                    if (pagoExitoso) {
+                        pendiente.setTransactionId("TXN-" + OrdenIds.nuevo());
+                    }
+                    return pendiente;
+                });
+    }
+
+    // El resultado se anota con un UPDATE condicionado a que el pago siga PENDIENTE: si
+    // dos entregas de la misma orden cobran a la vez, sólo una lo anota y publica. Los
+    // eventos de resultado van al outbox en la misma transacción: se publican sólo si el
+    // resultado quedó guardado, y si el guardado falla el error llega al listener.
+    //
+    // Si la compensación anuló la orden con el cobro en curso (ANULACION_PENDIENTE) no se
+    // publica nada: un cobro rechazado queda ANULADA y uno cobrado se reembolsa en esta
+    // misma transacción. Si ésta se revierte, la redelivery vuelve a preguntar a la
+    // pasarela con la misma clave y repite el reembolso.
+    private void completar(List<PaymentTransaction> transactions) {
+        List<String> aReembolsar = new ArrayList<>();
+        for (PaymentTransaction transaction : transactions) {
+            boolean cobrado = "EXITOSO".equals(transaction.getStatus());
+            if (repository.cambiarEstado(transaction.getId(), PENDIENTE, transaction.getStatus(),
+                    transaction.getTransactionId()) == 1) {
+                publicar(transaction);
+            } else if (repository.cambiarEstado(transaction.getId(), ANULACION_PENDIENTE,
+                    cobrado ? "EXITOSO" : "ANULADA", transaction.getTransactionId()) == 1) {
+                LOGGER.info("Orden {} anulada durante el cobro ({}), no se publica", transaction.getOrdenId(),
+                        cobrado ? "se reembolsa" : "no llegó a cobrarse");
+                if (cobrado) {
+                    aReembolsar.add(transaction.getOrdenId().toString());
+                }
+            } else {
+                LOGGER.info("El pago de la orden {} ya no estaba pendiente, no se anota", transaction.getOrdenId());
+            }
+        }
+        if (!aReembolsar.isEmpty()) {
+            compensationService.reembolsar(aReembolsar);
+        }
+    }
 
+    private void publicar(PaymentTransaction transaction) {
+        if ("EXITOSO".equals(transaction.getStatus())) {
             eventProducer.sendPagoExitosoEvent(PagoExitosoEvent.builder()
-                    .ordenId(orderData.getOrdenId())
+                    .ordenId(transaction.getOrdenId().toString())
                     .transaccionId(transaction.getTransactionId())
                     .build());
         } else {
-            transaction.setStatus("FALLIDO");
-            repository.save(transaction);
-
             eventProducer.sendPagoFallidoEvent(PagoFallidoEvent.builder()
-                    .ordenId(orderData.getOrdenId())
+                    .ordenId(transaction.getOrdenId().toString())
                     .motivoFallo("Fondos insuficientes (simulado)")
                     .build());
         }
@@ -0,0 +1,50 @@
+package com.distribuidora.servicio_cobros.service;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.distribuidora.servicio_cobros.repository.PaymentTransactionRepository;
+
+// Reintenta los reembolsos que quedaron sin respuesta de la pasarela (REEMBOLSO_PENDIENTE).
+// El mensaje de compensación ya se confirmó, así que sin esta pasada nadie los repetiría.
+// Varias instancias pueden coincidir: PaymentCompensationService bloquea las filas y la
+// clave de idempotencia evita reembolsar dos veces.
+@Component
+public class RefundRetryScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefundRetryScheduler.class);
+
+    private final PaymentTransactionRepository repository;
+    private final PaymentCompensationService compensationService;
+    private final int batchSize;
+
+    public RefundRetryScheduler(PaymentTransactionRepository repository,
+            PaymentCompensationService compensationService,
+            @Value("${cobros.reembolsos.retry-batch-size}") int batchSize) {
+        this.repository = repository;
+        this.compensationService = compensationService;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${cobros.reembolsos.retry-interval-ms}")
+    public void reintentar() {
+        List<UUID> pendientes = repository.findOrdenesConReembolsoPendiente(Limit.of(batchSize));
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        LOGGER.info("Reintentando {} reembolsos sin respuesta", pendientes.size());
+        try {
+            compensationService.reembolsar(pendientes.stream().map(UUID::toString).toList());
+        } catch (RuntimeException e) {
+            // Se vuelve a intentar en la próxima pasada
+            LOGGER.error("Falló el reintento de reembolsos: {}", e.getMessage());
+        }
+    }
+}
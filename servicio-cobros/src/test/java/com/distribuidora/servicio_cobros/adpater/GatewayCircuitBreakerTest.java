@@ -0,0 +1,68 @@
+package com.distribuidora.servicio_cobros.adpater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class GatewayCircuitBreakerTest {
+
+    private static final long APERTURA_MS = 50;
+
+    private final GatewayCircuitBreaker circuito = new GatewayCircuitBreaker(3, APERTURA_MS);
+
+    @Test
+    void seAbreTrasUmbralFallosSeguidos() {
+        circuito.fallo();
+        circuito.fallo();
+        assertThat(circuito.permitir()).isTrue();
+
+        circuito.fallo();
+
+        assertThat(circuito.estado()).isEqualTo(GatewayCircuitBreaker.Estado.ABIERTO);
+        assertThat(circuito.permitir()).isFalse();
+    }
+
+    @Test
+    void unExitoReiniciaLaCuentaDeFallos() {
+        circuito.fallo();
+        circuito.fallo();
+        circuito.exito();
+        circuito.fallo();
+        circuito.fallo();
+
+        assertThat(circuito.estado()).isEqualTo(GatewayCircuitBreaker.Estado.CERRADO);
+    }
+
+    @Test
+    void trasLaAperturaPasaUnaSolaLlamadaDePruebaYSuExitoLoCierra() throws InterruptedException {
+        abrir();
+        Thread.sleep(APERTURA_MS + 20);
+
+        assertThat(circuito.permitir()).isTrue();
+        assertThat(circuito.estado()).isEqualTo(GatewayCircuitBreaker.Estado.SEMIABIERTO);
+        // Mientras la prueba está en curso no pasa nadie más
+        assertThat(circuito.permitir()).isFalse();
+
+        circuito.exito();
+        assertThat(circuito.estado()).isEqualTo(GatewayCircuitBreaker.Estado.CERRADO);
+        assertThat(circuito.permitir()).isTrue();
+    }
+
+    @Test
+    void siLaLlamadaDePruebaFallaVuelveAAbrirse() throws InterruptedException {
+        abrir();
+        Thread.sleep(APERTURA_MS + 20);
+        assertThat(circuito.permitir()).isTrue();
+
+        circuito.fallo();
+
+        assertThat(circuito.estado()).isEqualTo(GatewayCircuitBreaker.Estado.ABIERTO);
+        assertThat(circuito.permitir()).isFalse();
+    }
+
+    private void abrir() {
+        for (int i = 0; i < 3; i++) {
+            circuito.fallo();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.distribuidora.servicio_cobros.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.distribuidora.servicio_cobros.adpater.PaymentGatewayAdapter;
+import com.distribuidora.servicio_cobros.adpater.PaymentGatewayAdapter.Cobro;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PaymentAuthorizationBatcherTest {
+
+    private final PaymentGatewayAdapter gateway = mock(PaymentGatewayAdapter.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PaymentAuthorizationBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        batcher.destroy();
+    }
+
+    @Test
+    void alLlegarAMaxSizeSeEnviaElLoteYCadaCobroRecibeSuResultado() throws Exception {
+        batcher = new PaymentAuthorizationBatcher(gateway, meterRegistry, true, 3, 60_000);
+        when(gateway.realizarCobros(anyList()))
+                .thenReturn(CompletableFuture.completedFuture(List.of(true, false, true)));
+
+        CompletableFuture<Boolean> primero = batcher.realizarCobro("orden-1", 10.0);
+        CompletableFuture<Boolean> segundo = batcher.realizarCobro("orden-2", 10.5);
+        CompletableFuture<Boolean> tercero = batcher.realizarCobro("orden-3", 20.0);
+
+        assertThat(primero.get(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(segundo.get(1, TimeUnit.SECONDS)).isFalse();
+        assertThat(tercero.get(1, TimeUnit.SECONDS)).isTrue();
+        // Una sola llamada, con la clave de idempotencia de cada cobro
+        assertThat(loteEnviado()).containsExactly(new Cobro("orden-1", 10.0), new Cobro("orden-2", 10.5),
+                new Cobro("orden-3", 20.0));
+        assertThat(meterRegistry.summary("payments.gateway.batch.size").max()).isEqualTo(3);
+    }
+
+    @Test
+    void unLoteIncompletoSeEnviaTrasMaxEspera() throws Exception {
+        batcher = new PaymentAuthorizationBatcher(gateway, meterRegistry, true, 50, 20);
+        when(gateway.realizarCobros(anyList())).thenReturn(CompletableFuture.completedFuture(List.of(true)));
+
+        CompletableFuture<Boolean> resultado = batcher.realizarCobro("orden-1", 10.0);
+
+        assertThat(resultado.get(1, TimeUnit.SECONDS)).isTrue();
+        assertThat(loteEnviado()).containsExactly(new Cobro("orden-1", 10.0));
+    }
+
+    @Test
+    void siLaPasarelaFallaTodosLosCobrosDelLoteFallan() {
+        batcher = new PaymentAuthorizationBatcher(gateway, meterRegistry, true, 2, 60_000);
+        when(gateway.realizarCobros(anyList()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("sin respuesta")));
+
+        CompletableFuture<Boolean> primero = batcher.realizarCobro("orden-1", 10.0);
+        CompletableFuture<Boolean> segundo = batcher.realizarCobro("orden-2", 20.0);
+
+        assertThatThrownBy(primero::join).isInstanceOf(CompletionException.class).hasMessageContaining("sin respuesta");
+        assertThatThrownBy(segundo::join).isInstanceOf(CompletionException.class).hasMessageContaining("sin respuesta");
+    }
+
+    @Test
+    void unaRespuestaConOtroNumeroDeResultadosFallaElLote() {
+        batcher = new PaymentAuthorizationBatcher(gateway, meterRegistry, true, 2, 60_000);
+        when(gateway.realizarCobros(anyList())).thenReturn(CompletableFuture.completedFuture(List.of(true)));
+
+        CompletableFuture<Boolean> primero = batcher.realizarCobro("orden-1", 10.0);
+        CompletableFuture<Boolean> segundo = batcher.realizarCobro("orden-2", 20.0);
+
+        assertThatThrownBy(primero::join).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(segundo::join).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void desactivadoCadaCobroVaDirectoALaPasarela() throws Exception {
+        batcher = new PaymentAuthorizationBatcher(gateway, meterRegistry, false, 50, 10);
+        when(gateway.realizarCobro("orden-1", 10.0)).thenReturn(CompletableFuture.completedFuture(true));
+
+        assertThat(batcher.realizarCobro("orden-1", 10.0).get(1, TimeUnit.SECONDS)).isTrue();
+        verify(gateway, never()).realizarCobros(anyList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Cobro> loteEnviado() {
+        ArgumentCaptor<List<Cobro>> lote = ArgumentCaptor.forClass(List.class);
+        verify(gateway, times(1)).realizarCobros(lote.capture());
+        return lote.getValue();
+    }
+}
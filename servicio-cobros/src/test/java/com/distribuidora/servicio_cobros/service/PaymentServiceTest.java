@@ -0,0 +1,262 @@
+package com.distribuidora.servicio_cobros.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.distribuidora.saga.events.OrdenCreadaEvent;
+import com.distribuidora.saga.events.ids.OrdenIds;
+import com.distribuidora.servicio_cobros.adpater.PaymentGatewayAdapter;
+import com.distribuidora.servicio_cobros.model.PaymentTransaction;
+import com.distribuidora.servicio_cobros.repository.PaymentTransactionRepository;
+
+// Idempotencia del cobro sobre una base de datos real (H2): cada servicio hace commit de
+// sus propias transacciones, como en producción
+@DataJpaTest(properties = { "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "cobros.reembolsos.retry-batch-size=10" })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentServiceTest {
+
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = PaymentTransaction.class)
+    @EnableJpaRepositories(basePackageClasses = PaymentTransactionRepository.class)
+    @Import({ PaymentService.class, PaymentCompensationService.class, RefundRetryScheduler.class })
+    static class Config {
+    }
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentCompensationService compensationService;
+
+    @Autowired
+    private RefundRetryScheduler refundRetryScheduler;
+
+    @Autowired
+    private PaymentTransactionRepository repository;
+
+    @MockitoBean
+    private PaymentGatewayAdapter paymentGateway;
+
+    @MockitoBean
+    private PaymentAuthorizationBatcher authorizationBatcher;
+
+    @MockitoBean
+    private PaymentEventProducer eventProducer;
+
+    @AfterEach
+    void tearDown() {
+        repository.deleteAll();
+    }
+
+    @Test
+    void laRedeliveryDeUnPagoCobradoNoVuelveACobrar() {
+        OrdenCreadaEvent orden = orden(100.0);
+        when(authorizationBatcher.realizarCobro(anyString(), anyDouble()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        paymentService.procesarPago(orden).join();
+        paymentService.procesarPago(orden).join();
+
+        verify(authorizationBatcher, times(1)).realizarCobro(orden.ordenId(), 100.0);
+        verify(eventProducer, times(1)).sendPagoExitosoEvent(any());
+        assertThat(pago(orden).getStatus()).isEqualTo("EXITOSO");
+    }
+
+    @Test
+    void unCobroSinRespuestaQuedaPendienteYSeReconciliaConLaMismaClave() {
+        OrdenCreadaEvent orden = orden(100.0);
+        when(authorizationBatcher.realizarCobro(anyString(), anyDouble()))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException()))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        assertThatThrownBy(() -> paymentService.procesarPago(orden).join()).isInstanceOf(CompletionException.class);
+        // La pasarela pudo cobrar: el resultado queda desconocido y no se publica nada
+        assertThat(pago(orden).getStatus()).isEqualTo("PENDIENTE");
+        verify(eventProducer, never()).sendPagoExitosoEvent(any());
+
+        // La redelivery vuelve a pedir el cobro con la misma clave de idempotencia
+        paymentService.procesarPago(orden).join();
+
+        verify(authorizationBatcher, times(2)).realizarCobro(orden.ordenId(), 100.0);
+        assertThat(pago(orden).getStatus()).isEqualTo("EXITOSO");
+        verify(eventProducer, times(1)).sendPagoExitosoEvent(any());
+        assertThat(repository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void dosEntregasALaVezAnotanYPublicanElResultadoUnaSolaVez() throws Exception {
+        OrdenCreadaEvent orden = orden(100.0);
+        CompletableFuture<Boolean> primera = new CompletableFuture<>();
+        CompletableFuture<Boolean> segunda = new CompletableFuture<>();
+        when(authorizationBatcher.realizarCobro(anyString(), anyDouble())).thenReturn(primera, segunda);
+
+        // Ambas entregas reservan el pago antes de que la pasarela conteste
+        CompletableFuture<Void> a = paymentService.procesarPago(orden);
+        CompletableFuture<Void> b = paymentService.procesarPago(orden);
+        primera.complete(true);
+        segunda.complete(true);
+        CompletableFuture.allOf(a, b).get(5, TimeUnit.SECONDS);
+
+        assertThat(repository.count()).isEqualTo(1);
+        verify(eventProducer, times(1)).sendPagoExitosoEvent(any());
+    }
+
+    @Test
+    void elLoteSoloCobraLasOrdenesSinResultado() {
+        OrdenCreadaEvent anulada = orden(50.0);
+        OrdenCreadaEvent nueva = orden(100.0);
+        PaymentTransaction registrada = new PaymentTransaction();
+        registrada.setOrdenId(OrdenIds.parse(anulada.ordenId()));
+        registrada.setStatus("ANULADA");
+        repository.save(registrada);
+        when(authorizationBatcher.realizarCobro(anyString(), anyDouble()))
+                .thenReturn(CompletableFuture.completedFuture(false));
+
+        paymentService.procesarPagos(List.of(anulada, nueva, nueva));
+
+        verify(authorizationBatcher, times(1)).realizarCobro(anyString(), anyDouble());
+        verify(authorizationBatcher).realizarCobro(nueva.ordenId(), 100.0);
+        assertThat(pago(anulada).getStatus()).isEqualTo("ANULADA");
+        assertThat(pago(nueva).getStatus()).isEqualTo("FALLIDO");
+        verify(eventProducer, times(1)).sendPagoFallidoEvent(any());
+    }
+
+    @Test
+    void unaOrdenCompensadaAntesDelCobroNoSeCobra() {
+        OrdenCreadaEvent orden = orden(100.0);
+
+        compensationService.reembolsar(List.of(orden.ordenId()));
+        paymentService.procesarPago(orden).join();
+
+        verify(authorizationBatcher, never()).realizarCobro(anyString(), anyDouble());
+        assertThat(pago(orden).getStatus()).isEqualTo("ANULADA");
+    }
+
+    @Test
+    void siLaCompensacionLlegaConElCobroEnCursoElCobroSeReembolsa() throws Exception {
+        OrdenCreadaEvent orden = orden(100.0);
+        CompletableFuture<Boolean> cobro = new CompletableFuture<>();
+        when(authorizationBatcher.realizarCobro(anyString(), anyDouble())).thenReturn(cobro);
+        when(paymentGateway.reembolsar(orden.ordenId(), 100.0)).thenReturn(CompletableFuture.completedFuture(true));
+
+        CompletableFuture<Void> pago = paymentService.procesarPago(orden);
+        compensationService.reembolsar(List.of(orden.ordenId()));
+        assertThat(pago(orden).getStatus()).isEqualTo("ANULACION_PENDIENTE");
+        cobro.complete(true);
+        pago.get(5, TimeUnit.SECONDS);
+
+        assertThat(pago(orden).getStatus()).isEqualTo("REEMBOLSADO");
+        verify(paymentGateway, times(1)).reembolsar(orden.ordenId(), 100.0);
+        verify(eventProducer, never()).sendPagoExitosoEvent(any());
+    }
+
+    @Test
+    void siLaCompensacionLlegaConElCobroEnCursoYSeRechazaQuedaAnulada() throws Exception {
+        OrdenCreadaEvent orden = orden(100.5);
+        CompletableFuture<Boolean> cobro = new CompletableFuture<>();
+        when(authorizationBatcher.realizarCobro(anyString(), anyDouble())).thenReturn(cobro);
+
+        CompletableFuture<Void> pago = paymentService.procesarPago(orden);
+        compensationService.reembolsar(List.of(orden.ordenId()));
+        cobro.complete(false);
+        pago.get(5, TimeUnit.SECONDS);
+
+        assertThat(pago(orden).getStatus()).isEqualTo("ANULADA");
+        verify(paymentGateway, never()).reembolsar(anyString(), anyDouble());
+        verify(eventProducer, never()).sendPagoFallidoEvent(any());
+    }
+
+    @Test
+    void unReembolsoSinRespuestaQuedaPendienteYSeReintentaConLaMismaClave() {
+        UUID ordenId = OrdenIds.nuevo();
+        repository.saveAndFlush(cobrado(ordenId, 100.0));
+        when(paymentGateway.reembolsar(ordenId.toString(), 100.0))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException("sin respuesta")))
+                .thenReturn(CompletableFuture.completedFuture(true));
+
+        // El mensaje de compensación se confirma igual: el estado queda guardado para reintentar
+        compensationService.reembolsar(List.of(ordenId.toString()));
+        assertThat(repository.findByOrdenId(ordenId).orElseThrow().getStatus()).isEqualTo("REEMBOLSO_PENDIENTE");
+
+        refundRetryScheduler.reintentar();
+        assertThat(repository.findByOrdenId(ordenId).orElseThrow().getStatus()).isEqualTo("REEMBOLSADO");
+        verify(paymentGateway, times(2)).reembolsar(ordenId.toString(), 100.0);
+
+        // Ya no queda nada pendiente: la siguiente pasada no llama a la pasarela
+        refundRetryScheduler.reintentar();
+        verify(paymentGateway, times(2)).reembolsar(anyString(), anyDouble());
+    }
+
+    @Test
+    void unReembolsoRechazadoQuedaRegistradoParaRevision() {
+        UUID ordenId = OrdenIds.nuevo();
+        repository.saveAndFlush(cobrado(ordenId, 100.0));
+        when(paymentGateway.reembolsar(ordenId.toString(), 100.0)).thenReturn(CompletableFuture.completedFuture(false));
+
+        compensationService.reembolsar(List.of(ordenId.toString()));
+
+        assertThat(repository.findByOrdenId(ordenId).orElseThrow().getStatus()).isEqualTo("REEMBOLSO_RECHAZADO");
+        refundRetryScheduler.reintentar();
+        verify(paymentGateway, times(1)).reembolsar(anyString(), anyDouble());
+    }
+
+    @Test
+    void laClaveUnicaImpideUnSegundoPagoDeLaMismaOrden() {
+        UUID ordenId = OrdenIds.nuevo();
+        repository.saveAndFlush(pendiente(ordenId));
+
+        assertThatThrownBy(() -> repository.saveAndFlush(pendiente(ordenId)))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    private PaymentTransaction pago(OrdenCreadaEvent orden) {
+        return repository.findByOrdenId(OrdenIds.parse(orden.ordenId())).orElseThrow();
+    }
+
+    private static PaymentTransaction pendiente(UUID ordenId) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setOrdenId(ordenId);
+        transaction.setStatus("PENDIENTE");
+        return transaction;
+    }
+
+    private static PaymentTransaction cobrado(UUID ordenId, double monto) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setOrdenId(ordenId);
+        transaction.setStatus("EXITOSO");
+        transaction.setMonto(monto);
+        return transaction;
+    }
+
+    private static OrdenCreadaEvent orden(double monto) {
+        return OrdenCreadaEvent.builder().ordenId(OrdenIds.nuevo().toString()).montoTotal(monto).build();
+    }
+}
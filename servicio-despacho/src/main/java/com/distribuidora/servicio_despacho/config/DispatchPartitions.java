@@ -0,0 +1,54 @@
+package com.distribuidora.servicio_despacho.config;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+ * Particiones de la cola de despacho. El exchange de hash consistente reparte los
+ * eventos por ordenId entre N colas (dispatch_queue.0 .. dispatch_queue.N-1), así todos
+ * los eventos de una orden llegan siempre a la misma partición.
+ *
+ * Qué particiones consume cada instancia no es fijo: lo decide en tiempo de ejecución
+ * DispatchPartitionCoordinator, con un lease por partición en la base de datos.
+ */
+@Component
+public class DispatchPartitions {
+
+    private final String queuePrefix;
+    private final int partitions;
+    private final String instanceId;
+
+    public DispatchPartitions(@Value("${rabbitmq.queue.dispatch.name}") String queuePrefix,
+            @Value("${rabbitmq.dispatch.partitions}") int partitions,
+            @Value("${rabbitmq.dispatch.instance-id:}") String instanceId) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException(
+                    String.format("Configuración de particiones inválida: partitions=%d", partitions));
+        }
+        this.queuePrefix = queuePrefix;
+        this.partitions = partitions;
+        // Sin id configurado cada arranque es un miembro nuevo; los leases del anterior caducan solos
+        this.instanceId = instanceId.isBlank() ? UUID.randomUUID().toString() : instanceId;
+    }
+
+    public String queueName(int partition) {
+        return queuePrefix + "." + partition;
+    }
+
+    // Todas las particiones: cada instancia las declara para que la topología sea completa
+    public List<String> allQueues() {
+        return IntStream.range(0, partitions).mapToObj(this::queueName).toList();
+    }
+
+    public int partitions() {
+        return partitions;
+    }
+
+    public String instanceId() {
+        return instanceId;
+    }
+}
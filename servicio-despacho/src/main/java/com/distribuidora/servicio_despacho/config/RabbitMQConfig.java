@@ -1,14 +1,30 @@
 package com.distribuidora.servicio_despacho.config;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.amqp.core.TopicExchange;
-import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.CustomExchange;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.support.converter.MessageConverter;
+import com.distribuidora.saga.events.amqp.SagaMessageConverters;
+import com.distribuidora.saga.events.dedup.MessageDeduplicator;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @Configuration
 public class RabbitMQConfig {
@@ -16,34 +32,105 @@ public class RabbitMQConfig {
     // Lee el nombre del application.properties
     @Value("${rabbitmq.exchange.name}")
     private String exchangeName;
-    @Value("${rabbitmq.queue.dispatch.name}")
-    private String queueDispatchName;
-    @Bean
-    public Queue queue() {
-        return new Queue(queueDispatchName);
-    }
+    @Value("${rabbitmq.exchange.dispatch_hash.name}")
+    private String dispatchHashExchangeName;
 
     @Bean
     public TopicExchange exchange() {
         return new TopicExchange(exchangeName);
     }
 
-    // <- Binding para evento de Stock
+    /*
+     * Exchange de hash consistente (plugin rabbitmq_consistent_hash_exchange). Reparte
+     * por la cabecera ordenId, que el conversor de saga-events pone en cada evento, de
+     * modo que todos los eventos de una orden van a la misma partición.
+     */
+    @Bean
+    public CustomExchange dispatchHashExchange() {
+        return new CustomExchange(dispatchHashExchangeName, "x-consistent-hash", true, false,
+                Map.of("hash-header", SagaMessageConverters.ORDEN_ID_HEADER));
+    }
+
+    // <- Binding para evento de Stock (exchange a exchange)
     @Bean
-    public Binding stockBinding(Queue queue, TopicExchange exchange,
+    public Binding stockBinding(TopicExchange exchange,
             @Value("${rabbitmq.routing.key.stock_deducted}") String routingKey) {
-        return BindingBuilder.bind(queue).to(exchange).with(routingKey);
+        return BindingBuilder.bind(dispatchHashExchange()).to(exchange).with(routingKey);
     }
 
-    // <- Binding para evento de Pago
+    // <- Binding para evento de Pago (exchange a exchange)
     @Bean
-    public Binding paymentBinding(Queue queue, TopicExchange exchange,
+    public Binding paymentBinding(TopicExchange exchange,
             @Value("${rabbitmq.routing.key.payment_successful}") String routingKey) {
-        return BindingBuilder.bind(queue).to(exchange).with(routingKey);
+        return BindingBuilder.bind(dispatchHashExchange()).to(exchange).with(routingKey);
+    }
+
+    // <- Bindings de compensación: un fallo de pago o de stock cancela la orden, y debe
+    // llegar a la misma partición que el resto de sus eventos
+    @Bean
+    public Binding paymentFailedBinding(TopicExchange exchange,
+            @Value("${rabbitmq.routing.key.payment_failed}") String routingKey) {
+        return BindingBuilder.bind(dispatchHashExchange()).to(exchange).with(routingKey);
+    }
+
+    @Bean
+    public Binding stockFailedBinding(TopicExchange exchange,
+            @Value("${rabbitmq.routing.key.stock_failed}") String routingKey) {
+        return BindingBuilder.bind(dispatchHashExchange()).to(exchange).with(routingKey);
+    }
+
+    /*
+     * Una cola por partición, todas con el mismo peso ("1") en el anillo de hash.
+     * single-active-consumer garantiza un único consumidor activo por partición aunque
+     * varias instancias se suscriban a la vez (ej. durante un reequilibrio).
+     */
+    @Bean
+    public Declarables dispatchPartitionQueues(DispatchPartitions partitions) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (String queueName : partitions.allQueues()) {
+            Queue queue = QueueBuilder.durable(queueName).singleActiveConsumer().build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue).to(dispatchHashExchange()).with("1").noargs());
+        }
+        return new Declarables(declarables);
+    }
+
+    /*
+     * Fábrica de contenedores para las particiones de despacho. Cada partición tiene un
+     * único consumidor para conservar el orden por orden: el paralelismo lo da el número
+     * de particiones. El prefetch y el uso de hilos virtuales (Java 21) se ajustan desde
+     * application.properties.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            MessageDeduplicator messageDeduplicator,
+            @Value("${rabbitmq.listener.dispatch.prefetch}") int prefetch,
+            @Value("${rabbitmq.listener.dispatch.virtual-threads}") boolean virtualThreads) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAdviceChain(messageDeduplicator);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setPrefetchCount(prefetch);
+        if (virtualThreads) {
+            factory.setTaskExecutor(new VirtualThreadTaskExecutor("dispatch-listener-"));
+        }
+        return factory;
+    }
+
+    @Bean
+    public MessageDeduplicator messageDeduplicator(JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${rabbitmq.dedup.cache-size}") long cacheSize,
+            @Value("${rabbitmq.dedup.cache-ttl-minutes}") long cacheTtlMinutes,
+            @Value("${rabbitmq.dedup.retention-hours}") long retentionHours) {
+        return new MessageDeduplicator(jdbcTemplate, transactionManager, cacheSize, Duration.ofMinutes(cacheTtlMinutes),
+                Duration.ofHours(retentionHours));
     }
 
     @Bean
-    public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter messageConverter(@Value("${rabbitmq.serialization.format}") String format) {
+        return SagaMessageConverters.create(format);
     }
 }
\ No newline at end of file
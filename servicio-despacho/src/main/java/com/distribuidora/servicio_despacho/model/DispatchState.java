@@ -1,9 +1,16 @@
 package com.distribuidora.servicio_despacho.model;
 
+import java.time.Instant;
+import java.util.UUID;
 
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import jakarta.persistence.Column;
 import jakarta.persistence.Table;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -12,11 +19,17 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor 
 @Entity
-@Table(name = "dispatch_states")
+@Table(name = "dispatch_states", indexes = @Index(name = "idx_dispatch_status_particion", columnList = "status, particion"))
 public class DispatchState {
     @Id
-    private String ordenId;
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(columnDefinition = "BINARY(16)")
+    private UUID ordenId;
     private boolean hasStockConfirmation = false;
     private boolean hasPaymentConfirmation = false;
-    private String status; // Ej: "ESPERANDO_CONFIRMACIONES", "LISTO_PARA_ENVIO"
+    private String status; // Ej: "ESPERANDO_CONFIRMACIONES", "LISTO_PARA_ENVIO", "CANCELADA", "EXPIRADA"
+    // Primer evento recibido de la orden; el barrido de timeouts expira las que llevan demasiado esperando
+    private Instant creadoEn;
+    // Partición de despacho por la que llegan los eventos de la orden
+    private Integer particion;
 }
@@ -1,9 +1,17 @@
 package com.distribuidora.servicio_despacho.repository;
 
+import java.util.List;
+import java.util.UUID;
+
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import com.distribuidora.servicio_despacho.model.DispatchState;
 
 @Repository
-public interface DispatchRepository extends JpaRepository<DispatchState, String> {}
\ No newline at end of file
+public interface DispatchRepository extends JpaRepository<DispatchState, UUID> {
+
+    // Órdenes de una partición que siguen esperando alguna confirmación (recuperación al
+    // empezar a consumir la partición)
+    List<DispatchState> findByStatusAndParticion(String status, int particion);
+}
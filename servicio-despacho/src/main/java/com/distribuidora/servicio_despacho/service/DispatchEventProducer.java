@@ -1,12 +1,14 @@
 package com.distribuidora.servicio_despacho.service;
 
+import java.util.List;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import com.distribuidora.servicio_despacho.dto.OrdenListaParaEnvioEvent;
+import com.distribuidora.saga.events.OrdenListaParaEnvioEvent;
+import com.distribuidora.saga.events.outbox.OutboxService;
 
 @Service
 public class DispatchEventProducer {
@@ -19,14 +21,16 @@ public class DispatchEventProducer {
     @Value("${rabbitmq.routing.key.dispatch_ready}")
     private String routingKeyDispatchReady;
 
-    private final RabbitTemplate rabbitTemplate;
+    private final OutboxService outboxService;
 
-    public DispatchEventProducer(RabbitTemplate rabbitTemplate) {
-        this.rabbitTemplate = rabbitTemplate;
+    public DispatchEventProducer(OutboxService outboxService) {
+        this.outboxService = outboxService;
     }
 
-    public void sendOrdenListaParaEnvioEvent(OrdenListaParaEnvioEvent event) {
-        LOGGER.info(String.format("Publicando evento OrdenListaParaEnvio -> %s", event.toString()));
-        rabbitTemplate.convertAndSend(exchangeName, routingKeyDispatchReady, event);
+    // Se llama desde DispatchStateFlusher, en la misma transacción que persiste el estado
+    // LISTO_PARA_ENVIO de estas órdenes
+    public void sendOrdenListaParaEnvioEvents(List<OrdenListaParaEnvioEvent> events) {
+        LOGGER.info(String.format("Encolando %d eventos OrdenListaParaEnvio en el outbox", events.size()));
+        outboxService.enqueueAll(exchangeName, routingKeyDispatchReady, events);
     }
 }
@@ -4,30 +4,100 @@ package com.distribuidora.servicio_despacho.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.stereotype.Component;
 
-import com.distribuidora.servicio_despacho.dto.PagoExitosoEvent;
-import com.distribuidora.servicio_despacho.dto.StockDescontadoEvent;
+import com.distribuidora.saga.events.PagoExitosoEvent;
+import com.distribuidora.saga.events.PagoFallidoEvent;
+import com.distribuidora.saga.events.StockDescontadoEvent;
+import com.distribuidora.saga.events.StockFallidoEvent;
+import com.distribuidora.servicio_despacho.config.DispatchPartitions;
 
+/*
+ * Consumidor de las particiones de despacho. Se registra un contenedor con un único
+ * consumidor por partición: como todos los eventos de una orden caen en la misma
+ * partición, se procesan en orden y sin competir entre hilos. Los contenedores no
+ * arrancan solos; DispatchPartitionCoordinator los arranca y detiene según las
+ * particiones que gana o cede esta instancia.
+ * Cada mensaje se convierte según su __TypeId__ y se despacha por tipo.
+ */
 @Component
-public class DispatchEventsListener {
+public class DispatchEventsListener implements RabbitListenerConfigurer, DispatchPartitionCoordinator.ConsumoParticiones {
     private static final Logger LOGGER = LoggerFactory.getLogger(DispatchEventsListener.class);
     private final DispatchService dispatchService;
+    private final DispatchPartitions partitions;
+    private final SimpleRabbitListenerContainerFactory containerFactory;
+    private final MessageConverter messageConverter;
+    private final RabbitListenerEndpointRegistry endpointRegistry;
 
-    public DispatchEventsListener(DispatchService dispatchService) {
+    public DispatchEventsListener(DispatchService dispatchService, DispatchPartitions partitions,
+            SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory, MessageConverter messageConverter,
+            RabbitListenerEndpointRegistry endpointRegistry) {
         this.dispatchService = dispatchService;
+        this.partitions = partitions;
+        this.containerFactory = rabbitListenerContainerFactory;
+        this.messageConverter = messageConverter;
+        this.endpointRegistry = endpointRegistry;
     }
 
-    @RabbitListener(queues = "${rabbitmq.queue.dispatch.name}")
-    public void onStockDescontado(StockDescontadoEvent event) {
+    @Override
+    public void configureRabbitListeners(RabbitListenerEndpointRegistrar registrar) {
+        for (int partition = 0; partition < partitions.partitions(); partition++) {
+            int particion = partition;
+            SimpleRabbitListenerEndpoint endpoint = new SimpleRabbitListenerEndpoint();
+            endpoint.setId(endpointId(particion));
+            endpoint.setQueueNames(partitions.queueName(particion));
+            endpoint.setAutoStartup(false);
+            endpoint.setMessageListener(message -> onMessage(message, particion));
+            registrar.registerEndpoint(endpoint, containerFactory);
+        }
+    }
+
+    @Override
+    public void iniciar(int particion) {
+        contenedor(particion).start();
+    }
+
+    // stop() espera a que termine el mensaje en curso; los que estaban en prefetch sin
+    // ack vuelven a la cola para el nuevo dueño de la partición
+    @Override
+    public void detener(int particion) {
+        contenedor(particion).stop();
+    }
+
+    private MessageListenerContainer contenedor(int particion) {
+        return endpointRegistry.getListenerContainer(endpointId(particion));
+    }
+
+    private String endpointId(int particion) {
+        return "dispatch-" + partitions.queueName(particion);
+    }
+
+    private void onMessage(Message message, int particion) {
+        switch (messageConverter.fromMessage(message)) {
+            case StockDescontadoEvent event -> onStockDescontado(event, particion);
+            case PagoExitosoEvent event -> onPagoExitoso(event, particion);
+            case PagoFallidoEvent event -> dispatchService.cancelOrder(event.ordenId(), "pago fallido", particion);
+            case StockFallidoEvent event -> dispatchService.cancelOrder(event.ordenId(), "stock insuficiente", particion);
+            // Cualquier otro tipo que llegue a la cola se descarta (ack) en lugar de reencolarse
+            case Object event -> LOGGER.warn("Evento no esperado en la cola de despacho, se descarta -> {}", event);
+        }
+    }
+
+    private void onStockDescontado(StockDescontadoEvent event, int particion) {
         LOGGER.info("Evento StockDescontado recibido -> {}", event);
-        dispatchService.handleOrderState(event.getOrdenId(), "STOCK_OK");
+        dispatchService.handleOrderState(event.ordenId(), "STOCK_OK", particion);
     }
 
-    @RabbitListener(queues = "${rabbitmq.queue.dispatch.name}")
-    public void onPagoExitoso(PagoExitosoEvent event) {
+    private void onPagoExitoso(PagoExitosoEvent event, int particion) {
         LOGGER.info("Evento PagoExitoso recibido -> {}", event);
-        dispatchService.handleOrderState(event.getOrdenId(), "PAGO_OK");
+        dispatchService.handleOrderState(event.ordenId(), "PAGO_OK", particion);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,203 @@
+package com.distribuidora.servicio_despacho.service;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.distribuidora.servicio_despacho.config.DispatchPartitions;
+
+import jakarta.annotation.PreDestroy;
+
+/*
+ * Reparto dinámico de las particiones de despacho entre las instancias vivas.
+ *
+ * Cada partición tiene un lease en dispatch_partition_leases (dueño y vencimiento) y cada
+ * instancia un latido en dispatch_members. En cada pasada la instancia renueva sus
+ * leases, calcula su cuota (particiones / instancias vivas, redondeando hacia arriba),
+ * cede las que le sobran y reclama las libres o vencidas hasta completar la cuota.
+ *
+ * El estado en memoria sigue a la partición:
+ *  - al ceder, primero se detiene el consumo, luego se escriben los estados pendientes y
+ *    sólo entonces se libera el lease, así quien la reclame lee el estado completo;
+ *  - al ganar, se recuperan de dispatch_states las órdenes abiertas de la partición antes
+ *    de empezar a consumirla.
+ * Si una instancia muere sin ceder, sus leases vencen tras lease-ms y otra los reclama.
+ * Las colas siguen siendo single-active-consumer, de modo que aunque una instancia
+ * bloqueada tarde en notar que perdió un lease nunca hay dos consumidores activos.
+ */
+@Component
+public class DispatchPartitionCoordinator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DispatchPartitionCoordinator.class);
+
+    // Arranque y parada del consumo de una partición (contenedores de RabbitMQ)
+    public interface ConsumoParticiones {
+
+        void iniciar(int particion);
+
+        void detener(int particion);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DispatchStateAggregator aggregator;
+    private final DispatchStateFlusher flusher;
+    private final ConsumoParticiones consumo;
+    private final String instanceId;
+    private final int particiones;
+    private final long leaseMs;
+    private final Clock clock;
+
+    // Particiones que consume esta instancia
+    private final Set<Integer> propias = new TreeSet<>();
+
+    @Autowired
+    public DispatchPartitionCoordinator(JdbcTemplate jdbcTemplate, DispatchStateAggregator aggregator,
+            DispatchStateFlusher flusher, ConsumoParticiones consumo, DispatchPartitions partitions,
+            @Value("${despacho.partitions.lease-ms}") long leaseMs) {
+        this(jdbcTemplate, aggregator, flusher, consumo, partitions.instanceId(), partitions.partitions(), leaseMs,
+                Clock.systemUTC());
+    }
+
+    DispatchPartitionCoordinator(JdbcTemplate jdbcTemplate, DispatchStateAggregator aggregator,
+            DispatchStateFlusher flusher, ConsumoParticiones consumo, String instanceId, int particiones, long leaseMs,
+            Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.aggregator = aggregator;
+        this.flusher = flusher;
+        this.consumo = consumo;
+        this.instanceId = instanceId;
+        this.particiones = particiones;
+        this.leaseMs = leaseMs;
+        this.clock = clock;
+    }
+
+    @Scheduled(fixedDelayString = "${despacho.partitions.rebalance-interval-ms}")
+    public synchronized void reequilibrar() {
+        Instant ahora = clock.instant();
+        Timestamp vence = Timestamp.from(ahora.plusMillis(leaseMs));
+        Timestamp limite = Timestamp.from(ahora);
+
+        for (int particion = 0; particion < particiones; particion++) {
+            jdbcTemplate.update("INSERT IGNORE INTO dispatch_partition_leases (partition_id, owner, expires_at) "
+                    + "VALUES (?, NULL, NULL)", particion);
+        }
+        jdbcTemplate.update("INSERT INTO dispatch_members (instance_id, heartbeat_at) VALUES (?, ?) "
+                + "ON DUPLICATE KEY UPDATE heartbeat_at = VALUES(heartbeat_at)", instanceId, limite);
+
+        renovar(vence);
+
+        jdbcTemplate.update("DELETE FROM dispatch_members WHERE heartbeat_at < ?",
+                Timestamp.from(ahora.minusMillis(leaseMs)));
+        // Incluye a esta instancia, que acaba de latir
+        int vivas = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM dispatch_members", Integer.class);
+        int cuota = (particiones + vivas - 1) / vivas;
+
+        // Cede las de número más alto: el reparto resultante es estable entre pasadas
+        List<Integer> sobrantes = new ArrayList<>(propias).reversed();
+        for (int i = 0; i < sobrantes.size() && propias.size() > cuota; i++) {
+            ceder(sobrantes.get(i));
+        }
+
+        if (propias.size() < cuota) {
+            List<Integer> libres = jdbcTemplate.queryForList("SELECT partition_id FROM dispatch_partition_leases "
+                    + "WHERE partition_id < ? AND (owner IS NULL OR expires_at < ?) ORDER BY partition_id",
+                    Integer.class, particiones, limite);
+            for (int i = 0; i < libres.size() && propias.size() < cuota; i++) {
+                reclamar(libres.get(i), vence, limite);
+            }
+        }
+    }
+
+    // Un lease que ya no es nuestro lo reclamó otra instancia tras vencer (ej. una pausa
+    // larga de GC): se deja de consumir la partición sin liberar nada
+    private void renovar(Timestamp vence) {
+        jdbcTemplate.update("UPDATE dispatch_partition_leases SET expires_at = ? WHERE owner = ?", vence, instanceId);
+        Set<Integer> enTabla = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT partition_id FROM dispatch_partition_leases WHERE owner = ?", Integer.class, instanceId));
+        for (Integer particion : List.copyOf(propias)) {
+            if (!enTabla.contains(particion)) {
+                LOGGER.warn("Se perdió el lease de la partición {} de despacho", particion);
+                detener(particion);
+                propias.remove(particion);
+            }
+        }
+    }
+
+    private void reclamar(int particion, Timestamp vence, Timestamp limite) {
+        int reclamadas = jdbcTemplate.update("UPDATE dispatch_partition_leases SET owner = ?, expires_at = ? "
+                + "WHERE partition_id = ? AND (owner IS NULL OR expires_at < ?)", instanceId, vence, particion, limite);
+        if (reclamadas == 0) {
+            // Otra instancia la reclamó entre la consulta y el UPDATE
+            return;
+        }
+        try {
+            aggregator.recuperar(particion);
+            consumo.iniciar(particion);
+            propias.add(particion);
+            LOGGER.info("Partición {} de despacho asignada a esta instancia", particion);
+        } catch (RuntimeException e) {
+            LOGGER.error("No se pudo empezar a consumir la partición {}, se libera: {}", particion, e.getMessage());
+            consumo.detener(particion);
+            aggregator.olvidarParticion(particion);
+            liberar(particion);
+        }
+    }
+
+    private void ceder(int particion) {
+        if (!detener(particion)) {
+            // Sus estados no se pudieron escribir: se sigue consumiendo y se reintenta en
+            // la próxima pasada, antes que dejar que otra instancia arranque sin ellos
+            consumo.iniciar(particion);
+            return;
+        }
+        propias.remove(particion);
+        liberar(particion);
+        LOGGER.info("Partición {} de despacho cedida", particion);
+    }
+
+    // Detiene el consumo y escribe sus estados pendientes. Devuelve false si alguno quedó sin escribir.
+    private boolean detener(int particion) {
+        consumo.detener(particion);
+        flusher.flush();
+        if (aggregator.hayPendientes(particion)) {
+            LOGGER.error("La partición {} de despacho tiene estados sin persistir", particion);
+            return false;
+        }
+        aggregator.olvidarParticion(particion);
+        return true;
+    }
+
+    private void liberar(int particion) {
+        jdbcTemplate.update("UPDATE dispatch_partition_leases SET owner = NULL, expires_at = NULL "
+                + "WHERE partition_id = ? AND owner = ?", particion, instanceId);
+    }
+
+    synchronized List<Integer> propias() {
+        return List.copyOf(propias);
+    }
+
+    // Al apagar se ceden todas para que las demás instancias las reclamen sin esperar al vencimiento
+    @PreDestroy
+    public synchronized void cederTodas() {
+        for (Integer particion : List.copyOf(propias)) {
+            if (detener(particion)) {
+                liberar(particion);
+            }
+            propias.remove(particion);
+        }
+        jdbcTemplate.update("DELETE FROM dispatch_members WHERE instance_id = ?", instanceId);
+    }
+}
@@ -1,48 +1,43 @@
 package com.distribuidora.servicio_despacho.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import com.distribuidora.servicio_despacho.dto.OrdenListaParaEnvioEvent;
-import com.distribuidora.servicio_despacho.model.DispatchState;
-import com.distribuidora.servicio_despacho.repository.DispatchRepository;
-
-import jakarta.transaction.Transactional;
+import com.distribuidora.saga.events.ids.OrdenIds;
 
 @Service
 public class DispatchService {
-    private final DispatchRepository repository;
-    private final DispatchEventProducer eventProducer;
+    private static final Logger LOGGER = LoggerFactory.getLogger(DispatchService.class);
+    private final DispatchStateAggregator aggregator;
 
-    public DispatchService(DispatchRepository repository, DispatchEventProducer eventProducer) {
-        this.repository = repository;
-        this.eventProducer = eventProducer;
+    public DispatchService(DispatchStateAggregator aggregator) {
+        this.aggregator = aggregator;
     }
 
-    @Transactional
-    public void handleOrderState(String ordenId, String eventType) {
-        // Busca el estado de la orden o crea uno nuevo.
-        DispatchState state = repository.findById(ordenId)
-                .orElse(new DispatchState(ordenId, false, false, "ESPERANDO_CONFIRMACIONES"));
-
-        // Si el estado ya está completado, no hacemos nada más para evitar duplicados.
-        if ("LISTO_PARA_ENVIO".equals(state.getStatus())) {
+    public void handleOrderState(String ordenId, String eventType, int particion) {
+        // dispatch_states guarda el id como BINARY(16): un id mal formado haría fallar
+        // cada escritura en lote del flusher, así que se descarta aquí
+        if (!OrdenIds.esValido(ordenId)) {
+            LOGGER.warn("Evento {} con ordenId inválido, se descarta -> {}", eventType, ordenId);
             return;
         }
-
-        if ("STOCK_OK".equals(eventType)) {
-            state.setHasStockConfirmation(true);
-        } else if ("PAGO_OK".equals(eventType)) {
-            state.setHasPaymentConfirmation(true);
+        // Une la confirmación en memoria; la escritura en dispatch_states se hace después,
+        // en lote, desde DispatchStateFlusher, que también guarda en el outbox el
+        // OrdenListaParaEnvio de la orden cuando esta confirmación la completa. Sólo una
+        // transición llega a LISTO, así el evento nunca se emite dos veces.
+        if (aggregator.confirmar(ordenId, eventType, particion)) {
+            LOGGER.info("Orden {} lista para envío", ordenId);
         }
+    }
 
-        // VERIFICA SI AMBAS CONDICIONES SE CUMPLEN AHORA
-        if (state.isHasStockConfirmation() && state.isHasPaymentConfirmation()) {
-            state.setStatus("LISTO_PARA_ENVIO");
-            eventProducer.sendOrdenListaParaEnvioEvent(
-                new OrdenListaParaEnvioEvent(ordenId)
-            );
+    // Compensación: falló el pago o el stock, la orden deja de esperar confirmaciones
+    public void cancelOrder(String ordenId, String motivo, int particion) {
+        if (!OrdenIds.esValido(ordenId)) {
+            LOGGER.warn("Cancelación con ordenId inválido, se descarta -> {}", ordenId);
+            return;
         }
-
-        repository.save(state); // Guarda el estado actualizado
+        LOGGER.info("Orden {} cancelada en despacho: {}", ordenId, motivo);
+        aggregator.cancelar(ordenId, particion);
     }
-}
\ No newline at end of file
+}
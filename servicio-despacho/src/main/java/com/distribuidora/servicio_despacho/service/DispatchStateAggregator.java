@@ -0,0 +1,212 @@
+package com.distribuidora.servicio_despacho.service;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.distribuidora.servicio_despacho.model.DispatchState;
+import com.distribuidora.servicio_despacho.repository.DispatchRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+// Estado de despacho en memoria: une las confirmaciones de stock y de pago de cada orden
+// sin leer ni escribir la base de datos por evento. DispatchStateFlusher persiste los
+// cambios en lote para poder recuperarlos tras un reinicio o cuando la partición de la
+// orden pasa a otra instancia (ver DispatchPartitionCoordinator).
+@Component
+public class DispatchStateAggregator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DispatchStateAggregator.class);
+
+    static final String ESPERANDO = "ESPERANDO_CONFIRMACIONES";
+    static final String LISTO = "LISTO_PARA_ENVIO";
+    // Compensación: falló el pago o el stock de la orden
+    static final String CANCELADA = "CANCELADA";
+    // Barrido de timeouts: la orden no recibió todas las confirmaciones a tiempo. Es
+    // definitivo, igual que LISTO y CANCELADA: una confirmación tardía ya no la completa.
+    static final String EXPIRADA = "EXPIRADA";
+
+    // Estado inmutable de una orden; cada transición produce una instancia nueva.
+    // desde es el instante (epoch ms) del primer evento de la orden y particion la cola de
+    // despacho por la que llegan sus eventos.
+    record Estado(boolean stock, boolean pago, String status, long desde, int particion) {
+
+        static Estado inicial(long desde, int particion) {
+            return new Estado(false, false, ESPERANDO, desde, particion);
+        }
+
+        boolean listo() {
+            return LISTO.equals(status);
+        }
+
+        // Listo, cancelado o expirado: ya no admite más transiciones
+        boolean cerrado() {
+            return !ESPERANDO.equals(status);
+        }
+
+        Estado confirmar(String eventType) {
+            boolean nuevoStock = stock || "STOCK_OK".equals(eventType);
+            boolean nuevoPago = pago || "PAGO_OK".equals(eventType);
+            if (nuevoStock == stock && nuevoPago == pago) {
+                return this;
+            }
+            return new Estado(nuevoStock, nuevoPago, nuevoStock && nuevoPago ? LISTO : ESPERANDO, desde, particion);
+        }
+
+        Estado cerrar(String statusFinal) {
+            return new Estado(stock, pago, statusFinal, desde, particion);
+        }
+    }
+
+    private final DispatchRepository repository;
+
+    // ConcurrentHashMap reparte las órdenes entre sus bins: compute() serializa sólo los
+    // hilos que entregan eventos de la misma orden, sin un bloqueo global.
+    private final ConcurrentMap<String, Estado> estados = new ConcurrentHashMap<>();
+    // Último estado de cada orden que todavía no se ha escrito en dispatch_states
+    private final ConcurrentMap<String, Estado> pendientes = new ConcurrentHashMap<>();
+    // Órdenes cerradas que ya salieron de estados (lápidas). Sin ellas, un evento tardío
+    // o repetido de una orden olvidada se tomaría por el primero de una orden nueva.
+    private final Cache<String, String> cerradas;
+
+    public DispatchStateAggregator(DispatchRepository repository,
+            @Value("${despacho.state.tombstone-ttl-minutes:1440}") long tombstoneTtlMinutes,
+            @Value("${despacho.state.tombstone-max:1000000}") long tombstoneMax) {
+        this.repository = repository;
+        this.cerradas = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(tombstoneTtlMinutes))
+                .maximumSize(tombstoneMax)
+                .build();
+    }
+
+    // Recuperación: las órdenes de la partición que quedaron a medias (reinicio, o la
+    // partición venía de otra instancia) se cargan antes de empezar a consumirla, así una
+    // orden desconocida se puede tratar como nueva sin consultar.
+    public void recuperar(int particion) {
+        List<DispatchState> abiertas = repository.findByStatusAndParticion(ESPERANDO, particion);
+        for (DispatchState state : abiertas) {
+            long desde = state.getCreadoEn() != null ? state.getCreadoEn().toEpochMilli() : System.currentTimeMillis();
+            estados.putIfAbsent(state.getOrdenId().toString(), new Estado(state.isHasStockConfirmation(),
+                    state.isHasPaymentConfirmation(), ESPERANDO, desde, particion));
+        }
+        LOGGER.info("Partición {} de despacho recuperada: {} órdenes esperando confirmaciones", particion,
+                abiertas.size());
+    }
+
+    // La partición pasa a otra instancia: sus estados (ya persistidos) dejan la memoria
+    void olvidarParticion(int particion) {
+        estados.values().removeIf(estado -> estado.particion() == particion);
+    }
+
+    boolean hayPendientes(int particion) {
+        return pendientes.values().stream().anyMatch(estado -> estado.particion() == particion);
+    }
+
+    // Aplica la confirmación de forma atómica por orden. Devuelve true sólo para el hilo
+    // que completa la orden, de modo que OrdenListaParaEnvio se emite una única vez.
+    public boolean confirmar(String ordenId, String eventType, int particion) {
+        boolean[] completada = { false };
+        estados.compute(ordenId, (id, previo) -> {
+            if (previo == null && cerradas.getIfPresent(id) != null) {
+                return null;
+            }
+            Estado actual = previo != null ? previo : Estado.inicial(System.currentTimeMillis(), particion);
+            if (actual.cerrado()) {
+                // Ya completada, cancelada o expirada: un duplicado o un evento tardío no cambia nada
+                return actual;
+            }
+            Estado nuevo = actual.confirmar(eventType);
+            if (nuevo != actual) {
+                // Dentro de compute() para que los pendientes queden en el mismo orden
+                // que las transiciones
+                pendientes.put(id, nuevo);
+            }
+            completada[0] = nuevo.listo();
+            return nuevo;
+        });
+        return completada[0];
+    }
+
+    // Compensación: la orden ya no puede completarse (falló el pago o el stock). Nunca
+    // se emitirá OrdenListaParaEnvio para ella; el flusher la persiste como CANCELADA.
+    public void cancelar(String ordenId, int particion) {
+        estados.compute(ordenId, (id, previo) -> {
+            if (previo == null && cerradas.getIfPresent(id) != null) {
+                return null;
+            }
+            Estado actual = previo != null ? previo : Estado.inicial(System.currentTimeMillis(), particion);
+            if (actual.cerrado()) {
+                return actual;
+            }
+            Estado cancelado = actual.cerrar(CANCELADA);
+            pendientes.put(id, cancelado);
+            return cancelado;
+        });
+    }
+
+    // Barrido de timeouts: cierra como EXPIRADA cada orden que sigue esperando desde antes
+    // de limite (epoch ms). Devuelve cuántas se expiraron.
+    int expirarAnteriores(long limite) {
+        int expiradas = 0;
+        for (String ordenId : estados.keySet()) {
+            boolean[] expirada = { false };
+            estados.computeIfPresent(ordenId, (id, actual) -> {
+                // Se vuelve a comprobar dentro de compute(): pudo completarse mientras tanto
+                if (actual.cerrado() || actual.desde() >= limite) {
+                    return actual;
+                }
+                Estado cerrado = actual.cerrar(EXPIRADA);
+                pendientes.put(id, cerrado);
+                expirada[0] = true;
+                return cerrado;
+            });
+            if (expirada[0]) {
+                expiradas++;
+            }
+        }
+        return expiradas;
+    }
+
+    // Saca hasta maxEstados cambios pendientes para escribirlos
+    Map<String, Estado> tomarPendientes(int maxEstados) {
+        Map<String, Estado> lote = new LinkedHashMap<>();
+        Iterator<String> ids = pendientes.keySet().iterator();
+        while (ids.hasNext() && lote.size() < maxEstados) {
+            String ordenId = ids.next();
+            Estado estado = pendientes.remove(ordenId);
+            if (estado != null) {
+                lote.put(ordenId, estado);
+            }
+        }
+        return lote;
+    }
+
+    // Si la escritura falla, el lote vuelve a pendientes salvo que ya haya un estado más nuevo
+    void devolverPendientes(Map<String, Estado> lote) {
+        lote.forEach(pendientes::putIfAbsent);
+    }
+
+    // Las órdenes cerradas (listas, canceladas o expiradas) y ya persistidas dejan de ocupar
+    // memoria; sólo queda su lápida durante tombstone-ttl-minutes
+    void olvidarCompletadas(Map<String, Estado> lote) {
+        lote.forEach((ordenId, estado) -> {
+            if (estado.cerrado()) {
+                cerradas.put(ordenId, estado.status());
+                estados.remove(ordenId, estado);
+            }
+        });
+    }
+
+    boolean hayPendientes() {
+        return !pendientes.isEmpty();
+    }
+}
@@ -0,0 +1,126 @@
+package com.distribuidora.servicio_despacho.service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.distribuidora.saga.events.OrdenListaParaEnvioEvent;
+import com.distribuidora.saga.events.ids.OrdenIds;
+
+import jakarta.annotation.PreDestroy;
+
+// Escribe en lote (write-behind) los cambios de DispatchStateAggregator en dispatch_states.
+// Cada orden se escribe como mucho una vez por pasada, aunque haya recibido varios eventos.
+// Los eventos OrdenListaParaEnvio de las órdenes que pasan a LISTO se guardan en el outbox
+// en la misma transacción: si la escritura falla, estado y evento se reintentan juntos.
+@Component
+public class DispatchStateFlusher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DispatchStateFlusher.class);
+
+    // Upsert monótono: una confirmación ya guardada nunca se pierde aunque otra instancia
+    // escriba un estado más antiguo de la misma orden, y LISTO, CANCELADA y EXPIRADA son
+    // definitivos. creado_en sólo se escribe al insertar.
+    private static final String UPSERT_SQL = "INSERT INTO dispatch_states "
+            + "(orden_id, has_stock_confirmation, has_payment_confirmation, status, creado_en, particion) "
+            + "VALUES (?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE "
+            + "particion = VALUES(particion), "
+            + "has_stock_confirmation = has_stock_confirmation OR VALUES(has_stock_confirmation), "
+            + "has_payment_confirmation = has_payment_confirmation OR VALUES(has_payment_confirmation), "
+            + "status = CASE WHEN status IN ('" + DispatchStateAggregator.LISTO + "', '"
+            + DispatchStateAggregator.CANCELADA + "', '" + DispatchStateAggregator.EXPIRADA
+            + "') THEN status ELSE VALUES(status) END";
+
+    private final DispatchStateAggregator aggregator;
+    private final JdbcTemplate jdbcTemplate;
+    private final DispatchEventProducer eventProducer;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${despacho.state.flush-batch-size:1000}")
+    private int flushBatchSize;
+
+    public DispatchStateFlusher(DispatchStateAggregator aggregator, JdbcTemplate jdbcTemplate,
+            DispatchEventProducer eventProducer, PlatformTransactionManager transactionManager) {
+        this.aggregator = aggregator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventProducer = eventProducer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // synchronized: cuando DispatchPartitionCoordinator cede una partición, su llamada
+    // espera a la pasada en curso, así al volver no queda ningún lote a medio escribir
+    @Scheduled(fixedDelayString = "${despacho.state.flush-interval-ms:200}")
+    public synchronized void flush() {
+        while (aggregator.hayPendientes()) {
+            Map<String, DispatchStateAggregator.Estado> lote = aggregator.tomarPendientes(flushBatchSize);
+            if (lote.isEmpty()) {
+                return;
+            }
+
+            List<Object[]> filas = new ArrayList<>(lote.size());
+            List<OrdenListaParaEnvioEvent> listas = new ArrayList<>();
+            lote.forEach((ordenId, estado) -> {
+                filas.add(new Object[] { OrdenIds.aBytes(ordenId), estado.stock(), estado.pago(), estado.status(),
+                        new Timestamp(estado.desde()), estado.particion() });
+                if (estado.listo()) {
+                    listas.add(new OrdenListaParaEnvioEvent(ordenId));
+                }
+            });
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.batchUpdate(UPSERT_SQL, filas);
+                    eventProducer.sendOrdenListaParaEnvioEvents(confirmadasComoListas(listas));
+                });
+            } catch (RuntimeException e) {
+                aggregator.devolverPendientes(lote);
+                LOGGER.error("No se pudo persistir el estado de despacho de {} órdenes, se reintentará: {}",
+                        lote.size(), e.getMessage());
+                return;
+            }
+
+            aggregator.olvidarCompletadas(lote);
+            LOGGER.debug("Write-behind: {} estados de despacho persistidos", lote.size());
+        }
+    }
+
+    // Una orden olvidada de la memoria (reinicio, lápida vencida) puede volver a completarse
+    // con eventos repetidos aunque en la tabla ya esté cancelada o expirada. El upsert no
+    // cambia un estado definitivo, así que sólo se publican las que quedaron en LISTO.
+    private List<OrdenListaParaEnvioEvent> confirmadasComoListas(List<OrdenListaParaEnvioEvent> listas) {
+        if (listas.isEmpty()) {
+            return listas;
+        }
+        List<Object> parametros = new ArrayList<>(listas.size() + 1);
+        parametros.add(DispatchStateAggregator.LISTO);
+        listas.forEach(event -> parametros.add(OrdenIds.aBytes(event.ordenId())));
+        Set<String> listasEnTabla = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT BIN_TO_UUID(orden_id) FROM dispatch_states WHERE status = ? AND orden_id IN ("
+                        + String.join(",", Collections.nCopies(listas.size(), "?")) + ")",
+                String.class, parametros.toArray()));
+        if (listasEnTabla.size() < listas.size()) {
+            LOGGER.warn("{} órdenes completadas en memoria ya estaban cerradas en dispatch_states, no se publican",
+                    listas.size() - listasEnTabla.size());
+        }
+        return listas.stream().filter(event -> listasEnTabla.contains(event.ordenId())).toList();
+    }
+
+    // Al apagar se vacía lo que quede para no perder confirmaciones ya confirmadas (ack)
+    @PreDestroy
+    public void flushAlApagar() {
+        flush();
+    }
+}
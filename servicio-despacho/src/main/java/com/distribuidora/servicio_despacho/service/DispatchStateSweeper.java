@@ -0,0 +1,36 @@
+package com.distribuidora.servicio_despacho.service;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Barrido de timeouts: las órdenes que llevan más de timeout-minutes esperando alguna
+// confirmación (ej. un evento perdido) se cierran como EXPIRADA. Sólo recorre la memoria:
+// DispatchStateFlusher las escribe en lote y después dejan de ocupar el mapa.
+@Component
+public class DispatchStateSweeper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DispatchStateSweeper.class);
+
+    private final DispatchStateAggregator aggregator;
+    private final Duration timeout;
+
+    public DispatchStateSweeper(DispatchStateAggregator aggregator,
+            @Value("${despacho.sweeper.timeout-minutes}") long timeoutMinutes) {
+        this.aggregator = aggregator;
+        this.timeout = Duration.ofMinutes(timeoutMinutes);
+    }
+
+    @Scheduled(fixedDelayString = "${despacho.sweeper.interval-ms}")
+    public void barrer() {
+        int expiradas = aggregator.expirarAnteriores(System.currentTimeMillis() - timeout.toMillis());
+        if (expiradas > 0) {
+            LOGGER.warn("{} órdenes expiradas tras esperar confirmaciones más de {} minutos", expiradas,
+                    timeout.toMinutes());
+        }
+    }
+}
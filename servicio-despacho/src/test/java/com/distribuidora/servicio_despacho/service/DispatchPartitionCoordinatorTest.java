@@ -0,0 +1,192 @@
+package com.distribuidora.servicio_despacho.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.distribuidora.saga.events.ids.OrdenIds;
+import com.distribuidora.servicio_despacho.model.DispatchState;
+import com.distribuidora.servicio_despacho.repository.DispatchRepository;
+
+// Dos instancias de servicio-despacho sobre la misma base de datos (H2 en modo MySQL)
+class DispatchPartitionCoordinatorTest {
+
+    private static final int PARTICIONES = 4;
+    private static final long LEASE_MS = 30_000;
+
+    private SimpleDriverDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private RelojManual reloj;
+    // Arranques y paradas de consumo de ambas instancias, en orden
+    private final List<String> consumo = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:despacho-" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE dispatch_states (orden_id BINARY(16) PRIMARY KEY, "
+                + "has_stock_confirmation BOOLEAN, has_payment_confirmation BOOLEAN, status VARCHAR(40), "
+                + "creado_en TIMESTAMP(3), particion INT)");
+        jdbcTemplate.execute("CREATE TABLE dispatch_partition_leases (partition_id INT PRIMARY KEY, "
+                + "owner VARCHAR(64), expires_at TIMESTAMP(3))");
+        jdbcTemplate.execute("CREATE TABLE dispatch_members (instance_id VARCHAR(64) PRIMARY KEY, "
+                + "heartbeat_at TIMESTAMP(3) NOT NULL)");
+        reloj = new RelojManual(Instant.parse("2026-01-01T00:00:00Z"));
+    }
+
+    @Test
+    void unaInstanciaSolaConsumeTodasLasParticiones() {
+        Instancia a = new Instancia("A");
+
+        a.coordinator.reequilibrar();
+
+        assertThat(a.coordinator.propias()).containsExactly(0, 1, 2, 3);
+    }
+
+    @Test
+    void alCederSeEscribeElEstadoYQuienLaGanaLoRecupera() {
+        Instancia a = new Instancia("A");
+        Instancia b = new Instancia("B");
+        String ordenId = OrdenIds.nuevo().toString();
+
+        a.coordinator.reequilibrar();
+        // El stock llega a A y queda sólo en memoria (el flusher aún no pasó)
+        assertThat(a.aggregator.confirmar(ordenId, "STOCK_OK", 3)).isFalse();
+
+        // B se une: no hay particiones libres hasta que A ceda las que le sobran
+        b.coordinator.reequilibrar();
+        assertThat(b.coordinator.propias()).isEmpty();
+        a.coordinator.reequilibrar();
+        assertThat(a.coordinator.propias()).containsExactly(0, 1);
+        b.coordinator.reequilibrar();
+        assertThat(b.coordinator.propias()).containsExactly(2, 3);
+
+        // A dejó de consumir la partición antes de que B empezara
+        assertThat(consumo.indexOf("A detener 3")).isLessThan(consumo.indexOf("B iniciar 3"));
+        // B recuperó el stock confirmado en A: el pago completa la orden
+        assertThat(b.aggregator.confirmar(ordenId, "PAGO_OK", 3)).isTrue();
+    }
+
+    @Test
+    void lasParticionesDeUnaInstanciaCaidaSeReclamanAlVencerSuLease() {
+        Instancia a = new Instancia("A");
+        Instancia b = new Instancia("B");
+        a.coordinator.reequilibrar();
+        b.coordinator.reequilibrar();
+        a.coordinator.reequilibrar();
+        b.coordinator.reequilibrar();
+        assertThat(b.coordinator.propias()).containsExactly(2, 3);
+
+        // B deja de latir (pausa o caída): antes de vencer su lease A no toca sus particiones
+        reloj.avanzar(LEASE_MS / 2);
+        a.coordinator.reequilibrar();
+        assertThat(a.coordinator.propias()).containsExactly(0, 1);
+
+        reloj.avanzar(LEASE_MS);
+        a.coordinator.reequilibrar();
+        assertThat(a.coordinator.propias()).containsExactly(0, 1, 2, 3);
+
+        // Al volver, B nota que perdió los leases y deja de consumir
+        b.coordinator.reequilibrar();
+        assertThat(b.coordinator.propias()).isEmpty();
+        assertThat(consumo).contains("B detener 2", "B detener 3");
+    }
+
+    @Test
+    void alApagarSeCedenTodasSinEsperarAlVencimiento() {
+        Instancia a = new Instancia("A");
+        Instancia b = new Instancia("B");
+        a.coordinator.reequilibrar();
+        b.coordinator.reequilibrar();
+
+        a.coordinator.cederTodas();
+        b.coordinator.reequilibrar();
+
+        assertThat(b.coordinator.propias()).containsExactly(0, 1, 2, 3);
+    }
+
+    private final class Instancia {
+
+        private final DispatchStateAggregator aggregator;
+        private final DispatchPartitionCoordinator coordinator;
+
+        Instancia(String id) {
+            DispatchRepository repository = mock(DispatchRepository.class);
+            when(repository.findByStatusAndParticion(anyString(), anyInt())).thenAnswer(invocation -> jdbcTemplate.query(
+                    "SELECT orden_id, has_stock_confirmation, has_payment_confirmation, status, creado_en, particion "
+                            + "FROM dispatch_states WHERE status = ? AND particion = ?",
+                    (rs, fila) -> new DispatchState(uuid(rs.getBytes(1)), rs.getBoolean(2), rs.getBoolean(3),
+                            rs.getString(4), rs.getTimestamp(5).toInstant(), rs.getInt(6)),
+                    invocation.getArgument(0), invocation.getArgument(1)));
+            aggregator = new DispatchStateAggregator(repository, 60, 1000);
+            DispatchStateFlusher flusher = new DispatchStateFlusher(aggregator, jdbcTemplate,
+                    mock(DispatchEventProducer.class), new DataSourceTransactionManager(dataSource));
+            ReflectionTestUtils.setField(flusher, "flushBatchSize", 100);
+            DispatchPartitionCoordinator.ConsumoParticiones registro = new DispatchPartitionCoordinator.ConsumoParticiones() {
+                @Override
+                public void iniciar(int particion) {
+                    consumo.add(id + " iniciar " + particion);
+                }
+
+                @Override
+                public void detener(int particion) {
+                    consumo.add(id + " detener " + particion);
+                }
+            };
+            coordinator = new DispatchPartitionCoordinator(jdbcTemplate, aggregator, flusher, registro, id,
+                    PARTICIONES, LEASE_MS, reloj);
+        }
+    }
+
+    private static UUID uuid(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static final class RelojManual extends Clock {
+
+        private volatile Instant ahora;
+
+        RelojManual(Instant ahora) {
+            this.ahora = ahora;
+        }
+
+        void avanzar(long millis) {
+            ahora = ahora.plusMillis(millis);
+        }
+
+        @Override
+        public Instant instant() {
+            return ahora;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.distribuidora.servicio_despacho.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.distribuidora.saga.events.ids.OrdenIds;
+import com.distribuidora.servicio_despacho.repository.DispatchRepository;
+
+class DispatchStateAggregatorTest {
+
+    private DispatchStateAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new DispatchStateAggregator(mock(DispatchRepository.class), 60, 1000);
+    }
+
+    @Test
+    void laOrdenSeCompletaConStockYPagoEnCualquierOrden() {
+        String ordenId = OrdenIds.nuevo().toString();
+
+        assertThat(aggregator.confirmar(ordenId, "PAGO_OK", 0)).isFalse();
+        assertThat(aggregator.confirmar(ordenId, "PAGO_OK", 0)).isFalse();
+        assertThat(aggregator.confirmar(ordenId, "STOCK_OK", 0)).isTrue();
+        // Un duplicado tras completarse no la vuelve a emitir
+        assertThat(aggregator.confirmar(ordenId, "STOCK_OK", 0)).isFalse();
+
+        Map<String, DispatchStateAggregator.Estado> pendientes = aggregator.tomarPendientes(10);
+        assertThat(pendientes.get(ordenId).status()).isEqualTo(DispatchStateAggregator.LISTO);
+    }
+
+    @Test
+    void soloUnHiloCompletaLaOrden() throws InterruptedException {
+        int ordenes = 500;
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < ordenes; i++) {
+            ids.add(OrdenIds.nuevo().toString());
+        }
+        AtomicInteger completadas = new AtomicInteger();
+        CountDownLatch inicio = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (String eventType : List.of("STOCK_OK", "PAGO_OK", "STOCK_OK", "PAGO_OK")) {
+            executor.execute(() -> {
+                try {
+                    inicio.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                for (String ordenId : ids) {
+                    if (aggregator.confirmar(ordenId, eventType, 0)) {
+                        completadas.incrementAndGet();
+                    }
+                }
+            });
+        }
+        inicio.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(completadas.get()).isEqualTo(ordenes);
+    }
+
+    @Test
+    void expirarCierraSoloLasOrdenesAntiguasYEsDefinitivo() {
+        String antigua = OrdenIds.nuevo().toString();
+        aggregator.confirmar(antigua, "STOCK_OK", 0);
+
+        assertThat(aggregator.expirarAnteriores(System.currentTimeMillis() - 60_000)).isZero();
+        assertThat(aggregator.expirarAnteriores(System.currentTimeMillis() + 1)).isEqualTo(1);
+
+        // El pago tardío ya no completa una orden expirada
+        assertThat(aggregator.confirmar(antigua, "PAGO_OK", 0)).isFalse();
+        assertThat(aggregator.tomarPendientes(10).get(antigua).status()).isEqualTo(DispatchStateAggregator.EXPIRADA);
+    }
+
+    @Test
+    void lasLapidasIgnoranEventosTardiosDeOrdenesOlvidadas() {
+        String ordenId = OrdenIds.nuevo().toString();
+        aggregator.confirmar(ordenId, "STOCK_OK", 0);
+        aggregator.cancelar(ordenId, 0);
+        aggregator.olvidarCompletadas(aggregator.tomarPendientes(10));
+
+        // Ya no está en memoria, pero una redelivery de ambos eventos no la completa de nuevo
+        assertThat(aggregator.confirmar(ordenId, "STOCK_OK", 0)).isFalse();
+        assertThat(aggregator.confirmar(ordenId, "PAGO_OK", 0)).isFalse();
+        assertThat(aggregator.hayPendientes()).isFalse();
+    }
+
+    @Test
+    void unaEscrituraFallidaNoPisaUnEstadoMasNuevo() {
+        String ordenId = OrdenIds.nuevo().toString();
+        aggregator.confirmar(ordenId, "STOCK_OK", 0);
+        Map<String, DispatchStateAggregator.Estado> lote = aggregator.tomarPendientes(10);
+        aggregator.confirmar(ordenId, "PAGO_OK", 0);
+
+        aggregator.devolverPendientes(lote);
+
+        assertThat(aggregator.tomarPendientes(10).get(ordenId).status()).isEqualTo(DispatchStateAggregator.LISTO);
+    }
+}
@@ -1,7 +1,8 @@
 package com.distribuidora.servicio_envio.config;
 
+import java.time.Duration;
+
 import org.springframework.amqp.core.TopicExchange;
-import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,6 +10,14 @@ import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.support.converter.MessageConverter;
+import com.distribuidora.saga.events.amqp.SagaMessageConverters;
+import com.distribuidora.saga.events.dedup.MessageDeduplicator;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @Configuration
 public class RabbitMQConfig {
@@ -34,8 +43,43 @@ public class RabbitMQConfig {
         return BindingBuilder.bind(queue).to(exchange).with(routingKey);
     }
     
+    /*
+     * Fábrica de contenedores para los @RabbitListener de este servicio. Por defecto
+     * Spring AMQP usa un único consumidor; aquí la concurrencia, el prefetch y el uso
+     * de hilos virtuales (Java 21) se ajustan por cola desde application.properties.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            MessageDeduplicator messageDeduplicator,
+            @Value("${rabbitmq.listener.shipping.concurrency}") int concurrency,
+            @Value("${rabbitmq.listener.shipping.max-concurrency}") int maxConcurrency,
+            @Value("${rabbitmq.listener.shipping.prefetch}") int prefetch,
+            @Value("${rabbitmq.listener.shipping.virtual-threads}") boolean virtualThreads) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAdviceChain(messageDeduplicator);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(maxConcurrency);
+        factory.setPrefetchCount(prefetch);
+        if (virtualThreads) {
+            factory.setTaskExecutor(new VirtualThreadTaskExecutor("shipping-listener-"));
+        }
+        return factory;
+    }
+
+    @Bean
+    public MessageDeduplicator messageDeduplicator(JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${rabbitmq.dedup.cache-size}") long cacheSize,
+            @Value("${rabbitmq.dedup.cache-ttl-minutes}") long cacheTtlMinutes,
+            @Value("${rabbitmq.dedup.retention-hours}") long retentionHours) {
+        return new MessageDeduplicator(jdbcTemplate, transactionManager, cacheSize, Duration.ofMinutes(cacheTtlMinutes),
+                Duration.ofHours(retentionHours));
+    }
+
     @Bean
-    public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter messageConverter(@Value("${rabbitmq.serialization.format}") String format) {
+        return SagaMessageConverters.create(format);
     }
 }
\ No newline at end of file
@@ -1,27 +1,38 @@
 package com.distribuidora.servicio_envio.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Map;
 import java.util.NoSuchElementException;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.distribuidora.saga.events.io.StreamingLineParser;
+import com.distribuidora.servicio_envio.dto.ManifestResult;
 import com.distribuidora.servicio_envio.model.Shipment;
+import com.distribuidora.servicio_envio.service.ManifestService;
 import com.distribuidora.servicio_envio.service.ShippingService;
 
 @RestController
 @RequestMapping("/api/shipping")
 public class ShippingController {
 
+    static final String TEXT_CSV_VALUE = "text/csv";
+
     private final ShippingService shippingService;
+    private final ManifestService manifestService;
 
-    public ShippingController(ShippingService shippingService) {
+    public ShippingController(ShippingService shippingService, ManifestService manifestService) {
         this.shippingService = shippingService;
+        this.manifestService = manifestService;
     }
 
     @GetMapping("/{orderId}")
@@ -35,4 +46,18 @@ public class ShippingController {
         String newState = statusUpdate.get("status");
         return ResponseEntity.ok(shippingService.updateStatus(orderId, newState));
     }
+
+    // Manifiesto del transportista en CSV (ordenId,status[,trackingNumber], cabecera
+    // opcional). Se procesa en streaming por lotes; las filas rechazadas se informan en la
+    // respuesta sin cortar el manifiesto.
+    @PostMapping(value = "/manifest", consumes = TEXT_CSV_VALUE)
+    public ManifestResult procesarManifiestoCsv(InputStream body) throws IOException {
+        return manifestService.procesar(body, StreamingLineParser.Formato.CSV);
+    }
+
+    // Manifiesto en NDJSON: un cambio de estado JSON por línea
+    @PostMapping(value = "/manifest", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ManifestResult procesarManifiestoNdjson(InputStream body) throws IOException {
+        return manifestService.procesar(body, StreamingLineParser.Formato.NDJSON);
+    }
 }
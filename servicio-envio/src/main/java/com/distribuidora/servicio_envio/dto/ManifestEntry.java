@@ -0,0 +1,6 @@
+package com.distribuidora.servicio_envio.dto;
+
+// Una línea del manifiesto del transportista. trackingNumber es opcional: si no viene se
+// conserva el del envío o, al pasar a ENVIADO, se genera uno.
+public record ManifestEntry(String ordenId, String status, String trackingNumber) {
+}
@@ -0,0 +1,11 @@
+package com.distribuidora.servicio_envio.dto;
+
+import java.util.List;
+
+// Resultado de un manifiesto. Sólo se devuelven los primeros errores (el resto se cuenta
+// en filasConError) para que la respuesta no crezca sin límite.
+public record ManifestResult(long filas, long actualizadas, long filasConError, List<ManifestError> errores) {
+
+    public record ManifestError(long linea, String ordenId, String mensaje) {
+    }
+}
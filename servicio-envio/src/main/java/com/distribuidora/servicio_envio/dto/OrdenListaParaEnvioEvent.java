@@ -1,10 +0,0 @@
-package com.distribuidora.servicio_envio.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data @AllArgsConstructor @NoArgsConstructor
-public class OrdenListaParaEnvioEvent {
-    private String ordenId;
-}
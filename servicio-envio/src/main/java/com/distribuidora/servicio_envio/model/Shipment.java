@@ -1,21 +1,31 @@
 package com.distribuidora.servicio_envio.model;
 
+import java.util.UUID;
 
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-@Data @NoArgsConstructor @AllArgsConstructor @Entity @Table(name = "shipments")
+// Un envío por orden: el índice único sirve las búsquedas por ordenId y hace que la
+// creación concurrente de duplicados falle en la base de datos
+@Data @NoArgsConstructor @AllArgsConstructor @Entity
+@Table(name = "shipments", uniqueConstraints = @UniqueConstraint(name = "uk_shipments_orden", columnNames = "orden_id"))
 public class Shipment {
     @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
-    private String ordenId;
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(columnDefinition = "BINARY(16)", nullable = false)
+    private UUID ordenId;
     private String status; // Ej: "EN_PREPARACION", "ENVIADO", "ENTREGADO"
     private String trackingNumber;
 }
@@ -1,6 +1,7 @@
 package com.distribuidora.servicio_envio.repository;
 
 import java.util.Optional;
+import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
@@ -9,5 +10,5 @@ import com.distribuidora.servicio_envio.model.Shipment;
 
 @Repository
 public interface ShippingRepository extends JpaRepository<Shipment, Long> {
-    Optional<Shipment> findByOrdenId(String ordenId);
+    Optional<Shipment> findByOrdenId(UUID ordenId);
 }
@@ -0,0 +1,206 @@
+package com.distribuidora.servicio_envio.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.distribuidora.saga.events.ids.OrdenIds;
+import com.distribuidora.saga.events.io.StreamingLineParser;
+import com.distribuidora.servicio_envio.dto.ManifestEntry;
+import com.distribuidora.servicio_envio.dto.ManifestResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * Manifiestos de los transportistas: miles de cambios de estado (ENVIADO / ENTREGADO) en
+ * un solo envío. El cuerpo se lee línea a línea con StreamingLineParser y cada lote se
+ * aplica en una transacción con dos sentencias: un SELECT ... FOR UPDATE de los envíos
+ * del lote y un único UPDATE con JOIN sobre una tabla VALUES con los cambios. Los números
+ * de tracking que faltan se generan en ese mismo UPDATE. Las filas inválidas se informan
+ * con su número de línea y no detienen el manifiesto.
+ */
+@Service
+public class ManifestService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ManifestService.class);
+
+    // Estado desde el que se puede llegar a cada estado del manifiesto. Repetir el estado
+    // actual se acepta (reenvíos del transportista o corrección del tracking).
+    private static final Map<String, String> ESTADO_PREVIO = Map.of(
+            "ENVIADO", "EN_PREPARACION",
+            "ENTREGADO", "ENVIADO");
+
+    private record Cambio(String status, String trackingNumber) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StreamingLineParser<ManifestEntry> parser;
+
+    @Value("${envio.manifest.batch-size}")
+    private int batchSize;
+
+    @Value("${envio.manifest.max-errores-reportados}")
+    private int maxErroresReportados;
+
+    public ManifestService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.parser = new StreamingLineParser<>(objectMapper, ManifestEntry.class,
+                List.of("ordenId", "status", "trackingNumber"), 2, ManifestService::desdeCsv);
+    }
+
+    public ManifestResult procesar(InputStream body, StreamingLineParser.Formato formato) throws IOException {
+        Manifiesto manifiesto = new Manifiesto();
+        long filas = parser.leer(body, formato, manifiesto);
+        manifiesto.aplicarLote();
+
+        LOGGER.info(String.format("Manifiesto de envíos: %d filas, %d actualizadas, %d con error",
+                filas, manifiesto.actualizadas, manifiesto.filasConError));
+        return new ManifestResult(filas, manifiesto.actualizadas, manifiesto.filasConError, manifiesto.errores);
+    }
+
+    // Estado de un manifiesto en curso
+    private class Manifiesto implements StreamingLineParser.Destino<ManifestEntry> {
+        long actualizadas;
+        long filasConError;
+        final List<ManifestResult.ManifestError> errores = new ArrayList<>();
+        final List<ManifestEntry> lote = new ArrayList<>(batchSize);
+        final List<Long> lineas = new ArrayList<>(batchSize);
+
+        @Override
+        public void fila(long linea, ManifestEntry entry) {
+            validar(entry);
+            lote.add(entry);
+            lineas.add(linea);
+            if (lote.size() >= batchSize) {
+                aplicarLote();
+            }
+        }
+
+        @Override
+        public void error(long linea, String mensaje) {
+            error(linea, null, mensaje);
+        }
+
+        void error(long linea, String ordenId, String mensaje) {
+            filasConError++;
+            if (errores.size() < maxErroresReportados) {
+                errores.add(new ManifestResult.ManifestError(linea, ordenId, mensaje));
+            }
+        }
+
+        void aplicarLote() {
+            if (lote.isEmpty()) {
+                return;
+            }
+            List<ManifestResult.ManifestError> rechazadas = new ArrayList<>();
+            try {
+                transactionTemplate.executeWithoutResult(status -> aplicar(lote, lineas, rechazadas));
+                actualizadas += lote.size() - rechazadas.size();
+                rechazadas.forEach(r -> error(r.linea(), r.ordenId(), r.mensaje()));
+            } catch (DataAccessException e) {
+                String mensaje = "Lote no aplicado: " + e.getMostSpecificCause().getMessage();
+                for (int i = 0; i < lote.size(); i++) {
+                    error(lineas.get(i), lote.get(i).ordenId(), mensaje);
+                }
+            }
+            lote.clear();
+            lineas.clear();
+        }
+    }
+
+    // Las filas se aplican en orden sobre el estado leído, así un mismo manifiesto puede
+    // llevar una orden a ENVIADO y después a ENTREGADO. A la base de datos sólo llega el
+    // estado final de cada orden.
+    private void aplicar(List<ManifestEntry> lote, List<Long> lineas, List<ManifestResult.ManifestError> rechazadas) {
+        Map<UUID, String> estados = bloquearEnvios(lote);
+        Map<UUID, Cambio> cambios = new LinkedHashMap<>();
+        for (int i = 0; i < lote.size(); i++) {
+            ManifestEntry entry = lote.get(i);
+            UUID ordenId = OrdenIds.parse(entry.ordenId());
+            String actual = estados.get(ordenId);
+            if (actual == null) {
+                rechazadas.add(new ManifestResult.ManifestError(lineas.get(i), entry.ordenId(),
+                        "No existe envío para la orden"));
+                continue;
+            }
+            if (!actual.equals(entry.status()) && !actual.equals(ESTADO_PREVIO.get(entry.status()))) {
+                rechazadas.add(new ManifestResult.ManifestError(lineas.get(i), entry.ordenId(),
+                        String.format("Transición no permitida: %s -> %s", actual, entry.status())));
+                continue;
+            }
+            estados.put(ordenId, entry.status());
+            Cambio previo = cambios.get(ordenId);
+            String trackingNumber = entry.trackingNumber() != null || previo == null
+                    ? entry.trackingNumber()
+                    : previo.trackingNumber();
+            cambios.put(ordenId, new Cambio(entry.status(), trackingNumber));
+        }
+
+        if (!cambios.isEmpty()) {
+            List<Object> parametros = new ArrayList<>(cambios.size() * 3);
+            cambios.forEach((ordenId, cambio) -> {
+                parametros.add(OrdenIds.aBytes(ordenId));
+                parametros.add(cambio.status());
+                parametros.add(cambio.trackingNumber());
+            });
+            jdbcTemplate.update(actualizarSql(cambios.size()), parametros.toArray());
+        }
+    }
+
+    // Estado actual de los envíos del lote, bloqueados hasta el UPDATE
+    private Map<UUID, String> bloquearEnvios(List<ManifestEntry> lote) {
+        List<byte[]> ids = lote.stream().map(entry -> OrdenIds.aBytes(entry.ordenId())).toList();
+        String sql = "SELECT BIN_TO_UUID(orden_id), status FROM shipments WHERE orden_id IN ("
+                + String.join(", ", Collections.nCopies(ids.size(), "?")) + ") FOR UPDATE";
+        Map<UUID, String> estados = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            estados.put(UUID.fromString(rs.getString(1)), rs.getString(2));
+        }, ids.toArray());
+        return estados;
+    }
+
+    // Un único UPDATE por lote. El tracking del manifiesto tiene prioridad; si no viene se
+    // conserva el existente y, si el envío no tenía, se genera con el mismo formato que
+    // ShippingService.updateStatus.
+    private static String actualizarSql(int filas) {
+        return "UPDATE shipments s JOIN (VALUES " + String.join(", ", Collections.nCopies(filas, "ROW(?, ?, ?)"))
+                + ") AS m (orden_id, status, tracking_number) ON s.orden_id = m.orden_id "
+                + "SET s.status = m.status, s.tracking_number = "
+                + "COALESCE(m.tracking_number, s.tracking_number, CONCAT('TRACK-', BIN_TO_UUID(s.orden_id)))";
+    }
+
+    // Formato ordenId,status[,trackingNumber]
+    private static ManifestEntry desdeCsv(List<String> campos) {
+        String trackingNumber = campos.size() == 3 && !campos.get(2).isEmpty() ? campos.get(2) : null;
+        return new ManifestEntry(campos.get(0), campos.get(1), trackingNumber);
+    }
+
+    private static void validar(ManifestEntry entry) {
+        if (!OrdenIds.esValido(entry.ordenId())) {
+            throw new IllegalArgumentException("ordenId inválido: " + entry.ordenId());
+        }
+        if (entry.status() == null || !ESTADO_PREVIO.containsKey(entry.status())) {
+            throw new IllegalArgumentException("Estado no admitido en un manifiesto: " + entry.status());
+        }
+        if (entry.trackingNumber() != null && entry.trackingNumber().length() > 255) {
+            throw new IllegalArgumentException("Número de tracking demasiado largo");
+        }
+    }
+}
@@ -3,7 +3,7 @@ package com.distribuidora.servicio_envio.service;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
 
-import com.distribuidora.servicio_envio.dto.OrdenListaParaEnvioEvent;
+import com.distribuidora.saga.events.OrdenListaParaEnvioEvent;
 
 @Component
 public class ShippingEventsListener {
@@ -17,6 +17,6 @@ public class ShippingEventsListener {
     @RabbitListener(queues = "${rabbitmq.queue.shipping.name}")
     public void onOrdenListaParaEnvio(OrdenListaParaEnvioEvent event) {
         LOGGER.info("Evento OrdenListaParaEnvio recibido -> {}", event);
-        shippingService.createShipment(event.getOrdenId());
+        shippingService.createShipment(event.ordenId());
     }
 }
\ No newline at end of file
@@ -3,8 +3,11 @@ package com.distribuidora.servicio_envio.service;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import com.distribuidora.saga.events.ids.OrdenIds;
 import com.distribuidora.servicio_envio.model.Shipment;
 import com.distribuidora.servicio_envio.repository.ShippingRepository;
 
@@ -12,26 +15,34 @@ import jakarta.transaction.Transactional;
 
 @Service
 public class ShippingService {
+    // Idempotencia en una sola sentencia: si la orden ya tiene envío (índice único
+    // uk_shipments_orden) el INSERT no hace nada. A diferencia de INSERT IGNORE, cualquier
+    // otro error sigue fallando.
+    private static final String CREAR_ENVIO_SQL =
+            "INSERT INTO shipments (orden_id, status) VALUES (?, 'EN_PREPARACION') "
+                    + "ON DUPLICATE KEY UPDATE orden_id = orden_id";
+
     private final ShippingRepository repository;
+    private final JdbcTemplate jdbcTemplate;
 
-    public ShippingService(ShippingRepository repository) {
+    public ShippingService(ShippingRepository repository, JdbcTemplate jdbcTemplate) {
         this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
+    // Un id mal formado no llegará a ser válido por más que se reintente: se rechaza sin
+    // reencolar en lugar de dejar que el IllegalArgumentException lo devuelva a la cola
     @Transactional
     public void createShipment(String ordenId) {
-        // Idempotencia: Verificar si ya existe un envío para esta orden
-        if (repository.findByOrdenId(ordenId).isEmpty()) {
-            Shipment shipment = new Shipment();
-            shipment.setOrdenId(ordenId);
-            shipment.setStatus("EN_PREPARACION"); // Estado inicial
-            repository.save(shipment);
+        if (!OrdenIds.esValido(ordenId)) {
+            throw new AmqpRejectAndDontRequeueException("OrdenListaParaEnvio con ordenId inválido: " + ordenId);
         }
+        jdbcTemplate.update(CREAR_ENVIO_SQL, (Object) OrdenIds.aBytes(ordenId));
     }
 
     @Transactional
     public Shipment updateStatus(String ordenId, String newStatus) {
-        Shipment shipment = repository.findByOrdenId(ordenId)
+        Shipment shipment = findByOrdenId(ordenId)
                 .orElseThrow(() -> new NoSuchElementException("No se encontró envío para la orden: " + ordenId));
         shipment.setStatus(newStatus);
         // Aquí se podría añadir un número de tracking si el estado es "ENVIADO"
@@ -41,7 +52,11 @@ public class ShippingService {
         return repository.save(shipment);
     }
 
+    // Un id con formato inválido no puede existir en shipments: se trata como no encontrado
     public Optional<Shipment> findByOrdenId(String ordenId) {
-        return repository.findByOrdenId(ordenId);
+        if (!OrdenIds.esValido(ordenId)) {
+            return Optional.empty();
+        }
+        return repository.findByOrdenId(OrdenIds.parse(ordenId));
     }
 }
@@ -0,0 +1,66 @@
+package com.distribuidora.servicio_envio.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import com.distribuidora.saga.events.ids.OrdenIds;
+import com.distribuidora.servicio_envio.repository.ShippingRepository;
+
+// Creación idempotente de envíos sobre una base de datos real (H2 en modo MySQL)
+class ShippingServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private ShippingService service;
+
+    @BeforeEach
+    void setUp() {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:envio-" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE shipments (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "orden_id BINARY(16) NOT NULL, status VARCHAR(255), tracking_number VARCHAR(255), "
+                + "CONSTRAINT uk_shipments_orden UNIQUE (orden_id))");
+        service = new ShippingService(mock(ShippingRepository.class), jdbcTemplate);
+    }
+
+    @Test
+    void laRedeliveryNoCreaUnSegundoEnvio() {
+        String ordenId = OrdenIds.nuevo().toString();
+
+        service.createShipment(ordenId);
+        jdbcTemplate.update("UPDATE shipments SET status = 'ENVIADO'");
+        service.createShipment(ordenId);
+
+        assertThat(jdbcTemplate.queryForList("SELECT status FROM shipments", String.class)).containsExactly("ENVIADO");
+    }
+
+    @Test
+    void entregasConcurrentesDejanUnSoloEnvio() throws Exception {
+        String ordenId = OrdenIds.nuevo().toString();
+
+        CompletableFuture<?>[] entregas = new CompletableFuture<?>[8];
+        for (int i = 0; i < entregas.length; i++) {
+            entregas[i] = CompletableFuture.runAsync(() -> service.createShipment(ordenId));
+        }
+        CompletableFuture.allOf(entregas).get(10, TimeUnit.SECONDS);
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM shipments", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void unOrdenIdMalFormadoSeRechazaSinReencolar() {
+        assertThatThrownBy(() -> service.createShipment("orden-1"))
+                .isInstanceOf(AmqpRejectAndDontRequeueException.class);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM shipments", Integer.class)).isZero();
+    }
+}
@@ -2,8 +2,14 @@ package com.distribuidora.servicio_inventario;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import com.distribuidora.saga.events.outbox.OutboxConfiguration;
 
 @SpringBootApplication
+@Import(OutboxConfiguration.class)
+@EnableScheduling
 public class ServicioInventarioApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,49 @@
+package com.distribuidora.servicio_inventario.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/*
+ * Cachés del catálogo de productos (Caffeine, acotadas y con TTL). Ambas registran
+ * estadísticas, que Actuator publica como métricas cache.gets (hit/miss), cache.puts y
+ * cache.evictions, y se pueden inspeccionar en /actuator/caches.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    // Producto por SKU (nombre y foto del stock)
+    public static final String PRODUCTOS = "productos";
+    // Páginas del listado GET /productos (clave: cursor + límite)
+    public static final String CATALOGO = "catalogo";
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${inventario.cache.productos.max-size}") long productosMaxSize,
+            @Value("${inventario.cache.productos.ttl-seconds}") long productosTtlSeconds,
+            @Value("${inventario.cache.catalogo.max-size}") long catalogoMaxSize,
+            @Value("${inventario.cache.catalogo.ttl-seconds}") long catalogoTtlSeconds) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.registerCustomCache(PRODUCTOS, Caffeine.newBuilder()
+                .maximumSize(productosMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(productosTtlSeconds))
+                .recordStats()
+                .build());
+        // El stock cambia con cada orden: el listado se invalida al añadir productos y,
+        // para los descuentos, se sirve una foto que caduca en pocos segundos
+        cacheManager.registerCustomCache(CATALOGO, Caffeine.newBuilder()
+                .maximumSize(catalogoMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(catalogoTtlSeconds))
+                .recordStats()
+                .build());
+        return cacheManager;
+    }
+}
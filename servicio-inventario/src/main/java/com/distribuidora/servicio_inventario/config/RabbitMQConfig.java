@@ -1,7 +1,8 @@
 package com.distribuidora.servicio_inventario.config;
 
+import java.time.Duration;
+
 import org.springframework.amqp.core.TopicExchange;
-import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,6 +10,14 @@ import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.support.converter.MessageConverter;
+import com.distribuidora.saga.events.amqp.SagaMessageConverters;
+import com.distribuidora.saga.events.dedup.MessageDeduplicator;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @Configuration
 public class RabbitMQConfig {
@@ -26,6 +35,18 @@ public class RabbitMQConfig {
         return new Queue(queueInventoryName);
     }
 
+    // Compensación: pagos fallidos cuyo stock hay que devolver
+    @Bean
+    public Queue compensationQueue(@Value("${rabbitmq.queue.inventory_compensation.name}") String queueName) {
+        return new Queue(queueName);
+    }
+
+    @Bean
+    public Binding compensationBinding(Queue compensationQueue,
+            @Value("${rabbitmq.routing.key.payment_failed}") String routingKey) {
+        return BindingBuilder.bind(compensationQueue).to(exchange()).with(routingKey);
+    }
+
     @Bean
     public TopicExchange exchange() {
         return new TopicExchange(exchangeName);
@@ -61,8 +82,88 @@ public class RabbitMQConfig {
                 .with(routingKeyOrderCreated);
     }
 
+    /*
+     * Fábrica de contenedores para los @RabbitListener de este servicio. Por defecto
+     * Spring AMQP usa un único consumidor; aquí la concurrencia, el prefetch y el uso
+     * de hilos virtuales (Java 21) se ajustan por cola desde application.properties.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            MessageDeduplicator messageDeduplicator,
+            @Value("${rabbitmq.listener.inventory.concurrency}") int concurrency,
+            @Value("${rabbitmq.listener.inventory.max-concurrency}") int maxConcurrency,
+            @Value("${rabbitmq.listener.inventory.prefetch}") int prefetch,
+            @Value("${rabbitmq.listener.inventory.virtual-threads}") boolean virtualThreads) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAdviceChain(messageDeduplicator);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(maxConcurrency);
+        factory.setPrefetchCount(prefetch);
+        if (virtualThreads) {
+            factory.setTaskExecutor(new VirtualThreadTaskExecutor("inventory-listener-"));
+        }
+        return factory;
+    }
+
+    /*
+     * Fábrica para el modo por lotes: entrega al listener hasta batch-size mensajes o
+     * lo que haya llegado tras batch-timeout-ms, lo que ocurra primero. El lote entero
+     * se confirma (ack) cuando el listener termina.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            MessageDeduplicator messageDeduplicator,
+            @Value("${rabbitmq.listener.inventory.concurrency}") int concurrency,
+            @Value("${rabbitmq.listener.inventory.batch.size}") int batchSize,
+            @Value("${rabbitmq.listener.inventory.batch.timeout-ms}") long batchTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAdviceChain(messageDeduplicator);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setBatchReceiveTimeout(batchTimeoutMs);
+        factory.setPrefetchCount(batchSize);
+        return factory;
+    }
+
+    /*
+     * Fábrica por lotes de la compensación: los pagos fallidos que llegan juntos se
+     * devuelven en una sola transacción, con un UPDATE por SKU.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory compensationRabbitListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            MessageDeduplicator messageDeduplicator,
+            @Value("${rabbitmq.listener.compensation.batch.size}") int batchSize,
+            @Value("${rabbitmq.listener.compensation.batch.timeout-ms}") long batchTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAdviceChain(messageDeduplicator);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setBatchReceiveTimeout(batchTimeoutMs);
+        factory.setPrefetchCount(batchSize);
+        return factory;
+    }
+
+    @Bean
+    public MessageDeduplicator messageDeduplicator(JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${rabbitmq.dedup.cache-size}") long cacheSize,
+            @Value("${rabbitmq.dedup.cache-ttl-minutes}") long cacheTtlMinutes,
+            @Value("${rabbitmq.dedup.retention-hours}") long retentionHours) {
+        return new MessageDeduplicator(jdbcTemplate, transactionManager, cacheSize, Duration.ofMinutes(cacheTtlMinutes),
+                Duration.ofHours(retentionHours));
+    }
+
     @Bean
-    public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter messageConverter(@Value("${rabbitmq.serialization.format}") String format) {
+        return SagaMessageConverters.create(format);
     }
 }
\ No newline at end of file
@@ -1,29 +1,104 @@
 package com.distribuidora.servicio_inventario.controller;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.distribuidora.saga.events.io.StreamingLineParser;
+import com.distribuidora.servicio_inventario.dto.ImportResult;
 import com.distribuidora.servicio_inventario.model.Product;
-import com.distribuidora.servicio_inventario.repository.ProductRepository;
+import com.distribuidora.servicio_inventario.service.ProductCatalogService;
+import com.distribuidora.servicio_inventario.service.ProductImportService;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/inventario")
 public class ProductController {
 
-    private final ProductRepository productRepository;
+    // Cabecera con el cursor de la página siguiente (el último SKU devuelto)
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
-    public ProductController(ProductRepository productRepository) {
-        this.productRepository = productRepository;
+    static final String TEXT_CSV_VALUE = "text/csv";
+
+    private final ProductCatalogService productCatalogService;
+    private final ProductImportService productImportService;
+
+    @Value("${inventario.productos.page.default-size}")
+    private int defaultPageSize;
+
+    @Value("${inventario.productos.page.max-size}")
+    private int maxPageSize;
+
+    public ProductController(ProductCatalogService productCatalogService,
+            ProductImportService productImportService) {
+        this.productCatalogService = productCatalogService;
+        this.productImportService = productImportService;
     }
 
     @PostMapping("/productos")
     public Product addProduct(@RequestBody Product product) {
-        return productRepository.save(product);
+        return productCatalogService.guardar(product);
     }
 
+    // Importación masiva en CSV (sku,nombre,stock, cabecera opcional). El cuerpo se procesa
+    // en streaming; las filas inválidas se informan en la respuesta sin cortar la carga.
+    @PostMapping(value = "/productos/import", consumes = TEXT_CSV_VALUE)
+    public ImportResult importProductsCsv(InputStream body) throws IOException {
+        return productImportService.importar(body, StreamingLineParser.Formato.CSV);
+    }
+
+    // Importación masiva en NDJSON: un producto JSON por línea
+    @PostMapping(value = "/productos/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ImportResult importProductsNdjson(InputStream body) throws IOException {
+        return productImportService.importar(body, StreamingLineParser.Formato.NDJSON);
+    }
+
+    // Sin parámetros, el catálogo completo como array JSON (el contrato de siempre de
+    // GET /productos), escrito en streaming igual que /productos/stream
+    @GetMapping(value = "/productos", params = { "!after", "!limit" })
+    public ResponseEntity<StreamingResponseBody> getAllProducts() {
+        return streamProductsJson();
+    }
+
+    // Paginación por cursor: ?after=<último SKU de la página anterior>&limit=N. Si hay más
+    // productos, la respuesta trae el cursor siguiente en X-Next-Cursor.
     @GetMapping("/productos")
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+    public ResponseEntity<List<Product>> getProductsPage(@RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        int size = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        List<Product> productos = productCatalogService.pagina(after, size);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (productos.size() == size) {
+            response.header(NEXT_CURSOR_HEADER, productos.get(productos.size() - 1).getSku());
+        }
+        return response.body(productos);
+    }
+
+    // Catálogo completo en streaming, un producto por línea (NDJSON)
+    @GetMapping(value = "/productos/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamProductsNdjson() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> productCatalogService.exportar(out, false));
+    }
+
+    // Catálogo completo en streaming como un único array JSON escrito de forma incremental
+    @GetMapping(value = "/productos/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamProductsJson() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> productCatalogService.exportar(out, true));
+    }
+
+    @GetMapping("/productos/{sku}")
+    public ResponseEntity<Product> getProduct(@PathVariable String sku) {
+        Product product = productCatalogService.buscar(sku);
+        return product != null ? ResponseEntity.ok(product) : ResponseEntity.notFound().build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,11 @@
+package com.distribuidora.servicio_inventario.dto;
+
+import java.util.List;
+
+// Resultado de una importación masiva de productos. Sólo se devuelven los primeros
+// errores (el resto se cuenta en filasConError) para que la respuesta no crezca sin límite.
+public record ImportResult(long filas, long importadas, long filasConError, List<ImportError> errores) {
+
+    public record ImportError(long linea, String mensaje) {
+    }
+}
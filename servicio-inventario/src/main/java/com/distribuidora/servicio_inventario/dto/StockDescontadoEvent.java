@@ -1,14 +0,0 @@
-package com.distribuidora.servicio_inventario.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data
-@Builder
-@AllArgsConstructor
-@NoArgsConstructor
-public class StockDescontadoEvent {
-    private String ordenId;
-}
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.distribuidora.servicio_inventario.model;
+
+import java.util.UUID;
+
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Una fila por orden que inventario ya procesó: la inserta la reserva (RESERVADA) o la
+// compensación (LIBERADA), la que llegue primero, dentro de su transacción. La clave
+// primaria serializa a las dos: una reserva que encuentra la fila no descuenta nada, y
+// una compensación concurrente espera a que la reserva termine antes de leer qué devolver.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "stock_order_claims")
+public class StockOrderClaim {
+
+    @Id
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(columnDefinition = "BINARY(16)")
+    private UUID ordenId;
+
+    private String status; // "RESERVADA" o "LIBERADA"
+}
@@ -0,0 +1,48 @@
+package com.distribuidora.servicio_inventario.model;
+
+import java.util.UUID;
+
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Registro de descuentos por orden. Las líneas de SKU "hot" entran con aplicada = false
+// (aceptadas por el ledger en memoria, pendientes de aplicar sobre products); las demás
+// entran ya aplicadas. La compensación usa este registro para devolver el stock de una
+// orden y marca sus filas como liberadas.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "stock_reservations", indexes = {
+        @Index(name = "idx_reservas_pendientes", columnList = "aplicada, id"),
+        @Index(name = "idx_reservas_orden", columnList = "orden_id") })
+public class StockReservation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(columnDefinition = "BINARY(16)")
+    private UUID ordenId;
+
+    private String sku;
+
+    private int cantidad;
+
+    private boolean aplicada;
+
+    // Stock ya devuelto por una compensación
+    private boolean liberada;
+}
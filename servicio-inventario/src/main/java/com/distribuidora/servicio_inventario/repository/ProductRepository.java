@@ -1,6 +1,9 @@
 package com.distribuidora.servicio_inventario.repository;
 
 
+import java.util.List;
+
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -9,4 +12,10 @@ import com.distribuidora.servicio_inventario.model.Product;
 @Repository
 public interface ProductRepository extends JpaRepository<Product, String> {
     // Heredamos findById (que buscará por SKU), save, etc.
-}
\ No newline at end of file
+
+    // Paginación por cursor (keyset) sobre la clave primaria: cada página es un recorrido
+    // del índice a partir del último SKU devuelto, sin OFFSET
+    List<Product> findAllByOrderBySkuAsc(Limit limit);
+
+    List<Product> findBySkuGreaterThanOrderBySkuAsc(String sku, Limit limit);
+}
@@ -0,0 +1,42 @@
+package com.distribuidora.servicio_inventario.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.stereotype.Repository;
+
+import com.distribuidora.servicio_inventario.model.StockReservation;
+
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    // Reservas aceptadas por el ledger que el flusher aún no ha aplicado a products.
+    // SELECT ... FOR UPDATE SKIP LOCKED: las filas quedan bloqueadas hasta que la misma
+    // transacción las marca aplicadas, así que una pasada concurrente no las vuelve a aplicar
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+    List<StockReservation> findByAplicadaFalseOrderByIdAsc(Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.aplicada = true WHERE r.id IN :ids")
+    int marcarAplicadas(Collection<Long> ids);
+
+    // Descuentos de las órdenes a compensar, bloqueados hasta el final de la transacción
+    // para que dos compensaciones de la misma orden no devuelvan el stock dos veces
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<StockReservation> findByOrdenIdIn(Collection<UUID> ordenIds);
+
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.liberada = true WHERE r.id IN :ids")
+    int marcarLiberadas(Collection<Long> ids);
+}
@@ -0,0 +1,209 @@
+package com.distribuidora.servicio_inventario.service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// Ledger en memoria para los SKU marcados como "hot" (ventas flash). El stock disponible
+// de cada SKU vive en un contador CAS; la fila de products se actualiza después, en lote,
+// desde HotSkuWriteBehindFlusher usando el registro de stock_reservations.
+//
+// El contador es del proceso: sólo una instancia de inventario puede tener el modo hot
+// activo (lo garantiza HotSkuOwnership). Si dos instancias vendieran contra su propio
+// contador, cada una creería tener todo el stock.
+@Component
+public class HotSkuLedger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HotSkuLedger.class);
+
+    // Stock de products menos las reservas que el flusher aún no aplicó, en una sola
+    // sentencia: así el flusher no puede aplicar reservas entre las dos lecturas
+    private static final String DISPONIBLE_SQL = "SELECT p.stock - COALESCE((SELECT SUM(r.cantidad) "
+            + "FROM stock_reservations r WHERE r.sku = p.sku AND r.aplicada = false), 0) FROM products p WHERE p.sku = ?";
+
+    // Estado de un SKU. Las reservas toman el bloqueo de lectura sólo alrededor del CAS, así
+    // que no se bloquean entre sí; la carga y las recargas toman el de escritura.
+    private static final class Contador {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final AtomicLong disponible = new AtomicLong();
+        // Reservado en memoria por transacciones que todavía no confirmaron su fila en
+        // stock_reservations: la base de datos aún no lo ve
+        final AtomicLong enCurso = new AtomicLong();
+        volatile boolean existe;
+        volatile long generacion;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HotSkuOwnership ownership;
+
+    private final boolean enabled;
+    private final Set<String> hotSkus;
+
+    // ConcurrentHashMap reparte los SKU entre sus bins, así que sólo compiten los hilos
+    // que descuentan exactamente el mismo SKU, y lo hacen con CAS.
+    private final ConcurrentMap<String, Contador> contadores = new ConcurrentHashMap<>();
+
+    public HotSkuLedger(JdbcTemplate jdbcTemplate, HotSkuOwnership ownership,
+            @Value("${inventario.hot-sku.enabled:false}") boolean enabled,
+            @Value("${inventario.hot-sku.skus:}") Set<String> hotSkus) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ownership = ownership;
+        this.enabled = enabled;
+        this.hotSkus = hotSkus.stream().map(String::trim).filter(sku -> !sku.isEmpty()).collect(Collectors.toSet());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Si la instancia pierde la propiedad del modo hot, los SKU vuelven al descuento normal
+    public boolean isHot(String sku) {
+        return enabled && hotSkus.contains(sku) && ownership.esPropietario();
+    }
+
+    // Descuenta la cantidad si hay stock disponible. No toca la base de datos salvo la
+    // primera vez que se usa el SKU (recuperación desde products + reservas pendientes).
+    // La reserva queda "en curso" hasta que su transacción llame a confirmar o liberar.
+    public boolean reservar(String sku, int cantidad) {
+        Contador contador = contador(sku);
+        Lock lectura = contador.lock.readLock();
+        lectura.lock();
+        try {
+            if (!contador.existe) {
+                return false;
+            }
+            long actual;
+            do {
+                actual = contador.disponible.get();
+                if (actual < cantidad) {
+                    return false;
+                }
+            } while (!contador.disponible.compareAndSet(actual, actual - cantidad));
+            contador.enCurso.addAndGet(cantidad);
+            return true;
+        } finally {
+            lectura.unlock();
+        }
+    }
+
+    // La transacción de la reserva se confirmó: su fila ya cuenta como pendiente en la base de datos
+    public void confirmar(String sku, int cantidad) {
+        Contador contador = contadores.get(sku);
+        if (contador != null) {
+            contador.enCurso.addAndGet(-cantidad);
+        }
+    }
+
+    // Devuelve al ledger una reserva cuya transacción se revirtió
+    public void liberar(String sku, int cantidad) {
+        Contador contador = contadores.get(sku);
+        if (contador == null) {
+            return;
+        }
+        Lock lectura = contador.lock.readLock();
+        lectura.lock();
+        try {
+            contador.disponible.addAndGet(cantidad);
+            contador.enCurso.addAndGet(-cantidad);
+        } finally {
+            lectura.unlock();
+        }
+    }
+
+    // Generación actual del contador, para devolver() (-1 si el SKU no está cargado)
+    public long generacion(String sku) {
+        Contador contador = contadores.get(sku);
+        return contador != null ? contador.generacion : -1;
+    }
+
+    // Devuelve stock ya confirmado en products (compensación). Si el contador se recargó
+    // desde que se tomó la generación, la recarga pudo leer ya la devolución; en ese caso
+    // no se suma otra vez (como mucho se vende de menos hasta la siguiente recarga).
+    public void devolver(String sku, int cantidad, long generacion) {
+        Contador contador = contadores.get(sku);
+        if (contador == null) {
+            return;
+        }
+        Lock lectura = contador.lock.readLock();
+        lectura.lock();
+        try {
+            if (contador.generacion == generacion) {
+                contador.disponible.addAndGet(cantidad);
+            }
+        } finally {
+            lectura.unlock();
+        }
+    }
+
+    // Recarga el valor desde la base de datos (ej. tras reponer stock desde el API). Las
+    // reservas del SKU esperan a que termine, así ninguna queda fuera del recálculo.
+    public void invalidar(String sku) {
+        Contador contador = contadores.get(sku);
+        if (contador == null) {
+            return;
+        }
+        Lock escritura = contador.lock.writeLock();
+        escritura.lock();
+        try {
+            cargar(sku, contador);
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    // Vacía el ledger, por ejemplo al perder la propiedad del modo hot
+    void descartar() {
+        contadores.clear();
+    }
+
+    // La carga consulta la base de datos, así que no se hace dentro de computeIfAbsent (que
+    // retendría el bin del mapa): se publica un contador con el bloqueo de escritura ya
+    // tomado y las reservas concurrentes del mismo SKU esperan a que esté cargado.
+    private Contador contador(String sku) {
+        Contador contador = contadores.get(sku);
+        if (contador != null) {
+            return contador;
+        }
+        Contador nuevo = new Contador();
+        Lock escritura = nuevo.lock.writeLock();
+        escritura.lock();
+        try {
+            contador = contadores.putIfAbsent(sku, nuevo);
+            if (contador != null) {
+                return contador;
+            }
+            try {
+                cargar(sku, nuevo);
+            } catch (RuntimeException e) {
+                contadores.remove(sku, nuevo);
+                throw e;
+            }
+            return nuevo;
+        } finally {
+            escritura.unlock();
+        }
+    }
+
+    // Se llama con el bloqueo de escritura tomado. Las reservas en curso se leen antes de la
+    // consulta: una que se confirme entre medias se resta dos veces (se vende de menos, nunca
+    // de más) y ninguna puede quedar sin restar.
+    private void cargar(String sku, Contador contador) {
+        long enCurso = contador.enCurso.get();
+        Long stock = jdbcTemplate.query(DISPONIBLE_SQL, rs -> rs.next() ? rs.getLong(1) : null, sku);
+        contador.existe = stock != null;
+        contador.disponible.set(stock != null ? stock - enCurso : 0);
+        contador.generacion++;
+        LOGGER.info(String.format("Ledger hot SKU %s cargado: disponible=%d, en curso=%d", sku,
+                contador.disponible.get(), enCurso));
+    }
+}
@@ -0,0 +1,135 @@
+package com.distribuidora.servicio_inventario.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// Propiedad exclusiva del modo hot SKU. El ledger es un contador en memoria del proceso,
+// así que sólo una instancia de inventario puede vender SKU hot a la vez: la que tenga el
+// lock con nombre de MySQL (GET_LOCK). El lock vive mientras viva la conexión que lo tomó,
+// por eso se reserva una conexión del pool para él durante toda la vida del servicio.
+//
+// Si al arrancar otra instancia ya tiene el lock, el arranque falla. Si la conexión se
+// pierde, el flusher lo detecta en su siguiente pasada, intenta recuperar el lock y, si no
+// puede, los SKU hot vuelven al descuento normal en esta instancia.
+@Component
+public class HotSkuOwnership {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HotSkuOwnership.class);
+
+    private static final String LOCK = "inventario-hot-sku";
+
+    private final DataSource dataSource;
+    private final boolean enabled;
+
+    private Connection conexion;
+    private volatile boolean propietario;
+
+    public HotSkuOwnership(DataSource dataSource, @Value("${inventario.hot-sku.enabled:false}") boolean enabled) {
+        this.dataSource = dataSource;
+        this.enabled = enabled;
+    }
+
+    @PostConstruct
+    void adquirir() {
+        if (!enabled) {
+            return;
+        }
+        if (!intentarAdquirir()) {
+            throw new IllegalStateException(
+                    "Otra instancia de inventario tiene el modo hot SKU activo; sólo una puede tenerlo");
+        }
+    }
+
+    public boolean esPropietario() {
+        return propietario;
+    }
+
+    // Comprueba que el lock sigue siendo de esta instancia (y mantiene viva la conexión).
+    // Devuelve false si se perdió y no se pudo recuperar.
+    public synchronized boolean verificar() {
+        if (!enabled) {
+            return false;
+        }
+        if (propietario && sigueSiendoPropietario()) {
+            return true;
+        }
+        boolean recuperado = intentarAdquirir();
+        if (!recuperado) {
+            LOGGER.error("Se perdió el lock del modo hot SKU: los SKU hot se descontarán por la vía normal");
+        }
+        return recuperado;
+    }
+
+    @PreDestroy
+    synchronized void liberar() {
+        propietario = false;
+        cerrar();
+    }
+
+    private boolean sigueSiendoPropietario() {
+        try (PreparedStatement ps = conexion.prepareStatement("SELECT IS_USED_LOCK(?) = CONNECTION_ID()")) {
+            ps.setString(1, LOCK);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("No se pudo comprobar el lock del modo hot SKU: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized boolean intentarAdquirir() {
+        propietario = false;
+        cerrar();
+        try {
+            conexion = dataSource.getConnection();
+            conexion.setAutoCommit(true);
+            try (PreparedStatement ps = conexion.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+                ps.setString(1, LOCK);
+                try (ResultSet rs = ps.executeQuery()) {
+                    propietario = rs.next() && rs.getInt(1) == 1;
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.warn("No se pudo tomar el lock del modo hot SKU: " + e.getMessage());
+        }
+        if (!propietario) {
+            cerrar();
+        } else {
+            LOGGER.info("Esta instancia tiene el modo hot SKU");
+        }
+        return propietario;
+    }
+
+    // La conexión vuelve al pool sin cerrarse de verdad, así que el lock se libera
+    // explícitamente (si la conexión ya está rota, MySQL lo liberó al perder la sesión)
+    private void cerrar() {
+        if (conexion == null) {
+            return;
+        }
+        try (PreparedStatement ps = conexion.prepareStatement("DO RELEASE_LOCK(?)")) {
+            ps.setString(1, LOCK);
+            ps.execute();
+        } catch (SQLException e) {
+            LOGGER.warn("No se pudo liberar el lock del modo hot SKU: " + e.getMessage());
+        }
+        try {
+            conexion.close();
+        } catch (SQLException e) {
+            LOGGER.warn("Error cerrando la conexión del lock hot SKU: " + e.getMessage());
+        }
+        conexion = null;
+    }
+}
@@ -0,0 +1,90 @@
+package com.distribuidora.servicio_inventario.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.distribuidora.servicio_inventario.model.StockReservation;
+import com.distribuidora.servicio_inventario.repository.StockReservationRepository;
+
+import jakarta.transaction.Transactional;
+
+// Aplica periódicamente a products las reservas de los SKU hot. Todas las reservas
+// pendientes de un mismo SKU se agrupan en un único UPDATE. Las filas se reclaman con
+// FOR UPDATE SKIP LOCKED y se marcan aplicadas en la misma transacción que el UPDATE, así
+// que aunque corran dos pasadas a la vez (otra instancia, o una pasada lenta) cada reserva
+// se aplica exactamente una vez.
+@Component
+public class HotSkuWriteBehindFlusher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HotSkuWriteBehindFlusher.class);
+
+    private static final String APLICAR_DELTA_SQL = "UPDATE products SET stock = stock - ? WHERE sku = ?";
+
+    private final HotSkuLedger hotSkuLedger;
+    private final HotSkuOwnership ownership;
+    private final StockReservationRepository reservationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductCatalogService productCatalogService;
+
+    @Value("${inventario.hot-sku.flush-batch-size:5000}")
+    private int flushBatchSize;
+
+    public HotSkuWriteBehindFlusher(HotSkuLedger hotSkuLedger, HotSkuOwnership ownership,
+            StockReservationRepository reservationRepository, JdbcTemplate jdbcTemplate,
+            ProductCatalogService productCatalogService) {
+        this.hotSkuLedger = hotSkuLedger;
+        this.ownership = ownership;
+        this.reservationRepository = reservationRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.productCatalogService = productCatalogService;
+    }
+
+    @Scheduled(fixedDelayString = "${inventario.hot-sku.flush-interval-ms:500}")
+    @Transactional
+    public void flush() {
+        if (!hotSkuLedger.isEnabled()) {
+            return;
+        }
+        // Sin el lock, otra instancia es la dueña del modo hot: el contador local ya no
+        // vale. Las reservas pendientes se siguen aplicando (SKIP LOCKED evita duplicarlas).
+        if (!ownership.verificar()) {
+            hotSkuLedger.descartar();
+        }
+
+        List<StockReservation> pendientes = reservationRepository
+                .findByAplicadaFalseOrderByIdAsc(PageRequest.of(0, flushBatchSize));
+        if (pendientes.isEmpty()) {
+            return;
+        }
+
+        // Coalescemos los deltas por SKU (ordenado, igual que el descuento normal)
+        Map<String, Long> deltasPorSku = new TreeMap<>();
+        List<Long> ids = new ArrayList<>(pendientes.size());
+        for (StockReservation reserva : pendientes) {
+            deltasPorSku.merge(reserva.getSku(), (long) reserva.getCantidad(), Long::sum);
+            ids.add(reserva.getId());
+        }
+
+        List<Object[]> deltas = new ArrayList<>(deltasPorSku.size());
+        deltasPorSku.forEach((sku, delta) -> deltas.add(new Object[] { delta, sku }));
+        jdbcTemplate.batchUpdate(APLICAR_DELTA_SQL, deltas);
+        productCatalogService.invalidarStock(deltasPorSku.keySet());
+
+        // Sólo se marcan las filas leídas arriba; las que lleguen mientras tanto quedan
+        // para la siguiente pasada
+        reservationRepository.marcarAplicadas(ids);
+
+        LOGGER.info(String.format("Write-behind: %d reservas aplicadas en %d SKU hot", ids.size(),
+                deltasPorSku.size()));
+    }
+}
@@ -1,13 +1,17 @@
 package com.distribuidora.servicio_inventario.service;
 
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import com.distribuidora.servicio_inventario.dto.StockDescontadoEvent;
+import com.distribuidora.saga.events.StockDescontadoEvent;
+import com.distribuidora.saga.events.StockFallidoEvent;
+import com.distribuidora.saga.events.outbox.OutboxService;
+
+import jakarta.transaction.Transactional;
 
 @Service
 public class InventoryEventProducer {
@@ -21,14 +25,27 @@ public class InventoryEventProducer {
     @Value("${rabbitmq.routing.key.stock_deducted}")
     private String stockDeductedRoutingKey;
 
-    private final RabbitTemplate rabbitTemplate;
+    @Value("${rabbitmq.routing.key.stock_failed}")
+    private String stockFailedRoutingKey;
+
+    private final OutboxService outboxService;
+
+    public InventoryEventProducer(OutboxService outboxService) {
+        this.outboxService = outboxService;
+    }
 
-    public InventoryEventProducer(RabbitTemplate rabbitTemplate) {
-        this.rabbitTemplate = rabbitTemplate;
+    // Debe llamarse dentro de la transacción que descuenta el stock: el evento queda en el
+    // outbox y sólo se publica si el descuento se confirma
+    public void sendStockDescontadoEvents(List<StockDescontadoEvent> events) {
+        LOGGER.info(String.format("Encolando %d eventos StockDescontado en el outbox", events.size()));
+        outboxService.enqueueAll(exchangeName, stockDeductedRoutingKey, events);
     }
 
-    public void sendStockDescontadoEvent(StockDescontadoEvent event) {
-        LOGGER.info(String.format("Publicando evento StockDescontado -> %s", event.toString()));
-        rabbitTemplate.convertAndSend(exchangeName, stockDeductedRoutingKey, event);
+    // Inicia la compensación: cobros reembolsa y órdenes/despacho marcan la orden como fallida.
+    // Tiene su propia transacción porque la del descuento ya se revirtió.
+    @Transactional
+    public void sendStockFallidoEvent(StockFallidoEvent event) {
+        LOGGER.info(String.format("Encolando evento StockFallido en el outbox -> %s", event.toString()));
+        outboxService.enqueue(exchangeName, stockFailedRoutingKey, event);
     }
 }
\ No newline at end of file
@@ -1,15 +1,18 @@
 package com.distribuidora.servicio_inventario.service;
 
-import com.distribuidora.servicio_inventario.dto.OrdenCreadaEvent;
-import com.distribuidora.servicio_inventario.dto.StockDescontadoEvent;
-import com.distribuidora.servicio_inventario.model.Product;
-import com.distribuidora.servicio_inventario.repository.ProductRepository;
+import com.distribuidora.saga.events.OrdenCreadaEvent;
+import com.distribuidora.saga.events.StockFallidoEvent;
+import com.distribuidora.saga.events.ids.OrdenIds;
 
-import java.util.NoSuchElementException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -18,61 +21,108 @@ public class InventoryService {
     private static final Logger LOGGER = LoggerFactory.getLogger(InventoryService.class);
 
     private final InventoryEventProducer inventoryEventProducer;
-    private final ProductRepository productRepository;
+    private final StockReservationEngine stockReservationEngine;
+    private final MessageConverter messageConverter;
 
-    public InventoryService(InventoryEventProducer inventoryEventProducer, ProductRepository productRepository) {
+    public InventoryService(InventoryEventProducer inventoryEventProducer, StockReservationEngine stockReservationEngine,
+            MessageConverter messageConverter) {
         this.inventoryEventProducer = inventoryEventProducer;
-        this.productRepository = productRepository;
+        this.stockReservationEngine = stockReservationEngine;
+        this.messageConverter = messageConverter;
     }
 
     // Escucha el evento de creación de orden desde RabbitMQ y procesa la lógica de
     // negocio para descontar el stock de los productos involucrados en la orden.
-    @RabbitListener(queues = "${rabbitmq.queue.inventory.name}")
+    // Sólo arranca cuando el modo por lotes está desactivado.
+    @RabbitListener(queues = "${rabbitmq.queue.inventory.name}",
+            autoStartup = "#{!${rabbitmq.listener.inventory.batch.enabled}}")
     public void handleOrderCreatedEvent(OrdenCreadaEvent event) {
         LOGGER.info(String.format("Evento OrdenCreada recibido en Inventario -> %s", event.toString()));
 
+        // Un id mal formado fallaría igual en cada redelivery: se rechaza sin reencolar
+        if (!OrdenIds.esValido(event.ordenId())) {
+            throw new AmqpRejectAndDontRequeueException("OrdenCreada con ordenId inválido: " + event.ordenId());
+        }
+
         // --- LÓGICA DE NEGOCIO ---
 
         try {
-            // Iteramos sobre cada producto en la orden recibida
-            for (OrdenCreadaEvent.ProductoItem item : event.getProductos()) {
-                LOGGER.info(String.format("Procesando producto: %s, Cantidad: %d", item.getProductoId(),
-                        item.getCantidad()));
-
-                // Buscamos el producto en nuestra base de datos por su SKU
-                Product product = productRepository.findById(item.getProductoId())
-                        .orElseThrow(() -> new NoSuchElementException(
-                                "Producto no encontrado con SKU: " + item.getProductoId()));
-
-                // Verificamos si hay stock suficiente
-                if (product.getStock() < item.getCantidad()) {
-                    // En un caso real, aquí publicaríamos un evento de "StockInsuficiente"
-                    // y la saga de compensación se activaría. Por ahora, lanzamos una excepción.
-                    throw new RuntimeException("Stock insuficiente para el producto: " + product.getSku());
-                }
-
-                // Disminuimos el stock y guardamos el cambio en la BD
-                product.setStock(product.getStock() - item.getCantidad());
-                productRepository.save(product);
+            for (OrdenCreadaEvent.ProductoItem item : event.productos()) {
+                LOGGER.info(String.format("Procesando producto: %s, Cantidad: %d", item.productoId(),
+                        item.cantidad()));
             }
 
-            LOGGER.info("Stock descontado exitosamente para la orden: " + event.getOrdenId());
+            // Descuento condicional de todas las líneas en una sola transacción. Si alguna
+            // línea no tiene stock suficiente, la orden completa se revierte. El siguiente
+            // evento de la saga (StockDescontado) se guarda en el outbox en esa transacción.
+            if (!stockReservationEngine.reservar(event.ordenId(), event.productos())) {
+                LOGGER.info("Orden ya reservada o compensada (pago fallido), no se descuenta stock: "
+                        + event.ordenId());
+                return;
+            }
 
-            // --- PUBLICAR EL SIGUIENTE EVENTO EN LA SAGA ---
-            StockDescontadoEvent stockDescontadoEvent = StockDescontadoEvent.builder()
-                    .ordenId(event.getOrdenId())
-                    .build();
+            LOGGER.info("Stock descontado exitosamente para la orden: " + event.ordenId());
+
+        } catch (StockInsuficienteException e) {
+            // La transacción ya se revirtió; se publica el fallo (vía outbox) para que la saga
+            // compense (reembolso del pago y orden marcada como fallida). Si no se puede
+            // guardar, la excepción sale del listener y el mensaje vuelve a la cola.
+            LOGGER.warn(String.format("Stock insuficiente para la orden %s: %s", event.ordenId(), e.getMessage()));
+            inventoryEventProducer.sendStockFallidoEvent(StockFallidoEvent.builder()
+                    .ordenId(event.ordenId())
+                    .motivoFallo(e.getMessage())
+                    .build());
+        }
+        // Cualquier otro fallo (ej. error de base de datos o deadlock) sale del listener: la
+        // transacción de deduplicación se revierte con su clave y el mensaje vuelve a la cola
+    }
 
-            inventoryEventProducer.sendStockDescontadoEvent(stockDescontadoEvent);
+    // Modo por lotes: recibe hasta batch-size mensajes (o lo que llegue en batch-timeout-ms),
+    // descuenta el stock de todo el lote en una transacción y el lote se confirma (ack) junto.
+    @RabbitListener(queues = "${rabbitmq.queue.inventory.name}",
+            containerFactory = "batchRabbitListenerContainerFactory",
+            autoStartup = "${rabbitmq.listener.inventory.batch.enabled}")
+    public void handleOrderCreatedEvents(List<Message> messages) {
+        List<OrdenCreadaEvent> events = convertir(messages);
+        if (events.isEmpty()) {
+            return;
+        }
+        LOGGER.info(String.format("Lote de %d eventos OrdenCreada recibido en Inventario", events.size()));
 
-        } catch (Exception e) {
-            // Si algo falla (ej. producto no encontrado, stock insuficiente), lo
-            // registramos.
-            // La transacción de la base de datos se revertirá automáticamente gracias a
-            // @Transactional.
-            // Y no se publicará el evento de éxito.
-            LOGGER.error(String.format("Error al procesar el inventario para la orden %s: %s", event.getOrdenId(),
+        try {
+            stockReservationEngine.reservarLote(events);
+        } catch (RuntimeException e) {
+            // Alguna orden del lote no se pudo descontar o ya estaba reservada o compensada:
+            // el lote ya se revirtió, así que reprocesamos orden por orden para aislarla.
+            // Un error que no sea de negocio volverá a fallar en su orden y reencolará el lote;
+            // las órdenes ya reservadas no se repiten gracias a su reclamo.
+            LOGGER.warn(String.format("Falló el lote de %d órdenes (%s), se procesan individualmente", events.size(),
                     e.getMessage()));
+            events.forEach(this::handleOrderCreatedEvent);
+            return;
+        }
+
+        LOGGER.info(String.format("Stock descontado exitosamente para un lote de %d órdenes", events.size()));
+    }
+
+    // Convierte cada mensaje por separado para que un mensaje corrupto (poison) o con un
+    // ordenId mal formado se descarte solo y no haga fallar ni reencolar el lote completo
+    private List<OrdenCreadaEvent> convertir(List<Message> messages) {
+        List<OrdenCreadaEvent> events = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            try {
+                // Igual que hace el adaptador de @RabbitListener: el tipo se infiere del destino
+                message.getMessageProperties().setInferredArgumentType(OrdenCreadaEvent.class);
+                OrdenCreadaEvent event = (OrdenCreadaEvent) messageConverter.fromMessage(message);
+                if (!OrdenIds.esValido(event.ordenId())) {
+                    throw new IllegalArgumentException("ordenId inválido: " + event.ordenId());
+                }
+                events.add(event);
+            } catch (RuntimeException e) {
+                LOGGER.error(String.format("Mensaje descartado del lote, no se pudo convertir (%s): %s",
+                        message.getMessageProperties().getMessageId(), e.getMessage()));
+            }
         }
+        return events;
     }
 }
@@ -0,0 +1,146 @@
+package com.distribuidora.servicio_inventario.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.distribuidora.servicio_inventario.config.CacheConfig;
+import com.distribuidora.servicio_inventario.model.Product;
+import com.distribuidora.servicio_inventario.repository.ProductRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+// Lectura del catálogo a través de caché. Los descuentos de stock no pasan por aquí
+// (son UPDATE condicionales en StockReservationEngine), pero invalidan los SKU tocados.
+@Service
+public class ProductCatalogService {
+
+    private static final String PRIMER_BLOQUE_SQL = "SELECT sku, nombre, stock FROM products ORDER BY sku LIMIT ?";
+    private static final String BLOQUE_SQL =
+            "SELECT sku, nombre, stock FROM products WHERE sku > ? ORDER BY sku LIMIT ?";
+
+    private static final RowMapper<Product> PRODUCT_ROW_MAPPER = (rs, rowNum) -> new Product(
+            rs.getString("sku"), rs.getString("nombre"), rs.getInt("stock"));
+
+    private final ProductRepository productRepository;
+    private final HotSkuLedger hotSkuLedger;
+    private final Cache productosCache;
+    private final Cache catalogoCache;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final int bloqueExportacion;
+
+    public ProductCatalogService(ProductRepository productRepository, HotSkuLedger hotSkuLedger,
+            CacheManager cacheManager, ObjectMapper objectMapper, JdbcTemplate jdbcTemplate,
+            @Value("${inventario.productos.export.block-size}") int bloqueExportacion) {
+        this.productRepository = productRepository;
+        this.hotSkuLedger = hotSkuLedger;
+        this.productosCache = cacheManager.getCache(CacheConfig.PRODUCTOS);
+        this.catalogoCache = cacheManager.getCache(CacheConfig.CATALOGO);
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.bloqueExportacion = bloqueExportacion;
+    }
+
+    // Página del catálogo ordenada por SKU, empezando después del cursor (null = primera).
+    // La clave por defecto (SimpleKey de ambos argumentos) distingue la primera página de
+    // un cursor con el texto "null".
+    @Cacheable(cacheNames = CacheConfig.CATALOGO)
+    public List<Product> pagina(String despuesDe, int limite) {
+        List<Product> productos = despuesDe == null
+                ? productRepository.findAllByOrderBySkuAsc(Limit.of(limite))
+                : productRepository.findBySkuGreaterThanOrderBySkuAsc(despuesDe, Limit.of(limite));
+        return List.copyOf(productos);
+    }
+
+    // Recorre el catálogo completo por bloques de block-size productos (paginación por
+    // SKU) y escribe cada bloque en cuanto se lee: el heap usado no depende del tamaño del
+    // catálogo y cada consulta devuelve su conexión al pool antes de escribir, así un
+    // cliente lento no retiene una conexión durante toda la descarga. Los bloques no son
+    // una foto única: un producto que cambia durante la descarga sale con el valor que
+    // tenía al leerse su bloque.
+    public void exportar(OutputStream out, boolean comoArray) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(Product.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n");
+        try (SequenceWriter sequence = comoArray ? writer.writeValuesAsArray(out) : writer.writeValues(out)) {
+            List<Product> bloque = jdbcTemplate.query(PRIMER_BLOQUE_SQL, PRODUCT_ROW_MAPPER, bloqueExportacion);
+            while (!bloque.isEmpty()) {
+                for (Product product : bloque) {
+                    sequence.write(product);
+                }
+                if (bloque.size() < bloqueExportacion) {
+                    break;
+                }
+                bloque = jdbcTemplate.query(BLOQUE_SQL, PRODUCT_ROW_MAPPER, bloque.getLast().getSku(),
+                        bloqueExportacion);
+            }
+        }
+        if (!comoArray) {
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    @Cacheable(cacheNames = CacheConfig.PRODUCTOS, key = "#sku", unless = "#result == null")
+    public Product buscar(String sku) {
+        return productRepository.findById(sku).orElse(null);
+    }
+
+    @Caching(put = @CachePut(cacheNames = CacheConfig.PRODUCTOS, key = "#result.sku"),
+            evict = @CacheEvict(cacheNames = CacheConfig.CATALOGO, allEntries = true))
+    public Product guardar(Product product) {
+        Product saved = productRepository.save(product);
+        // Si el SKU es hot, el ledger recargará el nuevo stock en el próximo descuento
+        hotSkuLedger.invalidar(saved.getSku());
+        return saved;
+    }
+
+    // Tras una importación masiva: igual que guardar(), pero para un lote de SKU
+    public void invalidarImportados(Collection<String> skus) {
+        skus.forEach(sku -> {
+            hotSkuLedger.invalidar(sku);
+            productosCache.evict(sku);
+        });
+        catalogoCache.clear();
+    }
+
+    // Llamado cuando cambia el stock de estos SKU en products. Dentro de una transacción
+    // se invalida al confirmar, para que una lectura concurrente no vuelva a cachear el
+    // valor anterior.
+    public void invalidarStock(Collection<String> skus) {
+        if (skus.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<String> pendientes = List.copyOf(skus);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    pendientes.forEach(productosCache::evict);
+                }
+            });
+        } else {
+            skus.forEach(productosCache::evict);
+        }
+    }
+}
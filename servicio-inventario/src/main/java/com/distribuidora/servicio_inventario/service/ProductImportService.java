@@ -0,0 +1,141 @@
+package com.distribuidora.servicio_inventario.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.distribuidora.saga.events.io.StreamingLineParser;
+import com.distribuidora.servicio_inventario.dto.ImportResult;
+import com.distribuidora.servicio_inventario.model.Product;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * Importación masiva del catálogo (sincronización con el ERP). El cuerpo se lee línea a
+ * línea con StreamingLineParser, cada fila válida se acumula en un lote y el lote se
+ * escribe con un único upsert JDBC (rewriteBatchedStatements lo convierte en un INSERT
+ * multi-fila). Las filas inválidas se informan con su número de línea y no detienen la
+ * importación.
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductImportService.class);
+
+    private static final String UPSERT_SQL = "INSERT INTO products (sku, nombre, stock) VALUES (?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE nombre = VALUES(nombre), stock = VALUES(stock)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductCatalogService productCatalogService;
+    // Los campos del CSV pueden ir entre comillas para admitir comas en el nombre
+    private final StreamingLineParser<Product> parser;
+
+    @Value("${inventario.import.batch-size}")
+    private int batchSize;
+
+    @Value("${inventario.import.max-errores-reportados}")
+    private int maxErroresReportados;
+
+    public ProductImportService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+            ProductCatalogService productCatalogService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.productCatalogService = productCatalogService;
+        this.parser = new StreamingLineParser<>(objectMapper, Product.class, List.of("sku", "nombre", "stock"), 3,
+                ProductImportService::desdeCsv);
+    }
+
+    public ImportResult importar(InputStream body, StreamingLineParser.Formato formato) throws IOException {
+        Importacion importacion = new Importacion();
+        long filas = parser.leer(body, formato, importacion);
+        importacion.escribirLote();
+
+        LOGGER.info(String.format("Importación de productos: %d filas, %d importadas, %d con error",
+                filas, importacion.importadas, importacion.filasConError));
+        return new ImportResult(filas, importacion.importadas, importacion.filasConError, importacion.errores);
+    }
+
+    // Estado de una importación en curso
+    private class Importacion implements StreamingLineParser.Destino<Product> {
+        long importadas;
+        long filasConError;
+        final List<ImportResult.ImportError> errores = new ArrayList<>();
+        final List<Product> lote = new ArrayList<>(batchSize);
+        final List<Long> lineas = new ArrayList<>(batchSize);
+
+        @Override
+        public void fila(long linea, Product product) {
+            validar(product);
+            lote.add(product);
+            lineas.add(linea);
+            if (lote.size() >= batchSize) {
+                escribirLote();
+            }
+        }
+
+        @Override
+        public void error(long linea, String mensaje) {
+            filasConError++;
+            if (errores.size() < maxErroresReportados) {
+                errores.add(new ImportResult.ImportError(linea, mensaje));
+            }
+        }
+
+        void escribirLote() {
+            if (lote.isEmpty()) {
+                return;
+            }
+            try {
+                jdbcTemplate.batchUpdate(UPSERT_SQL, filas(lote));
+                importadas += lote.size();
+            } catch (DataAccessException e) {
+                // El lote se escribe como una sola sentencia: si falla, se reintenta fila a
+                // fila para importar las válidas y señalar sólo las que rechaza la base de datos
+                for (int i = 0; i < lote.size(); i++) {
+                    Product product = lote.get(i);
+                    try {
+                        jdbcTemplate.update(UPSERT_SQL, product.getSku(), product.getNombre(), product.getStock());
+                        importadas++;
+                    } catch (DataAccessException filaError) {
+                        error(lineas.get(i), filaError.getMostSpecificCause().getMessage());
+                    }
+                }
+            }
+            productCatalogService.invalidarImportados(lote.stream().map(Product::getSku).toList());
+            lote.clear();
+            lineas.clear();
+        }
+    }
+
+    private static List<Object[]> filas(List<Product> lote) {
+        List<Object[]> filas = new ArrayList<>(lote.size());
+        for (Product product : lote) {
+            filas.add(new Object[] { product.getSku(), product.getNombre(), product.getStock() });
+        }
+        return filas;
+    }
+
+    // Formato sku,nombre,stock
+    private static Product desdeCsv(List<String> campos) {
+        try {
+            return new Product(campos.get(0), campos.get(1), Integer.parseInt(campos.get(2)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Stock no numérico: " + campos.get(2));
+        }
+    }
+
+    private static void validar(Product product) {
+        if (product.getSku() == null || product.getSku().isBlank()) {
+            throw new IllegalArgumentException("El SKU es obligatorio");
+        }
+        if (product.getStock() < 0) {
+            throw new IllegalArgumentException("El stock no puede ser negativo: " + product.getStock());
+        }
+    }
+}
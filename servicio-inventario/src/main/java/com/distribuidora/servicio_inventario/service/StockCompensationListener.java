@@ -0,0 +1,56 @@
+package com.distribuidora.servicio_inventario.service;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.stereotype.Component;
+
+import com.distribuidora.saga.events.PagoFallidoEvent;
+import com.distribuidora.saga.events.ids.OrdenIds;
+
+// Escucha por lotes los pagos fallidos y devuelve el stock de esas órdenes. El lote se
+// confirma (ack) cuando la compensación termina; si falla, se reentrega completo.
+@Component
+public class StockCompensationListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockCompensationListener.class);
+
+    private final StockCompensationService compensationService;
+    private final MessageConverter messageConverter;
+
+    public StockCompensationListener(StockCompensationService compensationService,
+            MessageConverter messageConverter) {
+        this.compensationService = compensationService;
+        this.messageConverter = messageConverter;
+    }
+
+    @RabbitListener(queues = "${rabbitmq.queue.inventory_compensation.name}",
+            containerFactory = "compensationRabbitListenerContainerFactory")
+    public void handlePagoFallidoEvents(List<Message> messages) {
+        Set<String> ordenIds = new LinkedHashSet<>();
+        for (Message message : messages) {
+            try {
+                message.getMessageProperties().setInferredArgumentType(PagoFallidoEvent.class);
+                PagoFallidoEvent event = (PagoFallidoEvent) messageConverter.fromMessage(message);
+                if (OrdenIds.esValido(event.ordenId())) {
+                    ordenIds.add(event.ordenId());
+                } else {
+                    LOGGER.warn(String.format("PagoFallido con ordenId inválido, se descarta -> %s", event));
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error(String.format("Mensaje descartado del lote de compensación, no se pudo convertir (%s): %s",
+                        message.getMessageProperties().getMessageId(), e.getMessage()));
+            }
+        }
+
+        if (!ordenIds.isEmpty()) {
+            compensationService.liberar(ordenIds);
+        }
+    }
+}
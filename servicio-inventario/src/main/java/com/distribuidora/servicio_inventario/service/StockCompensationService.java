@@ -0,0 +1,112 @@
+package com.distribuidora.servicio_inventario.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.distribuidora.saga.events.ids.OrdenIds;
+import com.distribuidora.servicio_inventario.model.StockReservation;
+import com.distribuidora.servicio_inventario.repository.StockReservationRepository;
+
+import jakarta.transaction.Transactional;
+
+// Compensación de la saga en inventario: devuelve el stock descontado a las órdenes cuyo
+// pago falló, usando el registro de stock_reservations.
+@Service
+public class StockCompensationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StockCompensationService.class);
+
+    // La devolución es relativa, así que también es correcta para las líneas hot que el
+    // flusher todavía no aplicó: cuando las aplique, el neto vuelve a ser el stock original
+    private static final String DEVOLVER_STOCK_SQL = "UPDATE products SET stock = stock + ? WHERE sku = ?";
+
+    // Reclamo de la orden (ver StockOrderClaim): si una reserva de la misma orden está en
+    // curso, espera a que termine; si la orden aún no llegó, su reserva ya no descontará
+    private static final String RECLAMAR_ORDEN_SQL = "INSERT INTO stock_order_claims (orden_id, status) "
+            + "VALUES (?, 'LIBERADA') ON DUPLICATE KEY UPDATE status = 'LIBERADA'";
+
+    private final StockReservationRepository reservationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final HotSkuLedger hotSkuLedger;
+    private final ProductCatalogService productCatalogService;
+
+    public StockCompensationService(StockReservationRepository reservationRepository, JdbcTemplate jdbcTemplate,
+            HotSkuLedger hotSkuLedger, ProductCatalogService productCatalogService) {
+        this.reservationRepository = reservationRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.hotSkuLedger = hotSkuLedger;
+        this.productCatalogService = productCatalogService;
+    }
+
+    // Devuelve en una sola transacción el stock de todas las órdenes del lote: las
+    // cantidades se suman por SKU y se aplican con un UPDATE por SKU, en orden. Primero
+    // se reclaman las órdenes, así las reservas se leen cuando ya no puede haber ninguna
+    // en curso ni llegar otra después.
+    @Transactional
+    public void liberar(Collection<String> ordenIds) {
+        Set<UUID> ids = ordenIds.stream().map(OrdenIds::parse).collect(Collectors.toCollection(TreeSet::new));
+        jdbcTemplate.batchUpdate(RECLAMAR_ORDEN_SQL,
+                ids.stream().map(id -> new Object[] { OrdenIds.aBytes(id) }).toList());
+        List<StockReservation> reservas = reservationRepository.findByOrdenIdIn(ids);
+
+        Map<String, Integer> devolucionesPorSku = new TreeMap<>();
+        Map<String, Integer> devolucionesHot = new TreeMap<>();
+        Map<String, Long> generaciones = new HashMap<>();
+        List<Long> liberadas = new ArrayList<>();
+        Set<UUID> descontadas = new HashSet<>();
+        for (StockReservation reserva : reservas) {
+            descontadas.add(reserva.getOrdenId());
+            if (reserva.isLiberada()) {
+                continue;
+            }
+            devolucionesPorSku.merge(reserva.getSku(), reserva.getCantidad(), Integer::sum);
+            if (hotSkuLedger.isHot(reserva.getSku())) {
+                devolucionesHot.merge(reserva.getSku(), reserva.getCantidad(), Integer::sum);
+                generaciones.computeIfAbsent(reserva.getSku(), hotSkuLedger::generacion);
+            }
+            liberadas.add(reserva.getId());
+        }
+
+        if (!devolucionesPorSku.isEmpty()) {
+            List<Object[]> filas = new ArrayList<>(devolucionesPorSku.size());
+            devolucionesPorSku.forEach((sku, cantidad) -> filas.add(new Object[] { cantidad, sku }));
+            jdbcTemplate.batchUpdate(DEVOLVER_STOCK_SQL, filas);
+            reservationRepository.marcarLiberadas(liberadas);
+            productCatalogService.invalidarStock(devolucionesPorSku.keySet());
+            devolverAlLedgerAlConfirmar(devolucionesHot, generaciones);
+        }
+
+        LOGGER.info(String.format("Compensación de stock: %d órdenes, %d líneas devueltas en %d SKU, %d sin descontar",
+                ids.size(), liberadas.size(), devolucionesPorSku.size(), ids.size() - descontadas.size()));
+    }
+
+    // El ledger sólo se toca si la devolución se confirma en la base de datos, y sólo si no
+    // se recargó mientras tanto (la recarga ya pudo leer el stock devuelto)
+    private void devolverAlLedgerAlConfirmar(Map<String, Integer> devolucionesHot, Map<String, Long> generaciones) {
+        if (devolucionesHot.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                devolucionesHot.forEach((sku, cantidad) -> hotSkuLedger.devolver(sku, cantidad, generaciones.get(sku)));
+            }
+        });
+    }
+}
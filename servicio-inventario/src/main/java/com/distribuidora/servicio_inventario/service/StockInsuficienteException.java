@@ -0,0 +1,17 @@
+package com.distribuidora.servicio_inventario.service;
+
+// Se lanza cuando alguna línea de la orden no pudo descontarse (stock insuficiente o SKU inexistente).
+// Al ser una RuntimeException, @Transactional revierte todas las líneas ya descontadas de la orden.
+public class StockInsuficienteException extends RuntimeException {
+
+    private final String sku;
+
+    public StockInsuficienteException(String sku) {
+        super("Stock insuficiente o producto no encontrado con SKU: " + sku);
+        this.sku = sku;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+}
@@ -0,0 +1,196 @@
+package com.distribuidora.servicio_inventario.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.distribuidora.saga.events.OrdenCreadaEvent;
+import com.distribuidora.saga.events.StockDescontadoEvent;
+import com.distribuidora.saga.events.ids.OrdenIds;
+
+@Service
+public class StockReservationEngine {
+
+    // Descuento atómico: la base de datos comprueba y resta en la misma sentencia,
+    // así dos consumidores sobre el mismo SKU nunca pierden actualizaciones.
+    private static final String DESCONTAR_STOCK_SQL =
+            "UPDATE products SET stock = stock - ? WHERE sku = ? AND stock >= ?";
+
+    // Cada línea descontada se anota por orden para poder compensarla. Las de SKU hot no
+    // tocan products todavía (aplicada = false); el resto ya se descontó (aplicada = true).
+    private static final String REGISTRAR_RESERVA_SQL =
+            "INSERT INTO stock_reservations (orden_id, sku, cantidad, aplicada, liberada) VALUES (?, ?, ?, ?, false)";
+
+    // Reclamo de la orden (ver StockOrderClaim). Si la fila es de una compensación en
+    // curso, el INSERT espera a que ésta termine y después encuentra la clave duplicada.
+    private static final String RECLAMAR_ORDEN_SQL =
+            "INSERT IGNORE INTO stock_order_claims (orden_id, status) VALUES (?, 'RESERVADA')";
+    // En el lote un reclamo duplicado hace fallar el lote entero, que el llamador
+    // reintenta orden por orden: el recuento por fila de INSERT IGNORE se pierde cuando
+    // el driver reescribe el batch en un único INSERT
+    private static final String RECLAMAR_LOTE_SQL =
+            "INSERT INTO stock_order_claims (orden_id, status) VALUES (?, 'RESERVADA')";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final HotSkuLedger hotSkuLedger;
+    private final ProductCatalogService productCatalogService;
+    private final InventoryEventProducer inventoryEventProducer;
+    // Los listeners corren dentro de la transacción de MessageDeduplicator (JPA, que no
+    // admite savepoints): la reserva va en una transacción propia (REQUIRES_NEW), así un
+    // fallo revierte sólo la reserva y el listener puede seguir (publicar StockFallido o
+    // reintentar orden por orden). Una reserva confirmada cuya transacción externa se
+    // revierte no se repite en la redelivery: el reclamo de la orden ya existe.
+    private final TransactionTemplate reservaTemplate;
+
+    public StockReservationEngine(JdbcTemplate jdbcTemplate, HotSkuLedger hotSkuLedger,
+            ProductCatalogService productCatalogService, InventoryEventProducer inventoryEventProducer,
+            PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.hotSkuLedger = hotSkuLedger;
+        this.productCatalogService = productCatalogService;
+        this.inventoryEventProducer = inventoryEventProducer;
+        this.reservaTemplate = new TransactionTemplate(transactionManager);
+        this.reservaTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Descuenta todas las líneas de la orden en un único batch JDBC. Si alguna línea
+    // no afecta filas se lanza StockInsuficienteException y se revierte la orden completa.
+    // El evento StockDescontado va al outbox en la misma transacción que el descuento.
+    // Devuelve false sin descontar nada si la orden ya estaba reservada o compensada.
+    public boolean reservar(String ordenId, List<OrdenCreadaEvent.ProductoItem> productos) {
+        return Boolean.TRUE.equals(reservaTemplate.execute(status -> {
+            if (jdbcTemplate.update(RECLAMAR_ORDEN_SQL, (Object) OrdenIds.aBytes(ordenId)) == 0) {
+                return false;
+            }
+            reservarOrdenes(Map.of(ordenId, productos));
+            return true;
+        }));
+    }
+
+    // Variante para el listener por lotes: las cantidades de todas las órdenes del lote
+    // se suman por SKU y se descuentan con un UPDATE por SKU en una sola transacción.
+    // Si cualquier SKU no alcanza o alguna orden ya estaba reservada o compensada, se
+    // revierte el lote entero y el llamador debe reintentar orden por orden.
+    public void reservarLote(List<OrdenCreadaEvent> ordenes) {
+        Map<String, List<OrdenCreadaEvent.ProductoItem>> productosPorOrden = new LinkedHashMap<>();
+        for (OrdenCreadaEvent orden : ordenes) {
+            productosPorOrden.put(orden.ordenId(), orden.productos());
+        }
+        // En orden de id, como la compensación, para que no se bloqueen en cruz
+        List<Object[]> reclamos = productosPorOrden.keySet().stream()
+                .map(OrdenIds::parse)
+                .sorted()
+                .map(ordenId -> new Object[] { OrdenIds.aBytes(ordenId) })
+                .toList();
+        reservaTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(RECLAMAR_LOTE_SQL, reclamos);
+            reservarOrdenes(productosPorOrden);
+        });
+    }
+
+    private void reservarOrdenes(Map<String, List<OrdenCreadaEvent.ProductoItem>> productosPorOrden) {
+        Map<String, Integer> reservadasHot = new TreeMap<>();
+        try {
+            descontar(productosPorOrden, reservadasHot);
+        } catch (RuntimeException e) {
+            // La sincronización que devuelve el ledger sólo se registra tras un descuento
+            // completo, así que las reservas hechas antes del fallo se devuelven aquí
+            reservadasHot.forEach(hotSkuLedger::liberar);
+            throw e;
+        }
+        confirmarLedgerAlTerminar(reservadasHot);
+    }
+
+    private void descontar(Map<String, List<OrdenCreadaEvent.ProductoItem>> productosPorOrden,
+            Map<String, Integer> reservadasHot) {
+        // Agrupamos por SKU (ordenado) para que todas las órdenes bloqueen las filas
+        // en el mismo orden y no se produzcan deadlocks entre órdenes concurrentes
+        Map<String, Integer> cantidadesPorSku = new TreeMap<>();
+        List<Object[]> registros = new ArrayList<>();
+        for (Map.Entry<String, List<OrdenCreadaEvent.ProductoItem>> orden : productosPorOrden.entrySet()) {
+            byte[] ordenId = OrdenIds.aBytes(orden.getKey());
+            Map<String, Integer> lineasHot = new TreeMap<>();
+            Map<String, Integer> lineasNormales = new TreeMap<>();
+            for (OrdenCreadaEvent.ProductoItem item : orden.getValue()) {
+                if (hotSkuLedger.isHot(item.productoId())) {
+                    lineasHot.merge(item.productoId(), item.cantidad(), Integer::sum);
+                } else {
+                    lineasNormales.merge(item.productoId(), item.cantidad(), Integer::sum);
+                    cantidadesPorSku.merge(item.productoId(), item.cantidad(), Integer::sum);
+                }
+            }
+            if (!lineasHot.isEmpty()) {
+                reservarEnLedger(lineasHot);
+                lineasHot.forEach((sku, cantidad) -> {
+                    reservadasHot.merge(sku, cantidad, Integer::sum);
+                    registros.add(new Object[] { ordenId, sku, cantidad, false });
+                });
+            }
+            lineasNormales.forEach((sku, cantidad) -> registros.add(new Object[] { ordenId, sku, cantidad, true }));
+        }
+
+        if (!cantidadesPorSku.isEmpty()) {
+            List<Object[]> lineas = new ArrayList<>(cantidadesPorSku.size());
+            List<String> skus = new ArrayList<>(cantidadesPorSku.size());
+            for (Map.Entry<String, Integer> linea : cantidadesPorSku.entrySet()) {
+                lineas.add(new Object[] { linea.getValue(), linea.getKey(), linea.getValue() });
+                skus.add(linea.getKey());
+            }
+
+            int[] filasAfectadas = jdbcTemplate.batchUpdate(DESCONTAR_STOCK_SQL, lineas);
+            for (int i = 0; i < filasAfectadas.length; i++) {
+                if (filasAfectadas[i] == 0) {
+                    throw new StockInsuficienteException(skus.get(i));
+                }
+            }
+            productCatalogService.invalidarStock(skus);
+        }
+
+        if (!registros.isEmpty()) {
+            jdbcTemplate.batchUpdate(REGISTRAR_RESERVA_SQL, registros);
+        }
+
+        inventoryEventProducer.sendStockDescontadoEvents(productosPorOrden.keySet().stream()
+                .map(ordenId -> StockDescontadoEvent.builder().ordenId(ordenId).build())
+                .toList());
+    }
+
+    private void reservarEnLedger(Map<String, Integer> lineasHot) {
+        Map<String, Integer> reservadas = new TreeMap<>();
+        for (Map.Entry<String, Integer> linea : lineasHot.entrySet()) {
+            if (!hotSkuLedger.reservar(linea.getKey(), linea.getValue())) {
+                reservadas.forEach(hotSkuLedger::liberar);
+                throw new StockInsuficienteException(linea.getKey());
+            }
+            reservadas.put(linea.getKey(), linea.getValue());
+        }
+    }
+
+    // Si la transacción se revierte después, devolvemos el stock al ledger; si se confirma,
+    // las reservas pasan a contar como pendientes en la base de datos
+    private void confirmarLedgerAlTerminar(Map<String, Integer> reservadas) {
+        if (reservadas.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    reservadas.forEach(hotSkuLedger::confirmar);
+                } else {
+                    reservadas.forEach(hotSkuLedger::liberar);
+                }
+            }
+        });
+    }
+}
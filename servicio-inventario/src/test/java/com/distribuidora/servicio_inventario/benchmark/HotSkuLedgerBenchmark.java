@@ -0,0 +1,76 @@
+package com.distribuidora.servicio_inventario.benchmark;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import com.distribuidora.servicio_inventario.service.HotSkuLedger;
+import com.distribuidora.servicio_inventario.service.HotSkuOwnership;
+
+// Contención sobre un único SKU: descuento en el ledger hot frente al UPDATE condicional
+// de la vía normal. Usa H2 en memoria, así que el UPDATE mide el bloqueo de fila y no la
+// red ni el disco; contra MySQL la diferencia es mayor.
+//
+// No corre con mvn test. Ejecutar main() desde el IDE, o tras mvn test-compile:
+//   java -cp target/test-classes:target/classes:<classpath de test> org.openjdk.jmh.Main HotSkuLedgerBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class HotSkuLedgerBenchmark {
+
+    private static final String SKU = "FLASH-1";
+
+    private JdbcTemplate jdbcTemplate;
+    private HotSkuLedger ledger;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS products");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS stock_reservations");
+        jdbcTemplate.execute("CREATE TABLE products (sku VARCHAR(64) PRIMARY KEY, nombre VARCHAR(255), stock INT NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE stock_reservations (id BIGINT AUTO_INCREMENT PRIMARY KEY, orden_id BINARY(16), "
+                + "sku VARCHAR(64), cantidad INT NOT NULL, aplicada BOOLEAN NOT NULL, liberada BOOLEAN NOT NULL)");
+        jdbcTemplate.update("INSERT INTO products VALUES (?, 'Venta flash', ?)", SKU, Integer.MAX_VALUE);
+        ledger = new HotSkuLedger(jdbcTemplate, new HotSkuOwnership(dataSource, false), true, Set.of(SKU));
+    }
+
+    @Benchmark
+    public boolean ledgerHot() {
+        boolean reservado = ledger.reservar(SKU, 1);
+        ledger.confirmar(SKU, 1);
+        return reservado;
+    }
+
+    @Benchmark
+    public int updateCondicional() {
+        return jdbcTemplate.update("UPDATE products SET stock = stock - ? WHERE sku = ? AND stock >= ?", 1, SKU, 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HotSkuLedgerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,109 @@
+package com.distribuidora.servicio_inventario.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+class HotSkuLedgerTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private HotSkuLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:ledger-" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE products (sku VARCHAR(64) PRIMARY KEY, nombre VARCHAR(255), stock INT NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE stock_reservations (id BIGINT AUTO_INCREMENT PRIMARY KEY, orden_id BINARY(16), "
+                + "sku VARCHAR(64), cantidad INT NOT NULL, aplicada BOOLEAN NOT NULL, liberada BOOLEAN NOT NULL)");
+        jdbcTemplate.update("INSERT INTO products VALUES ('SKU-1', 'Producto', 10)");
+        ledger = new HotSkuLedger(jdbcTemplate, new HotSkuOwnership(dataSource, false), true, Set.of("SKU-1"));
+    }
+
+    @Test
+    void cargaElStockMenosLasReservasPendientes() {
+        registrarPendiente(3);
+
+        assertThat(ledger.reservar("SKU-1", 5)).isTrue();
+        assertThat(ledger.reservar("SKU-1", 3)).isFalse();
+        assertThat(ledger.reservar("SKU-1", 2)).isTrue();
+    }
+
+    @Test
+    void skuInexistenteNoSeReserva() {
+        assertThat(ledger.reservar("NO-EXISTE", 1)).isFalse();
+    }
+
+    @Test
+    void liberarDevuelveLaReservaRevertida() {
+        assertThat(ledger.reservar("SKU-1", 10)).isTrue();
+        ledger.liberar("SKU-1", 4);
+
+        assertThat(ledger.reservar("SKU-1", 4)).isTrue();
+        assertThat(ledger.reservar("SKU-1", 1)).isFalse();
+    }
+
+    @Test
+    void invalidarNoOlvidaLasReservasSinConfirmar() {
+        assertThat(ledger.reservar("SKU-1", 4)).isTrue();
+
+        // La transacción de la reserva aún no insertó su fila: la recarga debe restarla igual
+        ledger.invalidar("SKU-1");
+        assertThat(ledger.reservar("SKU-1", 7)).isFalse();
+
+        registrarPendiente(4);
+        ledger.confirmar("SKU-1", 4);
+        ledger.invalidar("SKU-1");
+        assertThat(ledger.reservar("SKU-1", 6)).isTrue();
+        assertThat(ledger.reservar("SKU-1", 1)).isFalse();
+    }
+
+    @Test
+    void devolverIgnoraLaDevolucionSiElContadorSeRecargo() {
+        assertThat(ledger.reservar("SKU-1", 10)).isTrue();
+        registrarPendiente(10);
+        ledger.confirmar("SKU-1", 10);
+
+        long generacion = ledger.generacion("SKU-1");
+        jdbcTemplate.update("UPDATE products SET stock = stock + 10 WHERE sku = 'SKU-1'");
+        jdbcTemplate.update("UPDATE stock_reservations SET liberada = true");
+        ledger.invalidar("SKU-1");
+        ledger.devolver("SKU-1", 10, generacion);
+
+        assertThat(ledger.reservar("SKU-1", 10)).isTrue();
+        assertThat(ledger.reservar("SKU-1", 1)).isFalse();
+    }
+
+    @Test
+    void reservasConcurrentesNoVendenDeMas() throws InterruptedException {
+        jdbcTemplate.update("UPDATE products SET stock = 1000 WHERE sku = 'SKU-1'");
+        AtomicInteger aceptadas = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 2000; i++) {
+            executor.execute(() -> {
+                if (ledger.reservar("SKU-1", 1)) {
+                    aceptadas.incrementAndGet();
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(aceptadas.get()).isEqualTo(1000);
+    }
+
+    private void registrarPendiente(int cantidad) {
+        jdbcTemplate.update("INSERT INTO stock_reservations (orden_id, sku, cantidad, aplicada, liberada) "
+                + "VALUES (NULL, 'SKU-1', ?, false, false)", cantidad);
+    }
+}
@@ -0,0 +1,67 @@
+package com.distribuidora.servicio_inventario.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import com.distribuidora.servicio_inventario.config.CacheConfig;
+import com.distribuidora.servicio_inventario.repository.ProductRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Exportación por bloques sobre una base de datos real (H2 en modo MySQL)
+class ProductCatalogServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:catalogo-" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE products (sku VARCHAR(64) PRIMARY KEY, nombre VARCHAR(255), stock INT NOT NULL)");
+    }
+
+    @Test
+    void laExportacionRecorreTodosLosBloquesEnOrden() throws Exception {
+        jdbcTemplate.update("INSERT INTO products VALUES ('SKU-E', 'E', 5), ('SKU-A', 'A', 1), ('SKU-C', 'C', 3), "
+                + "('SKU-B', 'B', 2), ('SKU-D', 'D', 4)");
+
+        assertThat(exportar(2, false)).isEqualTo("""
+                {"sku":"SKU-A","nombre":"A","stock":1}
+                {"sku":"SKU-B","nombre":"B","stock":2}
+                {"sku":"SKU-C","nombre":"C","stock":3}
+                {"sku":"SKU-D","nombre":"D","stock":4}
+                {"sku":"SKU-E","nombre":"E","stock":5}
+                """);
+    }
+
+    @Test
+    void unCatalogoMultiploDelBloqueNoRepiteNiPierdeProductos() throws Exception {
+        jdbcTemplate.update("INSERT INTO products VALUES ('SKU-A', 'A', 1), ('SKU-B', 'B', 2)");
+
+        assertThat(exportar(1, true)).isEqualTo(
+                "[{\"sku\":\"SKU-A\",\"nombre\":\"A\",\"stock\":1},{\"sku\":\"SKU-B\",\"nombre\":\"B\",\"stock\":2}]");
+    }
+
+    @Test
+    void unCatalogoVacioEsUnArrayVacio() throws Exception {
+        assertThat(exportar(2, true)).isEqualTo("[]");
+    }
+
+    private String exportar(int bloque, boolean comoArray) throws Exception {
+        ProductCatalogService service = new ProductCatalogService(mock(ProductRepository.class),
+                mock(HotSkuLedger.class), new ConcurrentMapCacheManager(CacheConfig.PRODUCTOS, CacheConfig.CATALOGO),
+                new ObjectMapper(), jdbcTemplate, bloque);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportar(out, comoArray);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,260 @@
+package com.distribuidora.servicio_inventario.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.distribuidora.saga.events.OrdenCreadaEvent;
+import com.distribuidora.saga.events.ids.OrdenIds;
+import com.distribuidora.servicio_inventario.model.StockReservation;
+import com.distribuidora.servicio_inventario.repository.StockReservationRepository;
+
+// Descuento condicional y reclamo por orden sobre una base de datos real (H2 en modo MySQL).
+// Las transacciones van por JpaTransactionManager, el que usa el servicio (y con él
+// MessageDeduplicator), así que una propagación que JPA no admita falla aquí.
+class StockReservationEngineTest {
+
+    private LocalContainerEntityManagerFactoryBean entityManagerFactory;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private StockReservationEngine engine;
+    private StockCompensationService compensationService;
+
+    @BeforeEach
+    void setUp() {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:reservas-" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE products (sku VARCHAR(64) PRIMARY KEY, nombre VARCHAR(255), stock INT NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE stock_reservations (id BIGINT AUTO_INCREMENT PRIMARY KEY, orden_id BINARY(16), "
+                + "sku VARCHAR(64), cantidad INT NOT NULL, aplicada BOOLEAN NOT NULL, liberada BOOLEAN NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE stock_order_claims (orden_id BINARY(16) PRIMARY KEY, status VARCHAR(255))");
+        jdbcTemplate.update("INSERT INTO products VALUES ('SKU-A', 'Producto A', 10), ('SKU-B', 'Producto B', 1)");
+
+        entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactory.setDataSource(dataSource);
+        entityManagerFactory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactory.setPackagesToScan("com.distribuidora.servicio_inventario.model");
+        entityManagerFactory.setJpaPropertyMap(Map.of("hibernate.dialect", "org.hibernate.dialect.H2Dialect",
+                "hibernate.hbm2ddl.auto", "none"));
+        entityManagerFactory.afterPropertiesSet();
+        JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory.getObject());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        HotSkuLedger hotSkuLedger = new HotSkuLedger(jdbcTemplate, new HotSkuOwnership(dataSource, false), false,
+                Set.of());
+        ProductCatalogService productCatalogService = mock(ProductCatalogService.class);
+        engine = new StockReservationEngine(jdbcTemplate, hotSkuLedger, productCatalogService,
+                mock(InventoryEventProducer.class), transactionManager);
+        compensationService = new StockCompensationService(reservationRepository(), jdbcTemplate, hotSkuLedger,
+                productCatalogService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        entityManagerFactory.destroy();
+    }
+
+    @Test
+    void sinStockEnUnaLineaNoSeDescuentaNingunaDeLaOrden() {
+        String ordenId = OrdenIds.nuevo().toString();
+
+        assertThatThrownBy(() -> engine.reservar(ordenId, List.of(item("SKU-A", 2), item("SKU-B", 2))))
+                .isInstanceOf(StockInsuficienteException.class);
+
+        assertThat(stock("SKU-A")).isEqualTo(10);
+        assertThat(stock("SKU-B")).isEqualTo(1);
+        // El reclamo se revierte con la orden: una redelivery puede volver a intentarlo
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_order_claims", Integer.class)).isZero();
+    }
+
+    @Test
+    void lasReservasConcurrentesNuncaDejanElStockNegativo() throws Exception {
+        AtomicInteger reservadas = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<CompletableFuture<Void>> ordenes = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            ordenes.add(CompletableFuture.runAsync(() -> {
+                try {
+                    if (engine.reservar(OrdenIds.nuevo().toString(), List.of(item("SKU-A", 1)))) {
+                        reservadas.incrementAndGet();
+                    }
+                } catch (StockInsuficienteException e) {
+                    // Las que llegan sin stock fallan sin descontar
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(ordenes.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertThat(reservadas.get()).isEqualTo(10);
+        assertThat(stock("SKU-A")).isZero();
+    }
+
+    @Test
+    void laRedeliveryDeUnaOrdenReservadaNoDescuentaOtraVez() {
+        String ordenId = OrdenIds.nuevo().toString();
+
+        assertThat(engine.reservar(ordenId, List.of(item("SKU-A", 3)))).isTrue();
+        assertThat(engine.reservar(ordenId, List.of(item("SKU-A", 3)))).isFalse();
+
+        assertThat(stock("SKU-A")).isEqualTo(7);
+    }
+
+    @Test
+    void unaOrdenCompensadaAntesDeLlegarNoSeDescuenta() {
+        String ordenId = OrdenIds.nuevo().toString();
+
+        transactionTemplate.executeWithoutResult(status -> compensationService.liberar(List.of(ordenId)));
+
+        assertThat(engine.reservar(ordenId, List.of(item("SKU-A", 3)))).isFalse();
+        assertThat(stock("SKU-A")).isEqualTo(10);
+    }
+
+    @Test
+    void dentroDeLaTransaccionDelListenerSinStockSeSigueYSePuedePublicarElFallo() {
+        String ordenId = OrdenIds.nuevo().toString();
+        jdbcTemplate.execute("CREATE TABLE fallos (orden_id VARCHAR(36))");
+
+        // Como InventoryService dentro de MessageDeduplicator: la reserva falla y la
+        // transacción externa sigue y confirma el StockFallido
+        transactionTemplate.executeWithoutResult(status -> {
+            assertThatThrownBy(() -> engine.reservar(ordenId, List.of(item("SKU-A", 2), item("SKU-B", 2))))
+                    .isInstanceOf(StockInsuficienteException.class);
+            jdbcTemplate.update("INSERT INTO fallos VALUES (?)", ordenId);
+        });
+
+        assertThat(stock("SKU-A")).isEqualTo(10);
+        assertThat(jdbcTemplate.queryForList("SELECT orden_id FROM fallos", String.class)).containsExactly(ordenId);
+    }
+
+    @Test
+    void siElListenerSeRevierteLaReservaConfirmadaNoSeRepiteEnLaRedelivery() {
+        String ordenId = OrdenIds.nuevo().toString();
+
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status -> {
+            assertThat(engine.reservar(ordenId, List.of(item("SKU-A", 4)))).isTrue();
+            throw new IllegalStateException("fallo posterior del listener");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(stock("SKU-A")).isEqualTo(6);
+
+        Boolean repetida = transactionTemplate.execute(status -> engine.reservar(ordenId, List.of(item("SKU-A", 4))));
+        assertThat(repetida).isFalse();
+        assertThat(stock("SKU-A")).isEqualTo(6);
+    }
+
+    @Test
+    void laCompensacionDuranteElListenerDevuelveElStockReservado() throws Exception {
+        String ordenId = OrdenIds.nuevo().toString();
+        CountDownLatch reservada = new CountDownLatch(1);
+        CountDownLatch terminar = new CountDownLatch(1);
+
+        // La transacción del listener sigue abierta después de la reserva
+        CompletableFuture<Void> reserva = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(
+                status -> {
+                    engine.reservar(ordenId, List.of(item("SKU-A", 4)));
+                    reservada.countDown();
+                    esperar(terminar);
+                }));
+        assertThat(reservada.await(5, TimeUnit.SECONDS)).isTrue();
+        transactionTemplate.executeWithoutResult(status -> compensationService.liberar(List.of(ordenId)));
+        terminar.countDown();
+        reserva.get(10, TimeUnit.SECONDS);
+
+        assertThat(stock("SKU-A")).isEqualTo(10);
+        assertThat(jdbcTemplate.queryForObject("SELECT status FROM stock_order_claims", String.class))
+                .isEqualTo("LIBERADA");
+    }
+
+    @Test
+    void elLoteConUnaOrdenYaReclamadaSeRevierteEntero() {
+        String reservada = OrdenIds.nuevo().toString();
+        String nueva = OrdenIds.nuevo().toString();
+        engine.reservar(reservada, List.of(item("SKU-A", 1)));
+
+        assertThatThrownBy(() -> engine.reservarLote(List.of(orden(reservada, item("SKU-A", 1)),
+                orden(nueva, item("SKU-A", 2))))).isInstanceOf(DuplicateKeyException.class);
+
+        assertThat(stock("SKU-A")).isEqualTo(9);
+        // Orden por orden, como reintenta InventoryService, sólo se descuenta la nueva
+        assertThat(engine.reservar(reservada, List.of(item("SKU-A", 1)))).isFalse();
+        assertThat(engine.reservar(nueva, List.of(item("SKU-A", 2)))).isTrue();
+        assertThat(stock("SKU-A")).isEqualTo(7);
+    }
+
+    // El repositorio JPA sobre la misma conexión de la transacción
+    @SuppressWarnings("unchecked")
+    private StockReservationRepository reservationRepository() {
+        StockReservationRepository repository = mock(StockReservationRepository.class);
+        when(repository.findByOrdenIdIn(anyCollection())).thenAnswer(invocation -> {
+            List<StockReservation> reservas = new ArrayList<>();
+            for (UUID ordenId : (Collection<UUID>) invocation.getArgument(0)) {
+                reservas.addAll(jdbcTemplate.query("SELECT id, orden_id, sku, cantidad, aplicada, liberada "
+                        + "FROM stock_reservations WHERE orden_id = ? FOR UPDATE",
+                        (rs, fila) -> new StockReservation(rs.getLong(1), uuid(rs.getBytes(2)), rs.getString(3),
+                                rs.getInt(4), rs.getBoolean(5), rs.getBoolean(6)),
+                        (Object) OrdenIds.aBytes(ordenId)));
+            }
+            return reservas;
+        });
+        doAnswer(invocation -> {
+            for (Long id : (Collection<Long>) invocation.getArgument(0)) {
+                jdbcTemplate.update("UPDATE stock_reservations SET liberada = true WHERE id = ?", id);
+            }
+            return null;
+        }).when(repository).marcarLiberadas(anyCollection());
+        return repository;
+    }
+
+    private int stock(String sku) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM products WHERE sku = ?", Integer.class, sku);
+    }
+
+    private static OrdenCreadaEvent.ProductoItem item(String sku, int cantidad) {
+        return new OrdenCreadaEvent.ProductoItem(sku, cantidad);
+    }
+
+    private static OrdenCreadaEvent orden(String ordenId, OrdenCreadaEvent.ProductoItem... productos) {
+        return OrdenCreadaEvent.builder().ordenId(ordenId).productos(List.of(productos)).build();
+    }
+
+    private static UUID uuid(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static void esperar(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
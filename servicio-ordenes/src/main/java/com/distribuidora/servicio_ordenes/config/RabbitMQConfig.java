@@ -1,11 +1,22 @@
 package com.distribuidora.servicio_ordenes.config;
 
+import java.time.Duration;
+
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
-import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.amqp.support.converter.MessageConverter;
+import com.distribuidora.saga.events.amqp.SagaMessageConverters;
+import com.distribuidora.saga.events.dedup.MessageDeduplicator;
 
 @Configuration
 public class RabbitMQConfig {
@@ -13,14 +24,82 @@ public class RabbitMQConfig {
     // Lee el nombre del application.properties
     @Value("${rabbitmq.exchange.name}")
     private String exchangeName;
+    @Value("${rabbitmq.queue.order_status.name}")
+    private String queueOrderStatusName;
+    @Value("${rabbitmq.routing.key.stock_deducted}")
+    private String routingKeyStockDeducted;
+    @Value("${rabbitmq.routing.key.payment_successful}")
+    private String routingKeyPaymentSuccessful;
+    @Value("${rabbitmq.routing.key.payment_failed}")
+    private String routingKeyPaymentFailed;
+    @Value("${rabbitmq.routing.key.dispatch_ready}")
+    private String routingKeyDispatchReady;
+    @Value("${rabbitmq.routing.key.stock_failed}")
+    private String routingKeyStockFailed;
 
     @Bean
     public TopicExchange exchange() {
         return new TopicExchange(exchangeName);
     }
 
+    /*
+     * Cola de la proyección de estado de órdenes: recibe todos los eventos de la saga que
+     * hacen avanzar (o fallar) una orden, así este servicio puede responder dónde está
+     * cada orden sin consultar a despacho ni a envíos.
+     */
+    @Bean
+    public Queue orderStatusQueue() {
+        return new Queue(queueOrderStatusName);
+    }
+
+    @Bean
+    public Declarables orderStatusBindings() {
+        Queue queue = orderStatusQueue();
+        TopicExchange exchange = exchange();
+        return new Declarables(
+                BindingBuilder.bind(queue).to(exchange).with(routingKeyStockDeducted),
+                BindingBuilder.bind(queue).to(exchange).with(routingKeyPaymentSuccessful),
+                BindingBuilder.bind(queue).to(exchange).with(routingKeyPaymentFailed),
+                BindingBuilder.bind(queue).to(exchange).with(routingKeyDispatchReady),
+                BindingBuilder.bind(queue).to(exchange).with(routingKeyStockFailed));
+    }
+
+    /*
+     * Fábrica por lotes de la proyección: entrega hasta batch-size eventos o lo que haya
+     * llegado tras batch-timeout-ms. Los eventos de una misma orden se agrupan y el lote
+     * se confirma (ack) cuando la escritura termina.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory orderStatusListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+            MessageDeduplicator messageDeduplicator,
+            @Value("${rabbitmq.listener.order_status.concurrency}") int concurrency,
+            @Value("${rabbitmq.listener.order_status.batch.size}") int batchSize,
+            @Value("${rabbitmq.listener.order_status.batch.timeout-ms}") long batchTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAdviceChain(messageDeduplicator);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setBatchReceiveTimeout(batchTimeoutMs);
+        factory.setPrefetchCount(batchSize);
+        return factory;
+    }
+
+    @Bean
+    public MessageDeduplicator messageDeduplicator(JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${rabbitmq.dedup.cache-size}") long cacheSize,
+            @Value("${rabbitmq.dedup.cache-ttl-minutes}") long cacheTtlMinutes,
+            @Value("${rabbitmq.dedup.retention-hours}") long retentionHours) {
+        return new MessageDeduplicator(jdbcTemplate, transactionManager, cacheSize, Duration.ofMinutes(cacheTtlMinutes),
+                Duration.ofHours(retentionHours));
+    }
+
     @Bean
-    public MessageConverter jsonMessageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public MessageConverter messageConverter(@Value("${rabbitmq.serialization.format}") String format) {
+        return SagaMessageConverters.create(format);
     }
 }
\ No newline at end of file
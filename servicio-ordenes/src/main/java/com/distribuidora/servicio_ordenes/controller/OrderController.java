@@ -1,14 +1,23 @@
 package com.distribuidora.servicio_ordenes.controller;
 
 
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
-import com.distribuidora.servicio_ordenes.dto.OrdenCreadaEvent;
+import com.distribuidora.saga.events.OrdenCreadaEvent;
+import com.distribuidora.saga.events.ids.OrdenIds;
+import com.distribuidora.servicio_ordenes.dto.OrderBatchResult;
 import com.distribuidora.servicio_ordenes.model.Order;
 import com.distribuidora.servicio_ordenes.service.OrderService;
 
@@ -21,6 +30,18 @@ public class OrderController {
 
     private final OrderService orderService;
 
+    // Cabecera con el cursor de la página siguiente (el id de la última orden devuelta)
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    @Value("${ordenes.batch.max-size}")
+    private int maxBatchSize;
+
+    @Value("${ordenes.consulta.page.default-size}")
+    private int defaultPageSize;
+
+    @Value("${ordenes.consulta.page.max-size}")
+    private int maxPageSize;
+
     public OrderController(OrderService orderService) {
         this.orderService = orderService;
     }
@@ -29,9 +50,58 @@ public class OrderController {
      @Operation(summary = "Crear una nueva orden",
                description = "Recibe los datos de una orden, la persiste en la base de datos y publica un evento 'OrdenCreada' para iniciar la saga.")
     @ApiResponse(responseCode = "201", description = "Orden creada exitosamente")
+    @ApiResponse(responseCode = "400", description = "Orden inválida (mismas reglas que el alta en lote)")
     @PostMapping
     public ResponseEntity<Order> createOrder(@RequestBody OrdenCreadaEvent orderRequest) {
-        Order nuevaOrden = orderService.createOrder(orderRequest);
+        Order nuevaOrden;
+        try {
+            nuevaOrden = orderService.createOrder(orderRequest);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
         return new ResponseEntity<>(nuevaOrden, HttpStatus.CREATED);
     }
+
+    @Operation(summary = "Crear órdenes en lote",
+               description = "Valida e inserta todas las órdenes en una sola transacción y publica un evento 'OrdenCreada' por cada orden aceptada. Devuelve el id y estado de cada orden en el orden recibido.")
+    @ApiResponse(responseCode = "200", description = "Lote procesado; las órdenes inválidas aparecen como RECHAZADA")
+    @ApiResponse(responseCode = "400", description = "Lote vacío o mayor que el máximo permitido")
+    @PostMapping("/batch")
+    public ResponseEntity<List<OrderBatchResult>> createOrders(@RequestBody List<OrdenCreadaEvent> orderRequests) {
+        if (orderRequests.isEmpty() || orderRequests.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    String.format("El lote debe tener entre 1 y %d órdenes", maxBatchSize));
+        }
+        return ResponseEntity.ok(orderService.createOrders(orderRequests));
+    }
+
+    @Operation(summary = "Consultar una orden",
+               description = "Devuelve la orden con su estado actual en la saga (proyectado desde los eventos de stock, pago y despacho).")
+    @ApiResponse(responseCode = "200", description = "Orden encontrada")
+    @ApiResponse(responseCode = "404", description = "No existe una orden con ese id")
+    @GetMapping("/{id}")
+    public ResponseEntity<Order> getOrder(@PathVariable String id) {
+        return ResponseEntity.of(orderService.buscar(id));
+    }
+
+    @Operation(summary = "Listar órdenes",
+               description = "Lista las órdenes por fecha de creación, filtradas opcionalmente por cliente y estado. Paginación por cursor: ?after=<id de la última orden>&limit=N; si hay más órdenes, la respuesta trae el cursor siguiente en X-Next-Cursor.")
+    @ApiResponse(responseCode = "200", description = "Página de órdenes")
+    @ApiResponse(responseCode = "400", description = "Cursor inválido")
+    @GetMapping
+    public ResponseEntity<List<Order>> listOrders(@RequestParam(required = false) String clienteId,
+            @RequestParam(required = false) String status, @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
+        if (after != null && !OrdenIds.esValido(after)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor inválido: " + after);
+        }
+        int size = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        List<Order> ordenes = orderService.listar(clienteId, status, after, size);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (ordenes.size() == size) {
+            response.header(NEXT_CURSOR_HEADER, ordenes.get(ordenes.size() - 1).getId().toString());
+        }
+        return response.body(ordenes);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.distribuidora.servicio_ordenes.dto;
+
+// Resultado de cada orden de un POST /api/orders/batch, en el mismo orden que la petición
+public record OrderBatchResult(int indice, String ordenId, String status, String motivo) {
+
+    public static OrderBatchResult creada(int indice, String ordenId, String status) {
+        return new OrderBatchResult(indice, ordenId, status, null);
+    }
+
+    public static OrderBatchResult rechazada(int indice, String motivo) {
+        return new OrderBatchResult(indice, null, "RECHAZADA", motivo);
+    }
+}
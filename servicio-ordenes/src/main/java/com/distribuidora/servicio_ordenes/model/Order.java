@@ -1,8 +1,22 @@
 package com.distribuidora.servicio_ordenes.model;
 
+import java.time.Instant;
+import java.util.UUID;
+
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import org.springframework.data.domain.Persistable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,15 +25,51 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor // Constructor sin argumentos
 @AllArgsConstructor // Constructor con todos los argumentos
 @Entity
-@Table(name = "orders") 
-public class Order {
+// Los índices sirven a los listados por cliente y por estado; al llevar el id al final, la
+// paginación por cursor (id > after) recorre el índice sin ordenar en memoria
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_cliente", columnList = "cliente_id, id"),
+        @Index(name = "idx_orders_status", columnList = "status, id") })
+public class Order implements Persistable<UUID> {
 
+    // UUIDv7 (OrdenIds) guardado como BINARY(16): ids crecientes en el tiempo, así los
+    // INSERT se añaden al final del índice clustered en vez de repartirse por todo el árbol
     @Id
-    private String id; // Usaremos un UUID como String para la clave primaria
+    @JdbcTypeCode(SqlTypes.BINARY)
+    @Column(columnDefinition = "BINARY(16)")
+    private UUID id;
 
     private String clienteId;
 
     private double montoTotal;
 
     private String status; 
-}
\ No newline at end of file
+
+    // Proyección del avance de la saga, actualizada por OrderStatusProjection
+    private boolean stockConfirmado;
+
+    private boolean pagoConfirmado;
+
+    private String motivoFallo;
+
+    private Instant actualizadaEn;
+
+    // El id se asigna en la aplicación, así que Spring Data no sabe si la orden es nueva y
+    // haría un SELECT (merge) antes de cada INSERT. Con este flag save/saveAll hacen persist
+    // directamente y Hibernate puede agrupar los INSERT en lotes JDBC.
+    @Transient
+    @JsonIgnore
+    private boolean nueva = true;
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return nueva;
+    }
+
+    @PostLoad
+    @PostPersist
+    void marcarPersistida() {
+        this.nueva = false;
+    }
+}
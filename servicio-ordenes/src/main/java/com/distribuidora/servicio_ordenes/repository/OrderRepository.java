@@ -1,12 +1,25 @@
 package com.distribuidora.servicio_ordenes.repository;
+import java.util.List;
+import java.util.UUID;
 
-
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import com.distribuidora.servicio_ordenes.model.Order;
 
 @Repository
-public interface OrderRepository extends JpaRepository<Order, String> {
+public interface OrderRepository extends JpaRepository<Order, UUID> {
     // Spring Data JPA nos da los métodos CRUD 
+
+    // Listados paginados por cursor: los ids UUIDv7 crecen con el tiempo, así que ordenar
+    // por id es ordenar por fecha de creación
+    List<Order> findByIdGreaterThanOrderByIdAsc(UUID after, Limit limit);
+
+    List<Order> findByClienteIdAndIdGreaterThanOrderByIdAsc(String clienteId, UUID after, Limit limit);
+
+    List<Order> findByStatusAndIdGreaterThanOrderByIdAsc(String status, UUID after, Limit limit);
+
+    List<Order> findByClienteIdAndStatusAndIdGreaterThanOrderByIdAsc(String clienteId, String status, UUID after,
+            Limit limit);
 }
\ No newline at end of file
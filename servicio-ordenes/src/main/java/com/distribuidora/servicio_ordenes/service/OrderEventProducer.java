@@ -1,13 +1,14 @@
 package com.distribuidora.servicio_ordenes.service;
 
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import com.distribuidora.servicio_ordenes.dto.OrdenCreadaEvent;
+import com.distribuidora.saga.events.OrdenCreadaEvent;
+import com.distribuidora.saga.events.outbox.OutboxService;
 
 @Service
 public class OrderEventProducer {
@@ -20,16 +21,23 @@ public class OrderEventProducer {
     @Value("${rabbitmq.routing.key}")
     private String routingKey;
 
-    private final RabbitTemplate rabbitTemplate;
+    private final OutboxService outboxService;
 
     // Inyección de Dependencias por constructor (mejor práctica)
-    public OrderEventProducer(RabbitTemplate rabbitTemplate) {
-        this.rabbitTemplate = rabbitTemplate;
+    public OrderEventProducer(OutboxService outboxService) {
+        this.outboxService = outboxService;
     }
 
+    // Debe llamarse dentro de la transacción que guarda la orden: el evento queda en el
+    // outbox y el OutboxRelay lo publica en RabbitMQ fuera de la petición HTTP
     public void sendOrdenCreadaEvent(OrdenCreadaEvent event) {
-        LOGGER.info(String.format("Publicando evento OrdenCreada -> %s", event.toString()));
-        // Spring convierte automáticamente el objeto a JSON y lo envía
-        rabbitTemplate.convertAndSend(exchangeName, routingKey, event);
+        LOGGER.info(String.format("Encolando evento OrdenCreada en el outbox -> %s", event.toString()));
+        outboxService.enqueue(exchangeName, routingKey, event);
+    }
+
+    // Igual que sendOrdenCreadaEvent, para un lote de órdenes creadas en la misma transacción
+    public void sendOrdenCreadaEvents(List<OrdenCreadaEvent> events) {
+        LOGGER.info(String.format("Encolando %d eventos OrdenCreada en el outbox", events.size()));
+        outboxService.enqueueAll(exchangeName, routingKey, events);
     }
 }
\ No newline at end of file
@@ -1,17 +1,29 @@
 package com.distribuidora.servicio_ordenes.service;
 
 
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
-import com.distribuidora.servicio_ordenes.dto.OrdenCreadaEvent;
+import com.distribuidora.saga.events.OrdenCreadaEvent;
+import com.distribuidora.saga.events.ids.OrdenIds;
+import com.distribuidora.servicio_ordenes.dto.OrderBatchResult;
 import com.distribuidora.servicio_ordenes.model.Order;
 import com.distribuidora.servicio_ordenes.repository.OrderRepository;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+import jakarta.transaction.Transactional;
+
 @Service
 public class OrderService {
 
+    // Menor valor posible en BINARY(16): "id > PRIMERA_PAGINA" incluye todas las órdenes
+    private static final UUID PRIMERA_PAGINA = new UUID(0L, 0L);
+
     private final OrderRepository orderRepository;
     private final OrderEventProducer orderEventProducer;
 
@@ -20,28 +32,120 @@ public class OrderService {
         this.orderEventProducer = orderEventProducer;
     }
 
+    // Misma validación que el alta masiva: una orden inválida lanza IllegalArgumentException
+    // con el motivo y no se guarda nada
+    @Transactional
     public Order createOrder(OrdenCreadaEvent orderRequest) {
-        // 1. Crear y mapear la entidad Order
-        Order order = new Order();
-        order.setId(UUID.randomUUID().toString());
-        order.setClienteId(orderRequest.getClienteId());
-        order.setMontoTotal(orderRequest.getMontoTotal());
-        order.setStatus("PENDIENTE"); // Estado inicial
-
-        // 2. Guardar la orden en la base de datos
+        String motivo = validar(orderRequest);
+        if (motivo != null) {
+            throw new IllegalArgumentException(motivo);
+        }
+        Order order = nuevaOrden(orderRequest);
         Order savedOrder = orderRepository.save(order);
 
-        // 3. Preparar el evento con los datos finales (incluyendo el ID generado)
-        OrdenCreadaEvent eventPayload = OrdenCreadaEvent.builder()
-                .ordenId(savedOrder.getId())
-                .clienteId(savedOrder.getClienteId())
-                .montoTotal(savedOrder.getMontoTotal())
-                .productos(orderRequest.getProductos())
-                .build();
+        // El evento va al outbox en la misma transacción que la orden
+        orderEventProducer.sendOrdenCreadaEvent(evento(savedOrder, orderRequest));
+        return savedOrder;
+    }
 
-        // 4. Publicar el evento en RabbitMQ
-        orderEventProducer.sendOrdenCreadaEvent(eventPayload);
+    // Alta masiva: las órdenes válidas se insertan en una sola transacción (INSERT en lotes
+    // JDBC) y sus eventos van al outbox en un único batch. Las inválidas se devuelven como
+    // RECHAZADA con el motivo, sin afectar al resto.
+    @Transactional
+    public List<OrderBatchResult> createOrders(List<OrdenCreadaEvent> orderRequests) {
+        OrderBatchResult[] resultados = new OrderBatchResult[orderRequests.size()];
+        List<Order> orders = new ArrayList<>(orderRequests.size());
+        List<OrdenCreadaEvent> events = new ArrayList<>(orderRequests.size());
 
-        return savedOrder;
+        for (int i = 0; i < orderRequests.size(); i++) {
+            OrdenCreadaEvent orderRequest = orderRequests.get(i);
+            String motivo = validar(orderRequest);
+            if (motivo != null) {
+                resultados[i] = OrderBatchResult.rechazada(i, motivo);
+                continue;
+            }
+
+            Order order = nuevaOrden(orderRequest);
+            orders.add(order);
+            events.add(evento(order, orderRequest));
+            resultados[i] = OrderBatchResult.creada(i, order.getId().toString(), order.getStatus());
+        }
+
+        if (!orders.isEmpty()) {
+            orderRepository.saveAll(orders);
+            orderEventProducer.sendOrdenCreadaEvents(events);
+        }
+        return List.of(resultados);
+    }
+
+    // Lectura de la proyección: una consulta por clave primaria. Un id con formato
+    // inválido no puede existir y se trata como no encontrado.
+    public Optional<Order> buscar(String ordenId) {
+        if (!OrdenIds.esValido(ordenId)) {
+            return Optional.empty();
+        }
+        return orderRepository.findById(OrdenIds.parse(ordenId));
+    }
+
+    // Página de órdenes filtrada por cliente y/o estado, empezando después del cursor
+    // (null = primera). Cada combinación de filtros usa su propio índice.
+    public List<Order> listar(String clienteId, String status, String after, int limit) {
+        UUID cursor = after != null ? OrdenIds.parse(after) : PRIMERA_PAGINA;
+        Limit max = Limit.of(limit);
+        if (clienteId != null && status != null) {
+            return orderRepository.findByClienteIdAndStatusAndIdGreaterThanOrderByIdAsc(clienteId, status, cursor, max);
+        }
+        if (clienteId != null) {
+            return orderRepository.findByClienteIdAndIdGreaterThanOrderByIdAsc(clienteId, cursor, max);
+        }
+        if (status != null) {
+            return orderRepository.findByStatusAndIdGreaterThanOrderByIdAsc(status, cursor, max);
+        }
+        return orderRepository.findByIdGreaterThanOrderByIdAsc(cursor, max);
+    }
+
+    private static Order nuevaOrden(OrdenCreadaEvent orderRequest) {
+        Order order = new Order();
+        order.setId(OrdenIds.nuevo());
+        order.setClienteId(orderRequest.clienteId());
+        order.setMontoTotal(orderRequest.montoTotal());
+        order.setStatus(OrderStatusProjection.PENDIENTE); // Estado inicial
+        order.setActualizadaEn(Instant.now());
+        return order;
+    }
+
+    // Evento con los datos finales de la orden (incluido el id generado)
+    private static OrdenCreadaEvent evento(Order order, OrdenCreadaEvent orderRequest) {
+        return OrdenCreadaEvent.builder()
+                .ordenId(order.getId().toString())
+                .clienteId(order.getClienteId())
+                .montoTotal(order.getMontoTotal())
+                .productos(orderRequest.productos())
+                .build();
+    }
+
+    // Devuelve el motivo por el que la orden no es válida, o null si lo es
+    private static String validar(OrdenCreadaEvent orderRequest) {
+        if (orderRequest == null) {
+            return "Orden vacía";
+        }
+        if (orderRequest.clienteId() == null || orderRequest.clienteId().isBlank()) {
+            return "clienteId es obligatorio";
+        }
+        if (orderRequest.montoTotal() < 0) {
+            return "montoTotal no puede ser negativo";
+        }
+        if (orderRequest.productos().isEmpty()) {
+            return "La orden no tiene productos";
+        }
+        for (OrdenCreadaEvent.ProductoItem item : orderRequest.productos()) {
+            if (item == null || item.productoId() == null || item.productoId().isBlank()) {
+                return "Producto sin productoId";
+            }
+            if (item.cantidad() <= 0) {
+                return "Cantidad inválida para el producto " + item.productoId();
+            }
+        }
+        return null;
     }
 }
\ No newline at end of file
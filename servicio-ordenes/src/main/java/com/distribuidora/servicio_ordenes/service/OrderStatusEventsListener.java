@@ -0,0 +1,96 @@
+package com.distribuidora.servicio_ordenes.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.stereotype.Component;
+
+import com.distribuidora.saga.events.OrdenListaParaEnvioEvent;
+import com.distribuidora.saga.events.PagoExitosoEvent;
+import com.distribuidora.saga.events.PagoFallidoEvent;
+import com.distribuidora.saga.events.StockDescontadoEvent;
+import com.distribuidora.saga.events.StockFallidoEvent;
+import com.distribuidora.saga.events.ids.OrdenIds;
+
+/*
+ * Consume por lotes los eventos de la saga que cambian el estado de una orden y los
+ * agrupa por ordenId antes de escribir: varios eventos de la misma orden en un lote se
+ * convierten en un único UPDATE. El lote se confirma (ack) cuando la escritura termina.
+ */
+@Component
+public class OrderStatusEventsListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderStatusEventsListener.class);
+
+    private final OrderStatusProjection projection;
+    private final MessageConverter messageConverter;
+
+    public OrderStatusEventsListener(OrderStatusProjection projection, MessageConverter messageConverter) {
+        this.projection = projection;
+        this.messageConverter = messageConverter;
+    }
+
+    @RabbitListener(queues = "${rabbitmq.queue.order_status.name}",
+            containerFactory = "orderStatusListenerContainerFactory")
+    public void onEventos(List<Message> messages) {
+        // Ordenado por ordenId para que los UPDATE bloqueen las filas siempre en el mismo orden
+        Map<String, OrderStatusProjection.Cambio> cambios = new TreeMap<>();
+        for (Message message : messages) {
+            Object event;
+            try {
+                event = messageConverter.fromMessage(message);
+            } catch (RuntimeException e) {
+                // Un mensaje corrupto se descarta solo y no hace reencolar el lote completo
+                LOGGER.error("Mensaje descartado del lote de estados, no se pudo convertir ({}): {}",
+                        message.getMessageProperties().getMessageId(), e.getMessage());
+                continue;
+            }
+
+            String ordenId;
+            OrderStatusProjection.Cambio cambio;
+            switch (event) {
+                case StockDescontadoEvent e -> {
+                    ordenId = e.ordenId();
+                    cambio = new OrderStatusProjection.Cambio(true, false, false, null, null);
+                }
+                case PagoExitosoEvent e -> {
+                    ordenId = e.ordenId();
+                    cambio = new OrderStatusProjection.Cambio(false, true, false, null, null);
+                }
+                case PagoFallidoEvent e -> {
+                    ordenId = e.ordenId();
+                    cambio = OrderStatusProjection.Cambio.fallida(OrderStatusProjection.PAGO_FALLIDO,
+                            e.motivoFallo() != null ? e.motivoFallo() : "Pago rechazado");
+                }
+                case StockFallidoEvent e -> {
+                    ordenId = e.ordenId();
+                    cambio = OrderStatusProjection.Cambio.fallida(OrderStatusProjection.STOCK_INSUFICIENTE,
+                            e.motivoFallo() != null ? e.motivoFallo() : "Stock insuficiente");
+                }
+                case OrdenListaParaEnvioEvent e -> {
+                    ordenId = e.ordenId();
+                    cambio = new OrderStatusProjection.Cambio(false, false, true, null, null);
+                }
+                default -> {
+                    LOGGER.warn("Evento no esperado en la cola de estados, se descarta -> {}", event);
+                    continue;
+                }
+            }
+
+            if (!OrdenIds.esValido(ordenId)) {
+                LOGGER.warn("Evento de estado con ordenId inválido, se descarta -> {}", event);
+                continue;
+            }
+            cambios.merge(ordenId, cambio, OrderStatusProjection.Cambio::combinar);
+        }
+
+        projection.aplicar(cambios);
+        LOGGER.info("Lote de {} eventos de estado aplicado sobre {} órdenes", messages.size(), cambios.size());
+    }
+}
@@ -0,0 +1,98 @@
+package com.distribuidora.servicio_ordenes.service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.distribuidora.saga.events.ids.OrdenIds;
+
+// Proyección del estado de cada orden a partir de los eventos de la saga. Los cambios de
+// un lote ya vienen agrupados por orden, así cada orden se escribe una sola vez por lote.
+@Component
+public class OrderStatusProjection {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderStatusProjection.class);
+
+    public static final String PENDIENTE = "PENDIENTE";
+    public static final String STOCK_RESERVADO = "STOCK_RESERVADO";
+    public static final String PAGADA = "PAGADA";
+    public static final String CONFIRMADA = "CONFIRMADA";
+    public static final String PAGO_FALLIDO = "PAGO_FALLIDO";
+    public static final String STOCK_INSUFICIENTE = "STOCK_INSUFICIENTE";
+    public static final String LISTA_PARA_ENVIO = "LISTA_PARA_ENVIO";
+
+    // Actualización monótona: las confirmaciones sólo se suman y los estados finales no
+    // se pisan, así da igual el orden en que lleguen los eventos o si se repite un lote.
+    // El estado se calcula primero y con las confirmaciones combinadas explícitamente
+    // (columna OR parámetro), así no depende del orden en que la base de datos evalúa
+    // las asignaciones del SET.
+    private static final String APLICAR_SQL = "UPDATE orders SET "
+            + "status = CASE "
+            + "WHEN status IN ('" + LISTA_PARA_ENVIO + "', '" + PAGO_FALLIDO + "', '" + STOCK_INSUFICIENTE
+            + "') THEN status "
+            + "WHEN ? THEN '" + LISTA_PARA_ENVIO + "' "
+            + "WHEN ? IS NOT NULL THEN ? "
+            + "WHEN (stock_confirmado OR ?) AND (pago_confirmado OR ?) THEN '" + CONFIRMADA + "' "
+            + "WHEN stock_confirmado OR ? THEN '" + STOCK_RESERVADO + "' "
+            + "WHEN pago_confirmado OR ? THEN '" + PAGADA + "' "
+            + "ELSE status END, "
+            + "stock_confirmado = stock_confirmado OR ?, "
+            + "pago_confirmado = pago_confirmado OR ?, "
+            + "motivo_fallo = COALESCE(motivo_fallo, ?), "
+            + "actualizada_en = ? "
+            + "WHERE id = ?";
+
+    // Cambios acumulados de una orden dentro de un lote. fallo es el estado final de una
+    // compensación (PAGO_FALLIDO o STOCK_INSUFICIENTE); gana el primero que llegue.
+    public record Cambio(boolean stock, boolean pago, boolean listo, String fallo, String motivoFallo) {
+
+        public static Cambio fallida(String fallo, String motivoFallo) {
+            return new Cambio(false, false, false, fallo, motivoFallo);
+        }
+
+        public Cambio combinar(Cambio otro) {
+            boolean propio = fallo != null;
+            return new Cambio(stock || otro.stock, pago || otro.pago, listo || otro.listo,
+                    propio ? fallo : otro.fallo, propio ? motivoFallo : otro.motivoFallo);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public OrderStatusProjection(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Los cambios deben venir ordenados por ordenId: dos lotes concurrentes bloquean las
+    // filas en el mismo orden y no se producen deadlocks entre ellos
+    public void aplicar(Map<String, Cambio> cambiosPorOrden) {
+        if (cambiosPorOrden.isEmpty()) {
+            return;
+        }
+
+        Timestamp ahora = Timestamp.from(Instant.now());
+        List<Object[]> filas = new ArrayList<>(cambiosPorOrden.size());
+        cambiosPorOrden.forEach((ordenId, cambio) -> filas.add(new Object[] { cambio.listo(), cambio.fallo(),
+                cambio.fallo(), cambio.stock(), cambio.pago(), cambio.stock(), cambio.pago(), cambio.stock(),
+                cambio.pago(), cambio.motivoFallo(), ahora, OrdenIds.aBytes(ordenId) }));
+
+        int[] filasAfectadas = jdbcTemplate.batchUpdate(APLICAR_SQL, filas);
+        int desconocidas = 0;
+        for (int afectadas : filasAfectadas) {
+            if (afectadas == 0) {
+                desconocidas++;
+            }
+        }
+        if (desconocidas > 0) {
+            LOGGER.warn("{} eventos de estado corresponden a órdenes que no existen en este servicio", desconocidas);
+        }
+        LOGGER.debug("Proyección de estado: {} órdenes actualizadas", filas.size());
+    }
+}
@@ -0,0 +1,160 @@
+package com.distribuidora.servicio_ordenes.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.distribuidora.saga.events.OrdenCreadaEvent;
+import com.distribuidora.saga.events.amqp.SagaMessageConverters;
+import com.distribuidora.saga.events.outbox.OutboxService;
+import com.distribuidora.servicio_ordenes.dto.OrderBatchResult;
+import com.distribuidora.servicio_ordenes.model.Order;
+import com.distribuidora.servicio_ordenes.repository.OrderRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// Alta de órdenes con su outbox y consultas por cursor sobre una base de datos real (H2)
+@DataJpaTest(properties = { "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "rabbitmq.exchange.name=orders_exchange", "rabbitmq.routing.key=order.created" })
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderServiceTest {
+
+    @SpringBootConfiguration
+    @EntityScan(basePackageClasses = Order.class)
+    @EnableJpaRepositories(basePackageClasses = OrderRepository.class)
+    @Import({ OrderService.class, OrderEventProducer.class })
+    static class Config {
+
+        @Bean
+        OutboxService outboxService(JdbcTemplate jdbcTemplate) {
+            MessageConverter converter = SagaMessageConverters.create("json");
+            return new OutboxService(jdbcTemplate, converter, new ObjectMapper());
+        }
+    }
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS outbox_events (id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                + "exchange VARCHAR(255), routing_key VARCHAR(255), content_type VARCHAR(255), "
+                + "message_id VARCHAR(255), headers TEXT, payload BLOB NOT NULL, created_at TIMESTAMP(6), "
+                + "claimed_until TIMESTAMP(6))");
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderRepository.deleteAll();
+        jdbcTemplate.update("DELETE FROM outbox_events");
+    }
+
+    @Test
+    void unaOrdenInvalidaDelLoteNoSeCreaYElRestoSiConUnEventoCadaUna() {
+        List<OrderBatchResult> resultados = orderService.createOrders(List.of(orden("cliente-1", "SKU-A", 1),
+                orden("cliente-1", "SKU-A", 0), orden(" ", "SKU-B", 1), orden("cliente-2", "SKU-B", 3)));
+
+        assertThat(resultados).extracting(OrderBatchResult::status)
+                .containsExactly("PENDIENTE", "RECHAZADA", "RECHAZADA", "PENDIENTE");
+        assertThat(resultados.get(1).motivo()).isEqualTo("Cantidad inválida para el producto SKU-A");
+        assertThat(resultados.get(2).motivo()).isEqualTo("clienteId es obligatorio");
+        assertThat(resultados.get(1).ordenId()).isNull();
+
+        List<String> creadas = List.of(resultados.get(0).ordenId(), resultados.get(3).ordenId());
+        assertThat(orderRepository.findAll()).extracting(order -> order.getId().toString())
+                .containsExactlyInAnyOrderElementsOf(creadas);
+        // Un evento por orden creada, con la cabecera ordenId que usa el enrutado
+        assertThat(jdbcTemplate.queryForList("SELECT headers FROM outbox_events", String.class))
+                .hasSize(2)
+                .allSatisfy(headers -> assertThat(creadas).anyMatch(headers::contains));
+    }
+
+    @Test
+    void unLoteSinOrdenesValidasNoEscribeNada() {
+        List<OrderBatchResult> resultados = orderService.createOrders(List.of(orden("cliente-1", null, 1)));
+
+        assertThat(resultados).extracting(OrderBatchResult::motivo).containsExactly("Producto sin productoId");
+        assertThat(orderRepository.count()).isZero();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events", Integer.class)).isZero();
+    }
+
+    @Test
+    void elAltaIndividualValidaIgualQueElLote() {
+        OrdenCreadaEvent sinProductos = OrdenCreadaEvent.builder().clienteId("cliente-1").montoTotal(10).build();
+
+        assertThatThrownBy(() -> orderService.createOrder(sinProductos))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("La orden no tiene productos");
+        assertThat(orderRepository.count()).isZero();
+
+        Order creada = orderService.createOrder(orden("cliente-1", "SKU-A", 2));
+        assertThat(orderService.buscar(creada.getId().toString())).isPresent();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM outbox_events", Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void elListadoPorCursorRecorreTodasLasOrdenesSinRepetirYFiltra() {
+        List<OrdenCreadaEvent> pedidos = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            pedidos.add(orden(i % 2 == 0 ? "cliente-1" : "cliente-2", "SKU-A", 1));
+        }
+        List<String> ids = orderService.createOrders(pedidos).stream().map(OrderBatchResult::ordenId).toList();
+        Order pagada = orderRepository.findById(UUID.fromString(ids.get(2))).orElseThrow();
+        pagada.setStatus(OrderStatusProjection.PAGADA);
+        orderRepository.save(pagada);
+
+        List<String> recorridas = new ArrayList<>();
+        String cursor = null;
+        List<Order> pagina;
+        do {
+            pagina = orderService.listar(null, null, cursor, 2);
+            pagina.forEach(order -> recorridas.add(order.getId().toString()));
+            cursor = pagina.isEmpty() ? cursor : pagina.getLast().getId().toString();
+        } while (pagina.size() == 2);
+        // Los ids UUIDv7 crecen en el orden de creación
+        assertThat(recorridas).containsExactlyElementsOf(ids);
+
+        assertThat(orderService.listar("cliente-1", null, null, 10)).extracting(order -> order.getId().toString())
+                .containsExactly(ids.get(0), ids.get(2), ids.get(4));
+        assertThat(orderService.listar("cliente-1", OrderStatusProjection.PAGADA, null, 10))
+                .extracting(order -> order.getId().toString()).containsExactly(ids.get(2));
+        assertThat(orderService.listar(null, OrderStatusProjection.PENDIENTE, ids.get(1), 10))
+                .extracting(order -> order.getId().toString()).containsExactly(ids.get(3), ids.get(4));
+    }
+
+    @Test
+    void unIdMalFormadoNoSeEncuentra() {
+        assertThat(orderService.buscar("orden-1")).isEmpty();
+    }
+
+    private static OrdenCreadaEvent orden(String clienteId, String sku, int cantidad) {
+        return OrdenCreadaEvent.builder()
+                .clienteId(clienteId)
+                .montoTotal(100)
+                .productos(List.of(new OrdenCreadaEvent.ProductoItem(sku, cantidad)))
+                .build();
+    }
+}
@@ -0,0 +1,81 @@
+package com.distribuidora.servicio_ordenes.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import com.distribuidora.saga.events.PagoExitosoEvent;
+import com.distribuidora.saga.events.PagoFallidoEvent;
+import com.distribuidora.saga.events.StockDescontadoEvent;
+import com.distribuidora.saga.events.StockFallidoEvent;
+import com.distribuidora.saga.events.amqp.SagaMessageConverters;
+import com.distribuidora.saga.events.ids.OrdenIds;
+import com.distribuidora.servicio_ordenes.service.OrderStatusProjection.Cambio;
+
+class OrderStatusEventsListenerTest {
+
+    private final MessageConverter converter = SagaMessageConverters.create("json");
+    private final OrderStatusProjection projection = mock(OrderStatusProjection.class);
+    private final OrderStatusEventsListener listener = new OrderStatusEventsListener(projection, converter);
+
+    @Test
+    void losEventosDeUnaOrdenSeAgrupanEnUnSoloCambio() {
+        String a = OrdenIds.nuevo().toString();
+        String b = OrdenIds.nuevo().toString();
+
+        listener.onEventos(List.of(mensaje(new StockDescontadoEvent(b)), mensaje(new StockDescontadoEvent(a)),
+                mensaje(new PagoExitosoEvent(a, "tx-1")), mensaje(new StockDescontadoEvent(a))));
+
+        Map<String, Cambio> cambios = aplicados();
+        assertThat(cambios).hasSize(2);
+        assertThat(cambios.get(a)).isEqualTo(new Cambio(true, true, false, null, null));
+        assertThat(cambios.get(b)).isEqualTo(new Cambio(true, false, false, null, null));
+        // Ordenados por ordenId, para bloquear las filas siempre en el mismo orden
+        assertThat(cambios.keySet()).containsExactly(a, b);
+    }
+
+    @Test
+    void elPrimerFalloDelLoteGanaYConservaSuMotivo() {
+        String ordenId = OrdenIds.nuevo().toString();
+
+        listener.onEventos(List.of(mensaje(new PagoExitosoEvent(ordenId, "tx-1")),
+                mensaje(new StockFallidoEvent(ordenId, "Sin stock")),
+                mensaje(new PagoFallidoEvent(ordenId, "Pago rechazado"))));
+
+        assertThat(aplicados().get(ordenId)).isEqualTo(
+                new Cambio(false, true, false, OrderStatusProjection.STOCK_INSUFICIENTE, "Sin stock"));
+    }
+
+    @Test
+    void losMensajesCorruptosYLosIdsInvalidosSeDescartanSinPerderElResto() {
+        String ordenId = OrdenIds.nuevo().toString();
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+        Message corrupto = new Message("{roto".getBytes(), properties);
+
+        listener.onEventos(List.of(corrupto, mensaje(new StockDescontadoEvent("orden-1")),
+                mensaje(new StockDescontadoEvent(ordenId))));
+
+        assertThat(aplicados()).containsOnlyKeys(ordenId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Cambio> aplicados() {
+        ArgumentCaptor<Map<String, Cambio>> cambios = ArgumentCaptor.forClass(Map.class);
+        verify(projection).aplicar(cambios.capture());
+        return cambios.getValue();
+    }
+
+    private Message mensaje(Object event) {
+        return converter.toMessage(event, new MessageProperties());
+    }
+}
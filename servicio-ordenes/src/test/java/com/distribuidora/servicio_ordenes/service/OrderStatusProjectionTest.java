@@ -0,0 +1,111 @@
+package com.distribuidora.servicio_ordenes.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import com.distribuidora.saga.events.ids.OrdenIds;
+import com.distribuidora.servicio_ordenes.service.OrderStatusProjection.Cambio;
+
+// UPDATE monótono de la proyección sobre una base de datos real (H2 en modo MySQL)
+class OrderStatusProjectionTest {
+
+    private static final Cambio STOCK = new Cambio(true, false, false, null, null);
+    private static final Cambio PAGO = new Cambio(false, true, false, null, null);
+    private static final Cambio LISTA = new Cambio(false, false, true, null, null);
+
+    private JdbcTemplate jdbcTemplate;
+    private OrderStatusProjection projection;
+    private String ordenId;
+
+    @BeforeEach
+    void setUp() {
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new org.h2.Driver(),
+                "jdbc:h2:mem:estados-" + System.nanoTime() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE orders (id BINARY(16) PRIMARY KEY, cliente_id VARCHAR(255), "
+                + "monto_total DOUBLE NOT NULL, status VARCHAR(255), stock_confirmado BOOLEAN NOT NULL, "
+                + "pago_confirmado BOOLEAN NOT NULL, motivo_fallo VARCHAR(255), actualizada_en TIMESTAMP(6))");
+        projection = new OrderStatusProjection(jdbcTemplate);
+        ordenId = nuevaOrden();
+    }
+
+    @Test
+    void lasConfirmacionesEnLotesSeparadosLleganAConfirmadaEnCualquierOrden() {
+        projection.aplicar(Map.of(ordenId, STOCK));
+        assertThat(status()).isEqualTo(OrderStatusProjection.STOCK_RESERVADO);
+        projection.aplicar(Map.of(ordenId, PAGO));
+        assertThat(status()).isEqualTo(OrderStatusProjection.CONFIRMADA);
+
+        String otra = nuevaOrden();
+        projection.aplicar(Map.of(otra, PAGO));
+        assertThat(status(otra)).isEqualTo(OrderStatusProjection.PAGADA);
+        projection.aplicar(Map.of(otra, STOCK));
+        assertThat(status(otra)).isEqualTo(OrderStatusProjection.CONFIRMADA);
+    }
+
+    @Test
+    void unEventoTardioNoHaceRetrocederLaOrden() {
+        projection.aplicar(Map.of(ordenId, STOCK.combinar(PAGO)));
+        projection.aplicar(Map.of(ordenId, LISTA));
+
+        // Redeliveries y eventos atrasados después del estado final
+        projection.aplicar(Map.of(ordenId, STOCK));
+        projection.aplicar(Map.of(ordenId, PAGO));
+        projection.aplicar(Map.of(ordenId, Cambio.fallida(OrderStatusProjection.PAGO_FALLIDO, "tarde")));
+
+        assertThat(status()).isEqualTo(OrderStatusProjection.LISTA_PARA_ENVIO);
+    }
+
+    @Test
+    void unaOrdenFallidaNoSaleDeSuEstadoFinalYConservaElPrimerMotivo() {
+        projection.aplicar(Map.of(ordenId, Cambio.fallida(OrderStatusProjection.STOCK_INSUFICIENTE, "Sin stock")));
+
+        projection.aplicar(Map.of(ordenId, PAGO));
+        projection.aplicar(Map.of(ordenId, Cambio.fallida(OrderStatusProjection.PAGO_FALLIDO, "Pago rechazado")));
+        projection.aplicar(Map.of(ordenId, LISTA));
+
+        assertThat(status()).isEqualTo(OrderStatusProjection.STOCK_INSUFICIENTE);
+        assertThat(jdbcTemplate.queryForObject("SELECT motivo_fallo FROM orders", String.class))
+                .isEqualTo("Sin stock");
+    }
+
+    @Test
+    void repetirUnLoteNoCambiaElResultado() {
+        Map<String, Cambio> lote = Map.of(ordenId, STOCK);
+
+        projection.aplicar(lote);
+        projection.aplicar(lote);
+
+        assertThat(status()).isEqualTo(OrderStatusProjection.STOCK_RESERVADO);
+    }
+
+    @Test
+    void unaOrdenDesconocidaNoHaceFallarElLote() {
+        projection.aplicar(Map.of(OrdenIds.nuevo().toString(), STOCK, ordenId, PAGO));
+
+        assertThat(status()).isEqualTo(OrderStatusProjection.PAGADA);
+    }
+
+    private String nuevaOrden() {
+        String id = OrdenIds.nuevo().toString();
+        jdbcTemplate.update("INSERT INTO orders (id, cliente_id, monto_total, status, stock_confirmado, "
+                + "pago_confirmado) VALUES (?, 'cliente-1', 100, 'PENDIENTE', false, false)",
+                (Object) OrdenIds.aBytes(id));
+        return id;
+    }
+
+    private String status() {
+        return status(ordenId);
+    }
+
+    private String status(String id) {
+        return jdbcTemplate.queryForObject("SELECT status FROM orders WHERE id = ?", String.class,
+                (Object) OrdenIds.aBytes(id));
+    }
+}